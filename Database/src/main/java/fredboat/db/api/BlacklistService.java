@@ -27,6 +27,9 @@ package fredboat.db.api;
 
 import fredboat.db.entity.main.BlacklistEntry;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Created by napster on 07.02.18.
  */
@@ -36,6 +39,8 @@ public interface BlacklistService {
 
     BlacklistEntry mergeBlacklistEntry(BlacklistEntry entry);
 
+    List<BlacklistEntry> mergeBlacklistEntries(Collection<BlacklistEntry> entries);
+
     void deleteBlacklistEntry(long id);
 
 }
@@ -28,6 +28,8 @@ package fredboat.db.api;
 import fredboat.db.entity.cache.SearchResult;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by napster on 07.02.18.
@@ -50,4 +52,13 @@ public interface SearchResultService {
     @Nullable
     SearchResult getSearchResult(SearchResult.SearchResultId id, long maxAgeMillis);
 
+    /**
+     * Bulk version of {@link #getSearchResult(SearchResult.SearchResultId, long)} that needs only a single round trip.
+     *
+     * @param maxAgeMillis the maximum age of the cached search results; provide a negative value for eternal cache
+     * @return the cached search results of the requested ids that exist and are not outdated, in no particular order;
+     * empty when there is no cache database
+     */
+    List<SearchResult> getSearchResults(Collection<SearchResult.SearchResultId> ids, long maxAgeMillis);
+
 }
@@ -32,7 +32,6 @@ import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
 import fredboat.definitions.SearchProvider;
-import org.apache.commons.lang3.SerializationUtils;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import space.npstr.sqlsauce.entities.SaucedEntity;
@@ -78,7 +77,7 @@ public class SearchResult extends SaucedEntity<SearchResult.SearchResultId, Sear
                         AudioPlaylist searchResult) {
         this.searchResultId = new SearchResultId(provider, searchTerm);
         this.timestamp = System.currentTimeMillis();
-        this.serializedSearchResult = SerializationUtils.serialize(new SerializableAudioPlaylist(playerManager, searchResult));
+        this.serializedSearchResult = SearchResultCodec.encode(new SerializableAudioPlaylist(playerManager, searchResult), true);
     }
 
     @Nonnull
@@ -129,14 +128,16 @@ public class SearchResult extends SaucedEntity<SearchResult.SearchResultId, Sear
         this.timestamp = timestamp;
     }
 
+    /**
+     * @throws IllegalArgumentException if the stored search result can't be decoded
+     */
     @Nonnull
     public AudioPlaylist getSearchResult(@Nonnull AudioPlayerManager playerManager) {
-        SerializableAudioPlaylist sap = SerializationUtils.deserialize(serializedSearchResult);
-        return sap.decode(playerManager);
+        return SearchResultCodec.decode(serializedSearchResult).decode(playerManager);
     }
 
     public void setSearchResult(AudioPlayerManager playerManager, AudioPlaylist searchResult) {
-        this.serializedSearchResult = SerializationUtils.serialize(new SerializableAudioPlaylist(playerManager, searchResult));
+        this.serializedSearchResult = SearchResultCodec.encode(new SerializableAudioPlaylist(playerManager, searchResult), true);
     }
 
     /**
@@ -198,17 +199,22 @@ public class SearchResult extends SaucedEntity<SearchResult.SearchResultId, Sear
     }
 
 
-    private static class SerializableAudioPlaylist implements Serializable {
+    /**
+     * Holds the encoded tracks of a search result. Stored with the {@link SearchResultCodec}; implementing Serializable
+     * and keeping the name of this class is required for reading search results that were stored with java
+     * serialization.
+     */
+    public static class SerializableAudioPlaylist implements Serializable {
         private static final long serialVersionUID = -6823555858689776338L;
 
         @Nullable
-        private String name;
+        String name;
         @SuppressWarnings("NullableProblems") //triggered by the empty no params constructor
         @Nonnull
-        private byte[][] tracks;
+        byte[][] tracks;
         @Nullable
-        private byte[] selectedTrack;
-        private boolean isSearchResult;
+        byte[] selectedTrack;
+        boolean isSearchResult;
 
         //required for deserialization
         SerializableAudioPlaylist() {
@@ -0,0 +1,219 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.db.entity.cache;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary format of the search results stored in the database, replacing java serialization.
+ * <p>
+ * Layout: a format version (byte) and flags (byte), followed by the body, which is deflate compressed if the
+ * {@link #FLAG_COMPRESSED} flag is set. The body consists of the search result flag (boolean), the name of the playlist
+ * (length prefixed UTF-8, length -1 for null), the selected track (length prefixed, length -1 for none), the amount of
+ * tracks (int), and the length prefixed tracks. The tracks are encoded by lavaplayer.
+ * <p>
+ * Payloads written with java serialization can still be read, they are recognized by the magic bytes of java
+ * serialization streams, which can never be a valid format version.
+ */
+public final class SearchResultCodec {
+
+    public static final byte VERSION = 1;
+    static final byte FLAG_COMPRESSED = 1;
+    //compressing small payloads is not worth it
+    private static final int COMPRESSION_THRESHOLD_BYTES = 512;
+    //way above any encoded track, guards against allocating huge arrays for the lengths found in corrupt payloads
+    private static final int MAX_FIELD_BYTES = 1024 * 1024;
+    private static final int MAX_PREALLOCATED_TRACKS = 1024;
+
+    private static final byte JAVA_SERIALIZATION_MAGIC_0 = (byte) 0xAC;
+    private static final byte JAVA_SERIALIZATION_MAGIC_1 = (byte) 0xED;
+
+    private SearchResultCodec() {
+    }
+
+    /**
+     * @return true if the payload is encoded in the current version of this format
+     */
+    public static boolean isCurrentFormat(byte[] payload) {
+        return payload.length >= 2 && payload[0] == VERSION;
+    }
+
+    /**
+     * Convert a payload of any known format into the current format.
+     *
+     * @throws IllegalArgumentException if the payload is not in a known format or can't be decoded
+     */
+    public static byte[] reencode(byte[] payload) {
+        return encode(decode(payload), true);
+    }
+
+    /**
+     * @param compress allow compressing the payload, which happens only if that makes it smaller
+     */
+    public static byte[] encode(SearchResult.SerializableAudioPlaylist playlist, boolean compress) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(estimateSize(playlist));
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            writeBody(out, playlist);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //can't happen with in memory streams
+        }
+
+        byte flags = 0;
+        byte[] bodyBytes = body.toByteArray();
+        if (compress && bodyBytes.length >= COMPRESSION_THRESHOLD_BYTES) {
+            byte[] compressed = deflate(bodyBytes);
+            if (compressed.length < bodyBytes.length) {
+                flags |= FLAG_COMPRESSED;
+                bodyBytes = compressed;
+            }
+        }
+
+        byte[] payload = new byte[2 + bodyBytes.length];
+        payload[0] = VERSION;
+        payload[1] = flags;
+        System.arraycopy(bodyBytes, 0, payload, 2, bodyBytes.length);
+        return payload;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload is not in a known format or can't be decoded
+     */
+    public static SearchResult.SerializableAudioPlaylist decode(byte[] payload) {
+        if (payload.length >= 2 && payload[0] == JAVA_SERIALIZATION_MAGIC_0 && payload[1] == JAVA_SERIALIZATION_MAGIC_1) {
+            try {
+                return SerializationUtils.deserialize(payload);
+            } catch (SerializationException | ClassCastException e) {
+                throw new IllegalArgumentException("Could not deserialize legacy search result", e);
+            }
+        }
+        if (!isCurrentFormat(payload)) {
+            throw new IllegalArgumentException("Unknown search result format version " + (payload.length > 0 ? payload[0] : "none"));
+        }
+
+        InputStream body = new ByteArrayInputStream(payload, 2, payload.length - 2);
+        if ((payload[1] & FLAG_COMPRESSED) != 0) {
+            body = new InflaterInputStream(body);
+        }
+        try (DataInputStream in = new DataInputStream(body)) {
+            SearchResult.SerializableAudioPlaylist playlist = readBody(in);
+            //also makes the inflater read the end of the compressed stream, which a truncated payload lacks
+            if (in.read() != -1) {
+                throw new IOException("Unexpected bytes after the end of the search result");
+            }
+            return playlist;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode search result", e);
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, SearchResult.SerializableAudioPlaylist playlist) throws IOException {
+        out.writeBoolean(playlist.isSearchResult);
+        writeBytes(out, playlist.name == null ? null : playlist.name.getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, playlist.selectedTrack);
+        out.writeInt(playlist.tracks.length);
+        for (byte[] track : playlist.tracks) {
+            writeBytes(out, track);
+        }
+    }
+
+    private static SearchResult.SerializableAudioPlaylist readBody(DataInputStream in) throws IOException {
+        SearchResult.SerializableAudioPlaylist playlist = new SearchResult.SerializableAudioPlaylist();
+        playlist.isSearchResult = in.readBoolean();
+        byte[] name = readBytes(in);
+        playlist.name = name == null ? null : new String(name, StandardCharsets.UTF_8);
+        playlist.selectedTrack = readBytes(in);
+        int trackCount = in.readInt();
+        if (trackCount < 0) {
+            throw new IOException("Negative track count " + trackCount);
+        }
+        //a corrupt count runs into the end of the payload instead of allocating up front
+        List<byte[]> tracks = new ArrayList<>(Math.min(trackCount, MAX_PREALLOCATED_TRACKS));
+        for (int i = 0; i < trackCount; i++) {
+            byte[] track = readBytes(in);
+            if (track == null) {
+                throw new IOException("Missing track " + i);
+            }
+            tracks.add(track);
+        }
+        playlist.tracks = tracks.toArray(new byte[0][]);
+        return playlist;
+    }
+
+    private static void writeBytes(DataOutputStream out, @Nullable byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Nullable
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_FIELD_BYTES) {
+            throw new IOException("Field length " + length + " exceeds the maximum of " + MAX_FIELD_BYTES);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //can't happen with in memory streams
+        }
+        return compressed.toByteArray();
+    }
+
+    private static int estimateSize(SearchResult.SerializableAudioPlaylist playlist) {
+        int size = 64;
+        for (byte[] track : playlist.tracks) {
+            size += 4 + track.length;
+        }
+        return size;
+    }
+}
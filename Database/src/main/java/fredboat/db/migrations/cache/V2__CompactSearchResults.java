@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.db.migrations.cache;
+
+import fredboat.db.entity.cache.SearchResultCodec;
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Converts the java serialized search results into the format of the {@link SearchResultCodec}.
+ * <p>
+ * Search results are stored as large objects, so the converted payloads are written into new large objects, and the
+ * old ones are unlinked. This is a cache, so rows that can't be converted are simply dropped.
+ */
+public class V2__CompactSearchResults implements JdbcMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(V2__CompactSearchResults.class);
+
+    private static final int FETCH_SIZE = 100;
+
+    private static final String SELECT
+            = "SELECT provider, search_term, search_result "
+            + "FROM search_results "
+            + "WHERE search_result IS NOT NULL";
+
+    private static final String UPDATE
+            = "UPDATE search_results SET search_result = ? WHERE provider = ? AND search_term = ?";
+
+    private static final String DELETE
+            = "DELETE FROM search_results WHERE provider = ? AND search_term = ?";
+
+    private static final String UNLINK
+            = "SELECT lo_unlink(?)";
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        int converted = 0;
+        int dropped = 0;
+
+        try (Statement select = connection.createStatement();
+             PreparedStatement update = connection.prepareStatement(UPDATE);
+             PreparedStatement delete = connection.prepareStatement(DELETE);
+             PreparedStatement unlink = connection.prepareStatement(UNLINK)) {
+            //stream the rows instead of loading all of them into memory; requires the transaction flyway runs us in
+            select.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet searchResults = select.executeQuery(SELECT)) {
+                while (searchResults.next()) {
+                    String provider = searchResults.getString(1);
+                    String searchTerm = searchResults.getString(2);
+                    long oid = searchResults.getLong(3);
+                    Blob blob = searchResults.getBlob(3);
+                    byte[] payload = blob.getBytes(1, (int) blob.length());
+                    blob.free();
+
+                    if (SearchResultCodec.isCurrentFormat(payload)) {
+                        continue;
+                    }
+
+                    byte[] reencoded;
+                    try {
+                        reencoded = SearchResultCodec.reencode(payload);
+                    } catch (IllegalArgumentException e) {
+                        log.debug("Dropping search result {} {} that could not be converted", provider, searchTerm, e);
+                        delete.setString(1, provider);
+                        delete.setString(2, searchTerm);
+                        delete.executeUpdate();
+                        unlink(unlink, oid);
+                        dropped++;
+                        continue;
+                    }
+
+                    update.setBlob(1, new ByteArrayInputStream(reencoded), reencoded.length);
+                    update.setString(2, provider);
+                    update.setString(3, searchTerm);
+                    update.executeUpdate();
+                    unlink(unlink, oid);
+                    converted++;
+                }
+            }
+        }
+
+        log.info("Converted {} search results to the compact format, dropped {} unreadable ones", converted, dropped);
+    }
+
+    private static void unlink(PreparedStatement unlink, long oid) throws SQLException {
+        unlink.setLong(1, oid);
+        try (ResultSet ignored = unlink.executeQuery()) {
+            //lo_unlink returns 1 on success, there is nothing else to do
+        }
+    }
+}
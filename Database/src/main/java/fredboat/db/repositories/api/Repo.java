@@ -25,6 +25,9 @@
 
 package fredboat.db.repositories.api;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Created by napster on 05.02.18.
  */
@@ -47,4 +50,21 @@ public interface Repo<I, E> {
      * @return the merged entity
      */
     E merge(E entity);
+
+    /**
+     * Bulk version of {@link Repo#fetch(Object)}.
+     *
+     * @param ids ids of the entities that shall be returned
+     * @return the entities of the provided ids, in no particular order. Just like {@link Repo#fetch(Object)}, a default
+     * entity is returned for each id that has no entity in the database.
+     */
+    List<E> fetchAll(Collection<I> ids);
+
+    /**
+     * Bulk version of {@link Repo#merge(Object)}.
+     *
+     * @param entities entities to be merged into the database
+     * @return the merged entities
+     */
+    List<E> mergeAll(Collection<E> entities);
 }
@@ -31,6 +31,9 @@ import space.npstr.sqlsauce.entities.SaucedEntity;
 import space.npstr.sqlsauce.fp.types.EntityKey;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by napster on 05.02.18.
@@ -67,4 +70,22 @@ public abstract class SqlSauceRepo<I extends Serializable, E extends SaucedEntit
     public E merge(E entity) {
         return dbWrapper.merge(entity);
     }
+
+    @Override
+    public List<E> fetchAll(Collection<I> ids) {
+        List<E> fetched = new ArrayList<>(ids.size());
+        for (I id : ids) {
+            fetched.add(fetch(id));
+        }
+        return fetched;
+    }
+
+    @Override
+    public List<E> mergeAll(Collection<E> entities) {
+        List<E> merged = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            merged.add(merge(entity));
+        }
+        return merged;
+    }
 }
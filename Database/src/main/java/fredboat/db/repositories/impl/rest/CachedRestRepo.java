@@ -35,20 +35,36 @@ import io.prometheus.client.guava.cache.CacheMetricsCollector;
 import space.npstr.sqlsauce.entities.SaucedEntity;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Created by napster on 18.02.18.
+ * <p>
+ * Cache misses of single entities are not fetched one by one, but go through a {@link FetchBatcher}, so that misses
+ * happening at about the same time (like when a shard reconnects and all its guilds need their entities) are fetched
+ * with a few bulk requests instead of one request each.
  */
 public abstract class CachedRestRepo<I extends Serializable, E extends SaucedEntity<I, E>> extends RestRepo<I, E> {
 
     protected final LoadingCache<I, E> cache;
+    private final FetchBatcher<I, E> batcher;
 
     /**
      * Create the CachedRestRepo using a default cache
+     *
+     * @param fetchExecutor runs the bulk fetches of cache misses
+     * @param batchTimer    dispatches the batches of cache misses when their delay has passed
      */
-    public CachedRestRepo(String path, Class<E> entityClass, Http http, Gson gson, String auth) {
-        this(path, entityClass, http, gson, auth,
+    public CachedRestRepo(String path, Class<E> entityClass, Http http, Gson gson, String auth, Executor fetchExecutor,
+                          ScheduledExecutorService batchTimer) {
+        this(path, entityClass, http, gson, auth, fetchExecutor, batchTimer,
                 CacheBuilder.newBuilder()
                         .expireAfterAccess(60, TimeUnit.SECONDS)
                         .expireAfterWrite(120, TimeUnit.SECONDS)
@@ -56,9 +72,23 @@ public abstract class CachedRestRepo<I extends Serializable, E extends SaucedEnt
         );
     }
 
-    public CachedRestRepo(String path, Class<E> entityClass, Http http, Gson gson, String auth, CacheBuilder<Object, Object> cacheBuilder) {
+    public CachedRestRepo(String path, Class<E> entityClass, Http http, Gson gson, String auth, Executor fetchExecutor,
+                          ScheduledExecutorService batchTimer, CacheBuilder<Object, Object> cacheBuilder) {
         super(path, entityClass, http, gson, auth);
-        this.cache = cacheBuilder.build(CacheLoader.from(super::fetch));
+        this.batcher = new FetchBatcher<>(this::fetchAllById, fetchExecutor, batchTimer);
+        this.cache = cacheBuilder.build(new CacheLoader<I, E>() {
+            @Override
+            public E load(I id) {
+                return batcher.fetch(id);
+            }
+
+            @Override
+            public Map<I, E> loadAll(Iterable<? extends I> ids) {
+                List<I> toFetch = new ArrayList<>();
+                ids.forEach(toFetch::add);
+                return fetchAllById(toFetch);
+            }
+        });
     }
 
     /**
@@ -88,4 +118,27 @@ public abstract class CachedRestRepo<I extends Serializable, E extends SaucedEnt
         cache.put(merged.getId(), merged);
         return merged;
     }
+
+    @Override
+    public List<E> fetchAll(Collection<I> ids) {
+        return new ArrayList<>(CacheUtil.getAllUncheckedUnwrapped(cache, ids).values());
+    }
+
+    @Override
+    public List<E> mergeAll(Collection<E> entities) {
+        List<E> merged = super.mergeAll(entities);
+        for (E entity : merged) {
+            cache.put(entity.getId(), entity);
+        }
+        return merged;
+    }
+
+    private Map<I, E> fetchAllById(Collection<I> ids) {
+        List<E> fetched = super.fetchAll(ids);
+        Map<I, E> result = new HashMap<>(fetched.size() * 2);
+        for (E entity : fetched) {
+            result.put(entity.getId(), entity);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.db.repositories.impl.rest;
+
+import com.google.common.base.Throwables;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Turns single fetches into bulk fetches.
+ * <p>
+ * Concurrent fetches of the same id are collapsed into a single one (single flight). Fetches of different ids that arrive
+ * within a few milliseconds of each other are collected into a batch, which is then loaded with a single bulk request.
+ * A batch is dispatched when its delay has passed or when it is full, whatever happens first.
+ * <p>
+ * The bulk requests run on the provided executor. The timer only hands batches over to the executor and never runs a
+ * request itself: batches that the executor rejects fail their fetches.
+ */
+public class FetchBatcher<I, E> {
+
+    static final long DEFAULT_DELAY_MILLIS = 5;
+    static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    private final Function<Collection<I>, Map<I, E>> bulkFetch;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final long delayMillis;
+    private final int maxBatchSize;
+
+    //fetches that have been requested but not completed yet, by their id
+    private final ConcurrentHashMap<I, CompletableFuture<E>> inFlight = new ConcurrentHashMap<>();
+    //the batch that is currently collecting ids
+    private Map<I, CompletableFuture<E>> collecting = new LinkedHashMap<>();
+
+    /**
+     * @param bulkFetch fetches the entities of the provided ids, mapped by their id. Ids that are missing in the returned
+     *                  map fail their fetch.
+     * @param executor  runs the bulk fetches. It should reject fetches it cannot take instead of running them on the
+     *                  submitting thread, which may be the timer.
+     * @param timer     dispatches batches whose delay has passed
+     */
+    public FetchBatcher(Function<Collection<I>, Map<I, E>> bulkFetch, Executor executor,
+                        ScheduledExecutorService timer) {
+        this(bulkFetch, executor, timer, DEFAULT_DELAY_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public FetchBatcher(Function<Collection<I>, Map<I, E>> bulkFetch, Executor executor,
+                        ScheduledExecutorService timer, long delayMillis, int maxBatchSize) {
+        this.bulkFetch = bulkFetch;
+        this.executor = executor;
+        this.timer = timer;
+        this.delayMillis = delayMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Blocks until the entity of the provided id has been fetched as part of a batch.
+     *
+     * @throws RuntimeException whatever the bulk fetch threw
+     */
+    public E fetch(I id) {
+        try {
+            return fetchAsync(id).join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    public CompletableFuture<E> fetchAsync(I id) {
+        CompletableFuture<E> future = new CompletableFuture<>();
+        CompletableFuture<E> existing = inFlight.putIfAbsent(id, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        Map<I, CompletableFuture<E>> full = null;
+        Map<I, CompletableFuture<E>> started = null;
+        synchronized (this) {
+            Map<I, CompletableFuture<E>> batch = collecting;
+            batch.put(id, future);
+            if (batch.size() >= maxBatchSize) {
+                collecting = new LinkedHashMap<>();
+                full = batch;
+            } else if (batch.size() == 1) {
+                started = batch;
+            }
+        }
+        if (full != null) {
+            handOver(full);
+        } else if (started != null) {
+            schedule(started);
+        }
+        return future;
+    }
+
+    private void schedule(Map<I, CompletableFuture<E>> batch) {
+        try {
+            timer.schedule(() -> dispatchIfCollecting(batch), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            //the timer is shut down, don't leave the batch waiting for a dispatch that never happens
+            dispatchIfCollecting(batch);
+        }
+    }
+
+    private void dispatchIfCollecting(Map<I, CompletableFuture<E>> batch) {
+        synchronized (this) {
+            if (collecting != batch) {
+                return; //was dispatched already for being full
+            }
+            collecting = new LinkedHashMap<>();
+        }
+        handOver(batch);
+    }
+
+    private void handOver(Map<I, CompletableFuture<E>> batch) {
+        try {
+            executor.execute(() -> dispatch(batch));
+        } catch (RejectedExecutionException e) {
+            complete(batch, e);
+        }
+    }
+
+    private void dispatch(Map<I, CompletableFuture<E>> batch) {
+        Throwable failure = null;
+        try {
+            Map<I, E> fetched = bulkFetch.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((id, future) -> {
+                E entity = fetched.get(id);
+                if (entity != null) {
+                    future.complete(entity);
+                }
+            });
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            complete(batch, failure);
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Fails all fetches of the batch that have not been completed, and lets following fetches of its ids start over.
+     *
+     * @param failure the reason of the failure, or null if the bulk fetch did not return the entities of the fetches
+     */
+    private void complete(Map<I, CompletableFuture<E>> batch, @Nullable Throwable failure) {
+        batch.forEach((id, future) -> {
+            inFlight.remove(id, future);
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.completeExceptionally(new BackendException("Bulk fetch did not return an entity for id " + id));
+            }
+        });
+    }
+}
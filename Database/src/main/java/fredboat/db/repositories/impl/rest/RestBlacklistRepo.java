@@ -34,7 +34,10 @@ import fredboat.util.rest.Http;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Created by napster on 17.02.18.
@@ -43,8 +46,9 @@ public class RestBlacklistRepo extends CachedRestRepo<Long, BlacklistEntry> impl
 
     public static final String PATH = "blacklist/";
 
-    public RestBlacklistRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, BlacklistEntry.class, http, gson, auth);
+    public RestBlacklistRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                             ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, BlacklistEntry.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
 
@@ -66,4 +70,15 @@ public class RestBlacklistRepo extends CachedRestRepo<Long, BlacklistEntry> impl
             throw new BackendException("Could not load the blacklist", e);
         }
     }
+
+    @Override
+    public List<BlacklistEntry> mergeAll(Collection<BlacklistEntry> entries) {
+        List<BlacklistEntry> merged = super.mergeAll(entries);
+        //cache the provided entries instead of the merged ones: the blacklist synchronizes on the cached entries
+        // and keeps changing them while they are being merged
+        for (BlacklistEntry entry : entries) {
+            cache.put(entry.getId(), entry);
+        }
+        return merged;
+    }
 }
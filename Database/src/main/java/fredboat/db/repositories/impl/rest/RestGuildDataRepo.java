@@ -31,6 +31,9 @@ import fredboat.db.repositories.api.GuildDataRepo;
 import fredboat.util.rest.Http;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Created by napster on 17.02.18.
  */
@@ -38,8 +41,9 @@ public class RestGuildDataRepo extends CachedRestRepo<Long, GuildData> implement
 
     public static final String PATH = "guilddata/";
 
-    public RestGuildDataRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, GuildData.class, http, gson, auth);
+    public RestGuildDataRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                             ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, GuildData.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
     @Override
@@ -31,6 +31,9 @@ import fredboat.db.repositories.api.GuildModulesRepo;
 import fredboat.util.rest.Http;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Created by napster on 17.02.18.
  */
@@ -38,8 +41,9 @@ public class RestGuildModulesRepo extends CachedRestRepo<Long, GuildModules> imp
 
     public static final String PATH = "guildmodules/";
 
-    public RestGuildModulesRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, GuildModules.class, http, gson, auth);
+    public RestGuildModulesRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                                ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, GuildModules.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
     @Override
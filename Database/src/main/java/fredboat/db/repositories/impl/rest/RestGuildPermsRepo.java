@@ -31,6 +31,9 @@ import fredboat.db.repositories.api.GuildPermsRepo;
 import fredboat.util.rest.Http;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Created by napster on 17.02.18.
  */
@@ -38,8 +41,9 @@ public class RestGuildPermsRepo extends CachedRestRepo<String, GuildPermissions>
 
     public static final String PATH = "guildperms/";
 
-    public RestGuildPermsRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, GuildPermissions.class, http, gson, auth);
+    public RestGuildPermsRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                              ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, GuildPermissions.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
     @Override
@@ -35,6 +35,8 @@ import space.npstr.sqlsauce.entities.GuildBotComposite;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Created by napster on 17.02.18.
@@ -43,8 +45,9 @@ public class RestPrefixRepo extends CachedRestRepo<GuildBotComposite, Prefix> im
 
     public static final String PATH = "prefix/";
 
-    public RestPrefixRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, Prefix.class, http, gson, auth);
+    public RestPrefixRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                          ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, Prefix.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
     @Override
@@ -27,14 +27,20 @@ package fredboat.db.repositories.impl.rest;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
 import fredboat.db.repositories.api.Repo;
 import fredboat.util.rest.Http;
+import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import space.npstr.sqlsauce.entities.SaucedEntity;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by napster on 17.02.18.
@@ -53,6 +59,11 @@ public abstract class RestRepo<I extends Serializable, E extends SaucedEntity<I,
     protected final Http http;
     protected final Gson gson;
     protected final String auth;
+    protected final Type entityListType;
+
+    //whether the backend has the bulk endpoints
+    private volatile boolean bulkFetchSupported = true;
+    private volatile boolean bulkMergeSupported = true;
 
     /**
      * @param path base path of this resource, including the version and a trailing slash
@@ -64,6 +75,7 @@ public abstract class RestRepo<I extends Serializable, E extends SaucedEntity<I,
         this.http = http;
         this.gson = gson;
         this.auth = auth;
+        this.entityListType = TypeToken.getParameterized(List.class, entityClass).getType();
     }
 
     public Class<E> getEntityClass() {
@@ -83,6 +95,11 @@ public abstract class RestRepo<I extends Serializable, E extends SaucedEntity<I,
 
     @Override
     public E fetch(I id) {
+        return fetchOne(id);
+    }
+
+    //not overridable, so that the bulk fallbacks do not loop back through the caches of subclasses
+    private E fetchOne(I id) {
         try {
             Http.SimpleRequest fetch = http.post(path + "fetch", gson.toJson(id), "application/json");
             return gson.fromJson(auth(fetch).asString(), entityClass);
@@ -93,6 +110,10 @@ public abstract class RestRepo<I extends Serializable, E extends SaucedEntity<I,
 
     @Override
     public E merge(E entity) {
+        return mergeOne(entity);
+    }
+
+    private E mergeOne(E entity) {
         try {
             Http.SimpleRequest merge = http.post(path + "merge", gson.toJson(entity), "application/json");
             return gson.fromJson(auth(merge).asString(), entityClass);
@@ -101,6 +122,67 @@ public abstract class RestRepo<I extends Serializable, E extends SaucedEntity<I,
         }
     }
 
+    /**
+     * Falls back to fetching the entities one by one if the backend does not know about bulk fetches.
+     */
+    @Override
+    public List<E> fetchAll(Collection<I> ids) {
+        if (bulkFetchSupported) {
+            try {
+                Http.SimpleRequest fetchAll = http.post(path + "fetchall", gson.toJson(ids), "application/json");
+                try (Response response = auth(fetchAll).execute()) {
+                    if (!isNotSupported(response)) {
+                        //noinspection ConstantConditions
+                        return gson.fromJson(response.body().string(), entityListType);
+                    }
+                }
+            } catch (IOException | JsonSyntaxException e) {
+                throw new BackendException(String.format("Could not fetch %s entities of class %s", ids.size(), entityClass), e);
+            }
+            bulkFetchSupported = false;
+            log.warn("Backend does not support bulk fetches of {}, fetching them one by one from now on", entityClass);
+        }
+
+        List<E> fetched = new ArrayList<>(ids.size());
+        for (I id : ids) {
+            fetched.add(fetchOne(id));
+        }
+        return fetched;
+    }
+
+    /**
+     * Falls back to merging the entities one by one if the backend does not know about bulk merges.
+     */
+    @Override
+    public List<E> mergeAll(Collection<E> entities) {
+        if (bulkMergeSupported) {
+            try {
+                Http.SimpleRequest mergeAll = http.post(path + "mergeall", gson.toJson(entities), "application/json");
+                try (Response response = auth(mergeAll).execute()) {
+                    if (!isNotSupported(response)) {
+                        //noinspection ConstantConditions
+                        return gson.fromJson(response.body().string(), entityListType);
+                    }
+                }
+            } catch (IOException | JsonSyntaxException e) {
+                throw new BackendException(String.format("Could not merge %s entities of class %s", entities.size(), entityClass), e);
+            }
+            bulkMergeSupported = false;
+            log.warn("Backend does not support bulk merges of {}, merging them one by one from now on", entityClass);
+        }
+
+        List<E> merged = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            merged.add(mergeOne(entity));
+        }
+        return merged;
+    }
+
+    //older backends answer requests to endpoints they do not have with one of these
+    private static boolean isNotSupported(Response response) {
+        return response.code() == 404 || response.code() == 405;
+    }
+
     /**
      * @return the provided request but authed
      */
@@ -34,6 +34,8 @@ import io.prometheus.client.guava.cache.CacheMetricsCollector;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Created by napster on 17.02.18.
@@ -42,8 +44,9 @@ public class RestSearchResultRepo extends CachedRestRepo<SearchResult.SearchResu
 
     public static final String PATH = "searchresult/";
 
-    public RestSearchResultRepo(String apiBasePath, Http http, Gson gson, String auth) {
-        super(apiBasePath + VERSION_PATH + PATH, SearchResult.class, http, gson, auth);
+    public RestSearchResultRepo(String apiBasePath, Http http, Gson gson, String auth, Executor fetchExecutor,
+                                ScheduledExecutorService batchTimer) {
+        super(apiBasePath + VERSION_PATH + PATH, SearchResult.class, http, gson, auth, fetchExecutor, batchTimer);
     }
 
     @Override
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat;
+
+import fredboat.config.property.AppConfig;
+import fredboat.shared.constant.DistributionEnum;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A fixed config to be used in benchmarks, with everything turned to the cheapest setting that still exercises the
+ * benchmarked code.
+ */
+public class BenchmarkConfig implements AppConfig {
+
+    private boolean slidingWindowRatelimits = true;
+
+    public void setSlidingWindowRatelimits(boolean slidingWindowRatelimits) {
+        this.slidingWindowRatelimits = slidingWindowRatelimits;
+    }
+
+    @Override
+    public DistributionEnum getDistribution() {
+        return DistributionEnum.DEVELOPMENT;
+    }
+
+    @Override
+    public List<Long> getAdminIds() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean useAutoBlacklist() {
+        return false;
+    }
+
+    @Override
+    public int getPlayerLimit() {
+        return -1;
+    }
+
+    @Override
+    public String getGame() {
+        return "";
+    }
+
+    @Override
+    public boolean getContinuePlayback() {
+        return false;
+    }
+
+    @Override
+    public int getGuildLoadingConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public int getGlobalLoadingConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public boolean useSlidingWindowRatelimits() {
+        return slidingWindowRatelimits;
+    }
+
+    //playlist imports are not benchmarked, keep the searches sequential
+    @Override
+    public int getPlaylistSearchConcurrency() {
+        return 1;
+    }
+
+    //benchmarks create the executors they need themselves, these settings only have to be valid
+    @Override
+    public int getExecutorThreads() {
+        return 1;
+    }
+
+    @Override
+    public int getExecutorQueueSize() {
+        return 1;
+    }
+
+    @Override
+    public boolean useVirtualThreads() {
+        return false;
+    }
+
+    //run commands on the calling thread, so that their cost shows up in the measured thread
+    @Override
+    public boolean useAsyncCommands() {
+        return false;
+    }
+
+    //no reuse of collected metrics, every collection is measured
+    @Override
+    public long getMetricsSnapshotMillis() {
+        return 0;
+    }
+
+    //the production default, it is clamped to at least 1 anyways
+    @Override
+    public int getStatsSnapshotSeconds() {
+        return 10;
+    }
+
+    //the fixed size sketch, which is what runs in production
+    @Override
+    public boolean useExactUserCount() {
+        return false;
+    }
+}
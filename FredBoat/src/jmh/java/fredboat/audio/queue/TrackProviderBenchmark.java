@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.audio.queue;
+
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SimpleTrackProvider} with the {@link IndexedTrackProvider} for the operations that are triggered
+ * by track transitions, the list command, and skipping tracks by index.
+ * <p>
+ * Every benchmark that removes a track adds a fresh one back to keep the queue size stable. This also dirties the
+ * shuffled queue, which is exactly what happens during regular usage of a guild player.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackProviderBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"simple", "indexed"})
+    public String provider;
+
+    @Param({"100", "1000", "10000"})
+    public int tracks;
+
+    @Param({"false", "true"})
+    public boolean shuffle;
+
+    private AbstractTrackProvider trackProvider;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        trackProvider = "simple".equals(provider) ? new SimpleTrackProvider() : new IndexedTrackProvider();
+        trackProvider.setShuffle(shuffle);
+        for (int i = 0; i < tracks; i++) {
+            trackProvider.add(newTrack(i));
+        }
+    }
+
+    /**
+     * A track transition
+     */
+    @Benchmark
+    public AudioTrackContext provideAndRequeue() {
+        AudioTrackContext atc = trackProvider.provideAudioTrack();
+        trackProvider.add(newTrack(0));
+        return atc;
+    }
+
+    /**
+     * A queue change followed by a ;;list page from the middle of the queue
+     */
+    @Benchmark
+    public List<AudioTrackContext> addAndListPage() {
+        AudioTrackContext atc = newTrack(0);
+        trackProvider.add(atc);
+        List<AudioTrackContext> page = trackProvider.getTracksInRange(tracks / 2, tracks / 2 + PAGE_SIZE);
+        trackProvider.remove(atc);
+        return page;
+    }
+
+    /**
+     * A ;;skip n command
+     */
+    @Benchmark
+    public void skipByIndex(Blackhole blackhole) {
+        AudioTrackContext atc = trackProvider.getTrack(tracks / 2);
+        trackProvider.removeAllById(Collections.singletonList(atc.getTrackId()));
+        trackProvider.add(newTrack(0));
+        blackhole.consume(atc);
+    }
+
+    private static AudioTrackContext newTrack(int i) {
+        AudioTrackInfo info = new AudioTrackInfo("Track " + i, "Benchmark", 180_000, "id" + i, false,
+                "https://www.youtube.com/watch?v=id" + i);
+        return new AudioTrackContext(null, new YoutubeAudioTrack(info, null), 1L, 2L);
+    }
+}
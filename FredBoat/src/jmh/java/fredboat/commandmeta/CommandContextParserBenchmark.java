@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.commandmeta;
+
+import fredboat.commandmeta.abs.Command;
+import fredboat.commandmeta.abs.CommandContext;
+import fredboat.definitions.Module;
+import fredboat.messaging.internal.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures {@link CommandContextParser#parse(String, long, String, String)} over a corpus of chat messages, most of
+ * which are regular chatter that never reaches the tokenizer. The rest are commands with aliases, odd casing, unicode
+ * whitespace and mentions of the bot.
+ * <p>
+ * The corpus contains no unknown commands on purpose, those are logged and would end up measuring the logger.
+ * <p>
+ * The {@link #regexSplit()} benchmark is the previous regex based mention matching and tokenization, without the
+ * command lookup, as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandContextParserBenchmark {
+
+    private static final long SELF_ID = 184405311681986560L;
+    private static final String PREFIX = ";;";
+    private static final Pattern MENTION_PREFIX = Pattern.compile("^(<@!?([0-9]+)>)(.*)$", Pattern.DOTALL);
+
+    private static final String[] CORPUS = {
+            "lol",
+            "did anyone see the match yesterday?",
+            "brb",
+            "<@81011298891993088> are you coming tonight",
+            ";;play https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "that song is so good",
+            "ok",
+            "can someone link the playlist from last week, i lost it",
+            "<@!184405311681986560> queue",
+            "haha yeah",
+            "¯\\_(ツ)_/¯",
+            ";;SKIP 3",
+            "i'll be on in 10 minutes",
+            "who changed the server icon",
+            "nice",
+            ";;vol 50",
+            "gg",
+            "wait what\nwhy would you do that",
+            "<@184405311681986560>",
+            "anyone up for some games",
+            "pls no",
+            ";;p never gonna give you up  rick astley",
+            "https://imgur.com/gallery/abcdef",
+            "thanks!",
+            "too loud lmao",
+            ";;  list",
+            "good night everyone",
+            "o/",
+            ";;help play",
+            "omg",
+    };
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        CommandRegistry music = new CommandRegistry(Module.MUSIC);
+        music.registerCommand(new BenchmarkCommand("play", "p"));
+        music.registerCommand(new BenchmarkCommand("skip", "sk", "s"));
+        music.registerCommand(new BenchmarkCommand("volume", "vol"));
+        music.registerCommand(new BenchmarkCommand("list", "queue", "q"));
+        CommandRegistry info = new CommandRegistry(Module.INFO);
+        info.registerCommand(new BenchmarkCommand("help", "info"));
+        CommandRegistry config = new CommandRegistry(Module.CONFIG);
+        config.registerCommand(new BenchmarkCommand("prefix", "pre"));
+        CommandRegistry.buildTriggerIndex();
+    }
+
+    private String nextMessage() {
+        String message = CORPUS[next];
+        next = (next + 1) % CORPUS.length;
+        return message;
+    }
+
+    @Benchmark
+    public Object parse() {
+        return CommandContextParser.parse(nextMessage(), SELF_ID, PREFIX, PREFIX);
+    }
+
+    @Benchmark
+    public Object regexSplit() {
+        String raw = nextMessage();
+        String input;
+        Matcher mentionMatcher = MENTION_PREFIX.matcher(raw);
+        if (mentionMatcher.find() && mentionMatcher.group(2).equals(Long.toString(SELF_ID))) {
+            input = mentionMatcher.group(3).trim();
+        } else if (raw.startsWith(PREFIX)) {
+            input = raw.substring(PREFIX.length()).trim();
+        } else {
+            return null;
+        }
+        if (input.isEmpty()) {
+            return null;
+        }
+        String[] args = input.split("\\p{javaSpaceChar}+");
+        return input.replaceFirst(args[0], "").trim();
+    }
+
+    private static class BenchmarkCommand extends Command {
+        private BenchmarkCommand(String name, String... aliases) {
+            super(name, aliases);
+        }
+
+        @Override
+        public void onInvoke(@Nonnull CommandContext context) {
+        }
+
+        @Nonnull
+        @Override
+        public String help(@Nonnull Context context) {
+            return "";
+        }
+    }
+}
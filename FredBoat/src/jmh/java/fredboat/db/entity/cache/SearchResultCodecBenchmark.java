@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.db.entity.cache;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import org.apache.commons.lang3.SerializationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SearchResultCodec} with the java serialization that search results used to be stored with.
+ * <p>
+ * The stored byte sizes of the formats are logged when setting up each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResultCodecBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchResultCodecBenchmark.class);
+
+    @Param({"5", "25"})
+    public int tracks;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private AudioPlayerManager playerManager;
+    private SearchResult.SerializableAudioPlaylist playlist;
+    private byte[] javaSerialized;
+    private byte[] compact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        playerManager = new DefaultAudioPlayerManager();
+        YoutubeAudioSourceManager youtube = new YoutubeAudioSourceManager();
+        playerManager.registerSourceManager(youtube);
+
+        List<AudioTrack> searchResult = new ArrayList<>();
+        for (int i = 0; i < tracks; i++) {
+            String identifier = String.format("dQw4w9WgX%02d", i);
+            AudioTrackInfo info = new AudioTrackInfo("Rick Astley - Never Gonna Give You Up (Video) " + i,
+                    "RickAstleyVEVO", 213_000, identifier, false, "https://www.youtube.com/watch?v=" + identifier);
+            searchResult.add(new YoutubeAudioTrack(info, youtube));
+        }
+        playlist = new SearchResult.SerializableAudioPlaylist(playerManager,
+                new BasicAudioPlaylist("Search results for: never gonna give you up", searchResult, null, true));
+
+        javaSerialized = SerializationUtils.serialize(playlist);
+        compact = SearchResultCodec.encode(playlist, compress);
+        log.info("Stored bytes for {} tracks: java serialization {}, compact{} {}",
+                tracks, javaSerialized.length, compress ? " (compressed)" : "", compact.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        playerManager.shutdown();
+    }
+
+    @Benchmark
+    public byte[] javaSerializationEncode() {
+        return SerializationUtils.serialize(playlist);
+    }
+
+    @Benchmark
+    public SearchResult.SerializableAudioPlaylist javaSerializationDecode() {
+        return SerializationUtils.deserialize(javaSerialized);
+    }
+
+    @Benchmark
+    public byte[] compactEncode() {
+        return SearchResultCodec.encode(playlist, compress);
+    }
+
+    @Benchmark
+    public SearchResult.SerializableAudioPlaylist compactDecode() {
+        return SearchResultCodec.decode(compact);
+    }
+}
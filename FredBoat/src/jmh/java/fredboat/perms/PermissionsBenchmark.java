@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.perms;
+
+import fredboat.definitions.PermissionLevel;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.impl.GuildImpl;
+import net.dv8tion.jda.core.entities.impl.MemberImpl;
+import net.dv8tion.jda.core.entities.impl.RoleImpl;
+import net.dv8tion.jda.core.entities.impl.UserImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving the level of a member from the guild permission lists, as done for every permission check
+ * before, with a lookup in {@link CompiledGuildPermissions}.
+ * <p>
+ * The {@link #lists()} benchmark splits the stored lists and walks them for each level, like the entity getters and
+ * {@link PermsUtil#checkList(List, Member)} do. The member is a DJ through their last role, so the admin and DJ lists
+ * are walked completely. A command used to resolve the level up to three times (module check, restricted commands and
+ * the command itself), which the {@link fredboat.commandmeta.abs.CommandContext} now memoizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionsBenchmark {
+
+    private static final long GUILD_ID = 174820236481134592L;
+    private static final long USER_ID = 81011298891993088L;
+    private static final int MEMBER_ROLES = 5;
+
+    //ids per permission list
+    @Param({"2", "20", "200"})
+    public int entries;
+
+    private String adminList;
+    private String djList;
+    private String userList;
+    private Member member;
+    private CompiledGuildPermissions compiled;
+
+    @Setup
+    public void setUp() {
+        GuildImpl guild = new GuildImpl(null, GUILD_ID);
+        guild.getRolesMap().put(GUILD_ID, new RoleImpl(GUILD_ID, guild));
+        long nextId = GUILD_ID + 1;
+
+        List<String> admins = new ArrayList<>();
+        List<String> djs = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            admins.add(Long.toString(role(guild, nextId++).getIdLong()));
+            djs.add(Long.toString(role(guild, nextId++).getIdLong()));
+        }
+
+        MemberImpl memberImpl = new MemberImpl(guild, new UserImpl(USER_ID, null));
+        for (int i = 0; i < MEMBER_ROLES - 1; i++) {
+            memberImpl.getRoleSet().add(role(guild, nextId++));
+        }
+        memberImpl.getRoleSet().add(guild.getRoleById(djs.get(djs.size() - 1)));
+        member = memberImpl;
+
+        adminList = String.join(" ", admins);
+        djList = String.join(" ", djs);
+        userList = Long.toString(GUILD_ID);
+        compiled = CompiledGuildPermissions.compile(GUILD_ID, admins, djs, split(userList));
+    }
+
+    private static Role role(GuildImpl guild, long id) {
+        Role role = new RoleImpl(id, guild);
+        guild.getRolesMap().put(id, role);
+        return role;
+    }
+
+    @Benchmark
+    public PermissionLevel lists() {
+        if (checkList(split(adminList), member)) return PermissionLevel.ADMIN;
+        if (checkList(split(djList), member)) return PermissionLevel.DJ;
+        if (checkList(split(userList), member)) return PermissionLevel.USER;
+        return PermissionLevel.BASE;
+    }
+
+    @Benchmark
+    public PermissionLevel compiled() {
+        return compiled.getLevel(member);
+    }
+
+    private static List<String> split(String list) {
+        return Arrays.asList(list.split(" "));
+    }
+
+    //PermsUtil#checkList without the discord permission check, which both variants do up front
+    private static boolean checkList(List<String> list, Member member) {
+        for (String id : list) {
+            if (id.isEmpty()) continue;
+
+            if (id.equals(member.getUser().getId())) return true;
+
+            Role role = member.getGuild().getRoleById(id);
+            if (role != null &&
+                    (role.isPublicRole() || member.getRoles().contains(role)))
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.util.ratelimit;
+
+import fredboat.BenchmarkConfig;
+import fredboat.commandmeta.abs.Command;
+import fredboat.commandmeta.abs.CommandContext;
+import fredboat.messaging.MessageFuture;
+import fredboat.messaging.internal.Context;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.entities.impl.GuildImpl;
+import net.dv8tion.jda.core.entities.impl.UserImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link Ratelimiter#isRatelimited(Context, Object)} with 64 threads checking commands of
+ * users out of a shared pool, so that threads regularly contend for the rates of the same users and guilds.
+ * <p>
+ * Most of the requests end up being limited after a short while, which is the worst case for the ratelimiter anyways:
+ * spamming users are what the ratelimits are there for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class RatelimiterBenchmark {
+
+    private static final int CONTEXTS_PER_THREAD = 1024;
+    private static final Command COMMAND = new BenchmarkCommand();
+
+    @Param({"timestamps", "sliding-window"})
+    public String engine;
+
+    @Param({"100", "10000"})
+    public int users;
+
+    private Ratelimiter ratelimiter;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        BenchmarkConfig benchmarkConfig = new BenchmarkConfig();
+        benchmarkConfig.setSlidingWindowRatelimits("sliding-window".equals(engine));
+        executor = Executors.newSingleThreadExecutor();
+        ratelimiter = new Ratelimiter(benchmarkConfig, executor, null,
+                new CacheMetricsCollector());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+        private final Context[] contexts = new Context[CONTEXTS_PER_THREAD];
+        private int next = 0;
+
+        @Setup
+        public void setUp(RatelimiterBenchmark benchmark) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < contexts.length; i++) {
+                long userId = 1 + random.nextInt(benchmark.users);
+                //every guild has ten users
+                contexts[i] = new BenchmarkContext(userId, 1 + userId / 10);
+            }
+        }
+
+        private Context next() {
+            Context context = contexts[next];
+            next = (next + 1) % contexts.length;
+            return context;
+        }
+    }
+
+    @Benchmark
+    public boolean isRatelimited(Requests requests) {
+        return ratelimiter.isRatelimited(requests.next(), COMMAND);
+    }
+
+    private static class BenchmarkContext extends Context {
+        private static final MessageFuture NO_REPLY = new MessageFuture();
+
+        private final User user;
+        private final Guild guild;
+
+        private BenchmarkContext(long userId, long guildId) {
+            this.user = new UserImpl(userId, null);
+            this.guild = new GuildImpl(null, guildId);
+        }
+
+        @Override
+        public TextChannel getTextChannel() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Guild getGuild() {
+            return guild;
+        }
+
+        @Override
+        public Member getMember() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public User getUser() {
+            return user;
+        }
+
+        @Nonnull
+        @Override
+        public String i18n(@Nonnull String key) {
+            return key;
+        }
+
+        //don't measure sending messages to discord
+        @Override
+        public MessageFuture replyWithMention(String message) {
+            return NO_REPLY;
+        }
+    }
+
+    private static class BenchmarkCommand extends Command {
+        private BenchmarkCommand() {
+            super("benchmark");
+        }
+
+        @Override
+        public void onInvoke(@Nonnull CommandContext context) {
+        }
+
+        @Nonnull
+        @Override
+        public String help(@Nonnull Context context) {
+            return "";
+        }
+    }
+}
@@ -25,13 +25,13 @@
 
 package fredboat.agent;
 
+import fredboat.util.concurrent.InstrumentedScheduledThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -42,11 +42,12 @@ public abstract class FredBoatAgent implements Runnable {
 
     private static final Map<Class<? extends FredBoatAgent>, Long> LAST_RUN_TIME = new ConcurrentHashMap<>();
 
-    private static final ScheduledExecutorService AGENTS = Executors.newScheduledThreadPool(2, runnable -> {
-        Thread thread = new Thread(runnable, IDLE_NAME);
-        thread.setPriority(4);
-        return thread;
-    });
+    private static final ScheduledExecutorService AGENTS =
+            new InstrumentedScheduledThreadPoolExecutor("agents-scheduler", 2, runnable -> {
+                Thread thread = new Thread(runnable, IDLE_NAME);
+                thread.setPriority(4);
+                return thread;
+            });
 
     public static ScheduledExecutorService getScheduler() {
         return AGENTS;
@@ -25,116 +25,24 @@
 
 package fredboat.agent;
 
-import fredboat.audio.player.AudioConnectionFacade;
-import fredboat.audio.player.GuildPlayer;
-import fredboat.audio.player.PlayerRegistry;
-import fredboat.command.music.control.VoteSkipCommand;
-import fredboat.feature.metrics.Metrics;
-import fredboat.jda.GuildProvider;
-import net.dv8tion.jda.core.entities.Member;
-import net.dv8tion.jda.core.entities.VoiceChannel;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import fredboat.audio.player.VoiceConnectionTracker;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Closes voice connections that nobody has been listening to for a while, see {@link VoiceConnectionTracker}.
+ */
 public class VoiceChannelCleanupAgent extends FredBoatAgent {
 
-    private static final Logger log = LoggerFactory.getLogger(VoiceChannelCleanupAgent.class);
-    private static final HashMap<String, Long> VC_LAST_USED = new HashMap<>();
-    private static final int UNUSED_CLEANUP_THRESHOLD = 60000 * 60; // Effective when users are in the VC, but the player is not playing
-    private final PlayerRegistry playerRegistry;
-    private final GuildProvider guildProvider;
-    private final AudioConnectionFacade audioConnectionFacade;
+    private final VoiceConnectionTracker voiceConnectionTracker;
 
-    public VoiceChannelCleanupAgent(PlayerRegistry playerRegistry, GuildProvider guildProvider,
-                                    AudioConnectionFacade audioConnectionFacade) {
-        super("voice-cleanup", 10, TimeUnit.MINUTES);
-        this.playerRegistry = playerRegistry;
-        this.guildProvider = guildProvider;
-        this.audioConnectionFacade = audioConnectionFacade;
+    public VoiceChannelCleanupAgent(VoiceConnectionTracker voiceConnectionTracker) {
+        super("voice-cleanup", VoiceConnectionTracker.TICK_MILLIS, TimeUnit.MILLISECONDS);
+        this.voiceConnectionTracker = voiceConnectionTracker;
     }
 
     @Override
     public void doRun() {
-        try {
-            cleanup();
-        } catch (Exception e) {
-            log.error("Caught an exception while trying to clean up voice channels!", e);
-        }
+        voiceConnectionTracker.cleanup();
     }
-
-    private void cleanup(){
-        log.info("Checking guilds for stale voice connections.");
-
-        final AtomicInteger totalGuilds = new AtomicInteger(0);
-        final AtomicInteger totalVcs = new AtomicInteger(0);
-        final AtomicInteger closedVcs = new AtomicInteger(0);
-
-        guildProvider.streamGuilds().forEach(guild -> {
-            try {
-                totalGuilds.incrementAndGet();
-                if (guild != null
-                        && guild.getSelfMember() != null
-                        && guild.getSelfMember().getVoiceState() != null
-                        && guild.getSelfMember().getVoiceState().getChannel() != null) {
-
-                    totalVcs.incrementAndGet();
-                    VoiceChannel vc = guild.getSelfMember().getVoiceState().getChannel();
-
-                    if (getHumanMembersInVC(vc).size() == 0) {
-                        closedVcs.incrementAndGet();
-                        VoteSkipCommand.guildSkipVotes.remove(guild.getIdLong());
-                        audioConnectionFacade.closeConnection(guild);
-                        VC_LAST_USED.remove(vc.getId());
-                    } else if (isBeingUsed(vc)) {
-                        VC_LAST_USED.put(vc.getId(), System.currentTimeMillis());
-                    } else {
-                        // Not being used! But there are users in te VC. Check if we've been here for a while.
-
-                        if (!VC_LAST_USED.containsKey(vc.getId())) {
-                            VC_LAST_USED.put(vc.getId(), System.currentTimeMillis());
-                        }
-
-                        long lastUsed = VC_LAST_USED.get(vc.getId());
-
-                        if (System.currentTimeMillis() - lastUsed > UNUSED_CLEANUP_THRESHOLD) {
-                            closedVcs.incrementAndGet();
-                            audioConnectionFacade.closeConnection(guild);
-                            VC_LAST_USED.remove(vc.getId());
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Failed to check guild {} for stale voice connections", guild.getIdLong(), e);
-            }
-        });
-
-        log.info("Checked {} guilds for stale voice connections.", totalGuilds.get());
-        log.info("Closed {} of {} voice connections.", closedVcs.get(), totalVcs.get());
-        Metrics.voiceChannelsCleanedUp.inc(closedVcs.get());
-    }
-
-    private List<Member> getHumanMembersInVC(VoiceChannel vc){
-        ArrayList<Member> l = new ArrayList<>();
-
-        for(Member m : vc.getMembers()){
-            if(!m.getUser().isBot()){
-                l.add(m);
-            }
-        }
-
-        return l;
-    }
-
-    private boolean isBeingUsed(VoiceChannel vc) {
-        GuildPlayer guildPlayer = playerRegistry.getExisting(vc.getGuild());
-
-        return guildPlayer != null && guildPlayer.isPlaying();
-    }
-
 }
@@ -24,19 +24,26 @@
 
 package fredboat.api;
 
+import fredboat.feature.metrics.Metrics;
 import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
 import io.prometheus.client.exporter.common.TextFormat;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -46,23 +53,31 @@ import java.util.Set;
  * Created by napster on 18.10.17.
  * <p>
  * Used to expose the prometheus metrics with a reactive web server. Some code copied from prometheus own MetricsServlet
+ * <p>
+ * The exposition is written straight into the buffer of the response, without rendering it into a string first.
  */
 @RestController
 @RequestMapping("/metrics")
 public class MetricsController {
 
+    private static final MediaType CONTENT_TYPE = MediaType.parseMediaType(TextFormat.CONTENT_TYPE_004);
+
     private CollectorRegistry registry;
+    //size of the last exposition, to allocate a buffer that most likely won't have to grow
+    private volatile int lastSize = 64 * 1024;
 
     public MetricsController() {
         registry = CollectorRegistry.defaultRegistry;
     }
 
     @GetMapping(produces = TextFormat.CONTENT_TYPE_004)
-    public Mono<ResponseEntity<String>> getMetrics(@RequestParam(name = "name[]", required = false) String[] includedParam) {
-        return Mono.fromCallable(() -> buildAnswer(includedParam));
+    public Mono<Void> getMetrics(@RequestParam(name = "name[]", required = false) String[] includedParam,
+                                 ServerHttpResponse response) {
+        response.getHeaders().setContentType(CONTENT_TYPE);
+        return response.writeWith(Mono.fromCallable(() -> buildAnswer(response.bufferFactory(), includedParam)));
     }
 
-    private ResponseEntity<String> buildAnswer(String[] includedParam) throws IOException {
+    private DataBuffer buildAnswer(DataBufferFactory bufferFactory, @Nullable String[] includedParam) throws IOException {
         Set<String> params;
         if (includedParam == null) {
             params = Collections.emptySet();
@@ -70,14 +85,22 @@ public class MetricsController {
             params = new HashSet<>(Arrays.asList(includedParam));
         }
 
-        Writer writer = new StringWriter();
-        try {
+        Histogram.Timer timer = Metrics.metricsScrapeDuration.startTimer();
+        DataBuffer buffer = bufferFactory.allocateBuffer(lastSize);
+        boolean written = false;
+        try (Writer writer = new OutputStreamWriter(buffer.asOutputStream(), StandardCharsets.UTF_8)) {
             TextFormat.write004(writer, registry.filteredMetricFamilySamples(params));
-            writer.flush();
+            written = true;
         } finally {
-            writer.close();
+            if (!written) {
+                DataBufferUtils.release(buffer);
+            }
+            timer.observeDuration();
         }
 
-        return new ResponseEntity<>(writer.toString(), HttpStatus.OK);
+        int size = buffer.readableByteCount();
+        lastSize = size;
+        Metrics.metricsScrapeSize.observe(size);
+        return buffer;
     }
 }
@@ -25,65 +25,181 @@
 
 package fredboat.api;
 
+import com.google.common.hash.Hashing;
+import fredboat.agent.StatsAgent;
 import fredboat.audio.player.PlayerRegistry;
 import fredboat.feature.metrics.BotMetrics;
 import fredboat.jda.ShardProvider;
 import fredboat.main.Launcher;
-import org.json.JSONArray;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.dv8tion.jda.core.JDA;
 import org.json.JSONObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Serves a snapshot of the stats, which is refreshed by the stats snapshot {@link StatsAgent}, so that the cost of
+ * polling this endpoint does not depend on the size of the bot. The snapshot is kept serialized, with an ETag for
+ * conditional requests.
+ * <p>
+ * The shard param, which may be repeated, limits the shards included in the response.
+ */
 @RestController
 @RequestMapping("/stats")
 public class Stats {
 
-    private static final Logger log = LoggerFactory.getLogger(Stats.class);
+    private static final byte[] SHARDS_START = "{\"shards\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GLOBAL_START = "],\"global\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END = "}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+
     private final ShardProvider shardProvider;
     private final PlayerRegistry playerRegistry;
     private final BotMetrics botMetrics;
+    @Nullable
+    private volatile Snapshot snapshot;
 
-    public Stats(ShardProvider shardProvider, PlayerRegistry playerRegistry, BotMetrics botMetrics) {
+    public Stats(ShardProvider shardProvider, PlayerRegistry playerRegistry, BotMetrics botMetrics,
+                 @Qualifier("statsSnapshotAgent") StatsAgent statsSnapshotAgent) {
         this.shardProvider = shardProvider;
         this.playerRegistry = playerRegistry;
         this.botMetrics = botMetrics;
+        statsSnapshotAgent.addAction(new StatsAgent.Action() {
+            @Override
+            public String getName() {
+                return "stats snapshot";
+            }
+
+            @Override
+            public void act() {
+                snapshot = buildSnapshot();
+            }
+        });
     }
 
 
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public Mono<String> getStats() {
-        return Mono.fromCallable(this::buildStats);
+    public Mono<ResponseEntity<byte[]>> getStats(@RequestParam(name = "shard", required = false) int[] shardIds,
+                                                 @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) {
+        return Mono.fromCallable(() -> buildAnswer(shardIds, ifNoneMatch));
+    }
+
+    private ResponseEntity<byte[]> buildAnswer(@Nullable int[] shardIds, @Nullable String ifNoneMatch) {
+        Snapshot current = snapshot;
+        if (current == null) { //the agent has not run yet
+            current = buildSnapshot();
+            snapshot = current;
+        }
+
+        byte[] body;
+        String etag;
+        if (shardIds == null || shardIds.length == 0) {
+            body = current.body;
+            etag = current.etag;
+        } else {
+            body = current.filtered(new IntOpenHashSet(shardIds));
+            etag = etag(body);
+        }
+
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        //the byte array is wrapped into the response buffer as is
+        return ResponseEntity.ok().eTag(etag).body(body);
     }
 
-    private String buildStats() {
-        JSONObject root = new JSONObject();
-        JSONArray a = new JSONArray();
+    private Snapshot buildSnapshot() {
+        List<JDA> shards = shardProvider.streamShards()
+                .sorted(Comparator.comparingInt(shard -> shard.getShardInfo().getShardId()))
+                .collect(Collectors.toList());
 
-        shardProvider.streamShards().forEach(shard -> {
+        int[] shardIds = new int[shards.size()];
+        byte[][] shardStats = new byte[shards.size()][];
+        for (int i = 0; i < shards.size(); i++) {
+            JDA shard = shards.get(i);
             JSONObject fbStats = new JSONObject();
             fbStats.put("id", shard.getShardInfo().getShardId())
                     .put("guilds", shard.getGuildCache().size())
                     .put("users", shard.getUserCache().size())
                     .put("status", shard.getStatus());
-
-            a.put(fbStats);
-        });
+            shardIds[i] = shard.getShardInfo().getShardId();
+            shardStats[i] = fbStats.toString().getBytes(StandardCharsets.UTF_8);
+        }
 
         JSONObject g = new JSONObject();
-        g.put("playingPlayers", playerRegistry.getPlayingPlayers().size())
-                .put("totalPlayers", playerRegistry.getRegistry().size())
+        g.put("playingPlayers", playerRegistry.playingCount())
+                .put("totalPlayers", playerRegistry.size())
                 .put("distribution", Launcher.getBotController().getAppConfig().getDistribution())
                 .put("guilds", botMetrics.getTotalGuildsCount())
                 .put("users", botMetrics.getTotalUniqueUsersCount());
 
-        root.put("shards", a);
-        root.put("global", g);
+        return new Snapshot(shardIds, shardStats, g.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String etag(byte[] body) {
+        return "\"" + Hashing.murmur3_128().hashBytes(body).toString() + "\"";
+    }
+
+    /**
+     * The serialized stats, immutable.
+     */
+    private static class Snapshot {
+        //sorted by shard id
+        private final int[] shardIds;
+        private final byte[][] shardStats;
+        private final byte[] globalStats;
+        private final byte[] body;
+        private final String etag;
+
+        private Snapshot(int[] shardIds, byte[][] shardStats, byte[] globalStats) {
+            this.shardIds = shardIds;
+            this.shardStats = shardStats;
+            this.globalStats = globalStats;
+            this.body = serialize(shardStats, globalStats);
+            this.etag = etag(body);
+        }
+
+        private byte[] filtered(IntSet includedShardIds) {
+            byte[][] included = new byte[shardIds.length][];
+            int size = 0;
+            for (int i = 0; i < shardIds.length; i++) {
+                if (includedShardIds.contains(shardIds[i])) {
+                    included[size++] = shardStats[i];
+                }
+            }
+            return serialize(Arrays.copyOf(included, size), globalStats);
+        }
 
-        return root.toString();
+        private static byte[] serialize(byte[][] shardStats, byte[] globalStats) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(SHARDS_START, 0, SHARDS_START.length);
+            for (int i = 0; i < shardStats.length; i++) {
+                if (i > 0) {
+                    out.write(SEPARATOR, 0, SEPARATOR.length);
+                }
+                out.write(shardStats[i], 0, shardStats[i].length);
+            }
+            out.write(GLOBAL_START, 0, GLOBAL_START.length);
+            out.write(globalStats, 0, globalStats.length);
+            out.write(END, 0, END.length);
+            return out.toByteArray();
+        }
     }
 }
@@ -45,6 +45,7 @@ import lavalink.client.player.event.AudioEventAdapterWrapped;
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -62,6 +63,10 @@ public abstract class AbstractPlayer extends AudioEventAdapterWrapped implements
 
     Consumer<AudioTrackContext> onPlayHook;
     Consumer<Throwable> onErrorHook;
+    //called with the new value whenever isPlaying() changes
+    @Nullable
+    volatile Consumer<Boolean> onPlayingChangeHook;
+    private boolean lastPlaying = false; //guarded by this
 
     private static final int MAX_HISTORY_SIZE = 20;
     private AudioTrackContext queuedTrackInHistory = null;
@@ -196,8 +201,32 @@ public abstract class AbstractPlayer extends AudioEventAdapterWrapped implements
         return ((float) player.getVolume()) / 100;
     }
 
+    @Override
+    public void onTrackStart(AudioPlayer player, AudioTrack track) {
+        updatePlaying();
+    }
+
+    @Override
+    public void onPlayerPause(AudioPlayer player) {
+        updatePlaying();
+    }
+
+    @Override
+    public void onPlayerResume(AudioPlayer player) {
+        updatePlaying();
+    }
+
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        try {
+            handleTrackEnd(track, endReason);
+        } finally {
+            //the next track may have been started already
+            updatePlaying();
+        }
+    }
+
+    private void handleTrackEnd(AudioTrack track, AudioTrackEndReason endReason) {
         log.trace("onTrackEnd({} {} {}) called", track.getInfo().title, endReason.name(), endReason.mayStartNext);
 
         if (endReason == AudioTrackEndReason.FINISHED || endReason == AudioTrackEndReason.STOPPED) {
@@ -308,6 +337,21 @@ public abstract class AbstractPlayer extends AudioEventAdapterWrapped implements
         return player.getPlayingTrack() != null && !player.isPaused();
     }
 
+    /**
+     * Tell the hook if the playing state changed since the last call.
+     */
+    private synchronized void updatePlaying() {
+        boolean playing = isPlaying();
+        if (playing == lastPlaying) {
+            return;
+        }
+        lastPlaying = playing;
+        Consumer<Boolean> hook = onPlayingChangeHook;
+        if (hook != null) {
+            hook.accept(playing);
+        }
+    }
+
     public boolean isPaused() {
         log.trace("isPaused()");
 
@@ -57,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 public class GuildPlayer extends AbstractPlayer {
@@ -75,7 +76,8 @@ public class GuildPlayer extends AbstractPlayer {
     @SuppressWarnings("LeakingThisInConstructor")
     public GuildPlayer(Guild guild, MusicTextChannelProvider musicTextChannelProvider, JdaEntityProvider jdaEntityProvider,
                        AudioConnectionFacade audioConnectionFacade, AudioPlayerManager audioPlayerManager,
-                       GuildConfigService guildConfigService, Ratelimiter ratelimiter, YoutubeAPI youtubeAPI) {
+                       GuildConfigService guildConfigService, Ratelimiter ratelimiter, YoutubeAPI youtubeAPI,
+                       ExecutorService audioLoaderExecutor, int loadingConcurrency) {
         super(guild.getId(), audioConnectionFacade);
         log.debug("Constructing GuildPlayer({})", guild.getIdLong());
 
@@ -88,9 +90,9 @@ public class GuildPlayer extends AbstractPlayer {
 
         this.guildId = guild.getIdLong();
 
-        audioTrackProvider = new SimpleTrackProvider();
+        audioTrackProvider = new IndexedTrackProvider();
         audioLoader = new AudioLoader(jdaEntityProvider, ratelimiter, audioTrackProvider, audioPlayerManager,
-                this, youtubeAPI);
+                this, youtubeAPI, audioLoaderExecutor, loadingConcurrency);
     }
 
     private void announceTrack(AudioTrackContext atc) {
@@ -164,6 +166,7 @@ public class GuildPlayer extends AbstractPlayer {
                 commandContext.reply(commandContext.i18nFormat("playerLeftChannel", currentVc.getName()));
             }
         }
+        audioLoader.cancelStreams();
         audioConnectionFacade.closeConnection(getGuild());
     }
 
@@ -264,6 +267,13 @@ public class GuildPlayer extends AbstractPlayer {
         return streams;
     }
 
+    public int getUserTracksCount(long userId) {
+        int tracks = audioTrackProvider.userTracksCount(userId);
+        AudioTrackContext atc = player.getPlayingTrack() != null ? context : null;
+        if (atc != null && atc.getUserId() == userId) tracks++;
+        return tracks;
+    }
+
 
     @Nullable
     public VoiceChannel getCurrentVoiceChannel() {
@@ -434,6 +444,15 @@ public class GuildPlayer extends AbstractPlayer {
         return enabled;
     }
 
+    /**
+     * Also stops any playlists that are still being added to the queue, so they don't start playing again
+     */
+    @Override
+    public void stop() {
+        audioLoader.cancelStreams();
+        super.stop();
+    }
+
     @Override
     void destroy() {
         audioTrackProvider.clear();
@@ -26,27 +26,47 @@
 package fredboat.audio.player;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import fredboat.config.property.AppConfig;
+import fredboat.config.property.Credentials;
 import fredboat.db.api.GuildConfigService;
 import fredboat.jda.JdaEntityProvider;
+import fredboat.util.DiscordUtil;
 import fredboat.util.ratelimit.Ratelimiter;
 import fredboat.util.rest.YoutubeAPI;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.dv8tion.jda.core.entities.Guild;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the guild players of this FredBoat process in stripes of primitive long keyed maps, plus an index of the
+ * players that are currently playing. The index is maintained by the players themselves from their track and pause
+ * events, so counting the playing players, which happens for every play command and every metrics scrape, is cheap.
+ */
 @Component
 public class PlayerRegistry {
 
     public static final float DEFAULT_VOLUME = 1f;
 
-    private final Map<Long, GuildPlayer> registry = new ConcurrentHashMap<>();
+    private static final int STRIPES = 64; //power of two
+
+    @SuppressWarnings("unchecked")
+    private final Long2ObjectOpenHashMap<GuildPlayer>[] stripes = new Long2ObjectOpenHashMap[STRIPES];
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final Set<GuildPlayer> playing = ConcurrentHashMap.newKeySet();
+    private final List<PlayingListener> playingListeners = new CopyOnWriteArrayList<>();
     private final JdaEntityProvider jdaEntityProvider;
     private final AudioConnectionFacade audioConnectionFacade;
     private final GuildConfigService guildConfigService;
@@ -54,11 +74,16 @@ public class PlayerRegistry {
     private final Ratelimiter ratelimiter;
     private final YoutubeAPI youtubeAPI;
     private final MusicTextChannelProvider musicTextChannelProvider;
+    private final ExecutorService audioLoaderExecutor;
+    private final AppConfig appConfig;
+    private final Credentials credentials;
 
     public PlayerRegistry(MusicTextChannelProvider musicTextChannelProvider, JdaEntityProvider jdaEntityProvider,
                           AudioConnectionFacade audioConnectionFacade, GuildConfigService guildConfigService,
                           @Qualifier("loadAudioPlayerManager") AudioPlayerManager audioPlayerManager,
-                          Ratelimiter ratelimiter, YoutubeAPI youtubeAPI) {
+                          Ratelimiter ratelimiter, YoutubeAPI youtubeAPI,
+                          @Qualifier("audioLoaderExecutor") ExecutorService audioLoaderExecutor, AppConfig appConfig,
+                          Credentials credentials) {
         this.musicTextChannelProvider = musicTextChannelProvider;
         this.jdaEntityProvider = jdaEntityProvider;
         this.audioConnectionFacade = audioConnectionFacade;
@@ -66,17 +91,32 @@ public class PlayerRegistry {
         this.audioPlayerManager = audioPlayerManager;
         this.ratelimiter = ratelimiter;
         this.youtubeAPI = youtubeAPI;
+        this.audioLoaderExecutor = audioLoaderExecutor;
+        this.appConfig = appConfig;
+        this.credentials = credentials;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Long2ObjectOpenHashMap<>();
+        }
     }
 
     @Nonnull
     public GuildPlayer getOrCreate(@Nonnull Guild guild) {
-        return registry.computeIfAbsent(
-                guild.getIdLong(), guildId -> {
-                    GuildPlayer p = new GuildPlayer(guild, musicTextChannelProvider, jdaEntityProvider,
-                            audioConnectionFacade, audioPlayerManager, guildConfigService, ratelimiter, youtubeAPI);
-                    p.setVolume(DEFAULT_VOLUME);
-                    return p;
-                });
+        long guildId = guild.getIdLong();
+        Long2ObjectOpenHashMap<GuildPlayer> stripe = stripe(guildId);
+        synchronized (stripe) {
+            GuildPlayer player = stripe.get(guildId);
+            if (player == null) {
+                player = new GuildPlayer(guild, musicTextChannelProvider, jdaEntityProvider,
+                        audioConnectionFacade, audioPlayerManager, guildConfigService, ratelimiter, youtubeAPI,
+                        audioLoaderExecutor, appConfig.getGuildLoadingConcurrency());
+                player.setVolume(DEFAULT_VOLUME);
+                GuildPlayer p = player;
+                player.onPlayingChangeHook = isPlaying -> playingChanged(p, isPlaying);
+                stripe.put(guildId, player);
+                size.incrementAndGet();
+            }
+            return player;
+        }
     }
 
     @Nullable
@@ -86,18 +126,77 @@ public class PlayerRegistry {
 
     @Nullable
     public GuildPlayer getExisting(long guildId) {
-        return registry.get(guildId);
+        Long2ObjectOpenHashMap<GuildPlayer> stripe = stripe(guildId);
+        synchronized (stripe) {
+            return stripe.get(guildId);
+        }
+    }
+
+    /**
+     * @return a snapshot of all existing players
+     */
+    public List<GuildPlayer> getPlayers() {
+        List<GuildPlayer> result = new ArrayList<>(size.get());
+        for (Long2ObjectOpenHashMap<GuildPlayer> stripe : stripes) {
+            synchronized (stripe) {
+                result.addAll(stripe.values());
+            }
+        }
+        return result;
     }
 
-    public Map<Long, GuildPlayer> getRegistry() {
-        return registry;
+    /**
+     * @return a snapshot of the existing players of the guilds of a shard
+     */
+    public List<GuildPlayer> getPlayers(int shardId) {
+        List<GuildPlayer> result = new ArrayList<>();
+        for (Long2ObjectOpenHashMap<GuildPlayer> stripe : stripes) {
+            synchronized (stripe) {
+                for (GuildPlayer player : stripe.values()) {
+                    if (DiscordUtil.getShardId(player.getGuildId(), credentials) == shardId) {
+                        result.add(player);
+                    }
+                }
+            }
+        }
+        return result;
+    }
 
+    /**
+     * @return amount of existing players
+     */
+    public int size() {
+        return size.get();
     }
 
     public List<GuildPlayer> getPlayingPlayers() {
-        return registry.values().stream()
-                .filter(GuildPlayer::isPlaying)
-                .collect(Collectors.toList());
+        return new ArrayList<>(playing);
+    }
+
+    /**
+     * @return the playing players of the guilds of a shard
+     */
+    public List<GuildPlayer> getPlayingPlayers(int shardId) {
+        List<GuildPlayer> result = new ArrayList<>();
+        for (GuildPlayer player : playing) {
+            if (DiscordUtil.getShardId(player.getGuildId(), credentials) == shardId) {
+                result.add(player);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the playing players of all shards in a single pass, instead of one pass per shard.
+     *
+     * @return amount of playing players by shard id, 0 for shards without playing players
+     */
+    public Int2IntMap playingCountByShard() {
+        Int2IntOpenHashMap counts = new Int2IntOpenHashMap();
+        for (GuildPlayer player : playing) {
+            counts.addTo(DiscordUtil.getShardId(player.getGuildId(), credentials), 1);
+        }
+        return counts;
     }
 
     public void destroyPlayer(Guild g) {
@@ -105,16 +204,48 @@ public class PlayerRegistry {
     }
 
     public void destroyPlayer(long guildId) {
-        GuildPlayer player = getExisting(guildId);
+        Long2ObjectOpenHashMap<GuildPlayer> stripe = stripe(guildId);
+        GuildPlayer player;
+        synchronized (stripe) {
+            player = stripe.remove(guildId);
+            if (player != null) {
+                size.decrementAndGet();
+            }
+        }
         if (player != null) {
             player.destroy();
-            registry.remove(guildId);
+            player.onPlayingChangeHook = null;
+            playingChanged(player, false);
+        }
+    }
+
+    /**
+     * @param listener called whenever a player starts or stops playing, on the thread that caused the change
+     */
+    public void addPlayingListener(PlayingListener listener) {
+        playingListeners.add(listener);
+    }
+
+    private void playingChanged(GuildPlayer player, boolean isPlaying) {
+        boolean changed = isPlaying ? playing.add(player) : playing.remove(player);
+        if (changed) {
+            for (PlayingListener listener : playingListeners) {
+                listener.onPlayingChange(player.getGuildId(), isPlaying);
+            }
         }
     }
 
     public long playingCount() {
-        return registry.values().stream()
-                .filter(GuildPlayer::isPlaying)
-                .count();
+        return playing.size();
+    }
+
+    private Long2ObjectOpenHashMap<GuildPlayer> stripe(long guildId) {
+        //the lowest bits of snowflakes are mostly a small sequence number, so mix in the millis of their timestamp
+        return stripes[(int) (guildId ^ (guildId >>> 22)) & (STRIPES - 1)];
+    }
+
+    @FunctionalInterface
+    public interface PlayingListener {
+        void onPlayingChange(long guildId, boolean playing);
     }
 }
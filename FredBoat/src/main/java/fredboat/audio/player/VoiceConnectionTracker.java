@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.audio.player;
+
+import fredboat.command.music.control.VoteSkipCommand;
+import fredboat.feature.metrics.Metrics;
+import fredboat.jda.GuildProvider;
+import fredboat.util.concurrent.HashedTimingWheel;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.GuildVoiceState;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the guilds in which we are connected to a voice channel, maintained from voice state and player events.
+ * Connections that nobody listens to get an idle deadline on a {@link HashedTimingWheel}, which is advanced by the
+ * {@link fredboat.agent.VoiceChannelCleanupAgent}. Only connections whose deadline passed are looked at again, so
+ * cleaning up does not depend on the amount of guilds.
+ * <p>
+ * Connections of guilds that are unavailable when their deadline passes, like while their shard reconnects, are kept
+ * and looked at again later. Shards rebuild their part of the index when they are ready or reconnected.
+ */
+@Component
+public class VoiceConnectionTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceConnectionTracker.class);
+
+    public static final long TICK_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int WHEEL_SLOTS = 512; //about 85 minutes per turn
+    private static final long EMPTY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1); // no users in the VC
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1); // users in the VC, but the player is not playing
+
+    private final PlayerRegistry playerRegistry;
+    private final GuildProvider guildProvider;
+    private final AudioConnectionFacade audioConnectionFacade;
+    //guild id -> state of our voice connection in that guild, guarded by itself
+    private final Long2ObjectOpenHashMap<State> connections = new Long2ObjectOpenHashMap<>();
+    private final HashedTimingWheel deadlines = new HashedTimingWheel(TICK_MILLIS, WHEEL_SLOTS,
+            System.currentTimeMillis());
+
+    public VoiceConnectionTracker(PlayerRegistry playerRegistry, GuildProvider guildProvider,
+                                  AudioConnectionFacade audioConnectionFacade) {
+        this.playerRegistry = playerRegistry;
+        this.guildProvider = guildProvider;
+        this.audioConnectionFacade = audioConnectionFacade;
+        playerRegistry.addPlayingListener(this::onPlayingChange);
+    }
+
+    /**
+     * Call this after the voice state of any member of the guild changed, including our own.
+     */
+    public void onVoiceUpdate(Guild guild) {
+        update(guild.getIdLong(), evaluate(guild));
+    }
+
+    public void onGuildLeave(long guildId) {
+        update(guildId, null);
+    }
+
+    /**
+     * Call this when a guild becomes available again, voice updates may have been missed while it was not.
+     */
+    public void onGuildAvailable(Guild guild) {
+        onVoiceUpdate(guild);
+    }
+
+    /**
+     * Rebuild the part of the index that belongs to a shard. Call this when the shard is ready or reconnected, since
+     * any events may have been missed before that.
+     */
+    public void onShardReady(JDA jda) {
+        for (Guild guild : jda.getGuilds()) {
+            onVoiceUpdate(guild);
+        }
+
+        JDA.ShardInfo shardInfo = jda.getShardInfo();
+        LongList gone = new LongArrayList();
+        synchronized (connections) {
+            for (long guildId : connections.keySet()) {
+                if (isOfShard(guildId, shardInfo) && jda.getGuildById(guildId) == null) {
+                    gone.add(guildId);
+                }
+            }
+        }
+        for (long guildId : gone) {
+            update(guildId, null);
+        }
+    }
+
+    private static boolean isOfShard(long guildId, @Nullable JDA.ShardInfo shardInfo) {
+        return shardInfo == null || (guildId >> 22) % shardInfo.getShardTotal() == shardInfo.getShardId();
+    }
+
+    public int connectionsCount() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * Close the voice connections whose idle deadline passed.
+     *
+     * @return amount of closed connections
+     */
+    public int cleanup() {
+        LongList expired = deadlines.advance(System.currentTimeMillis());
+        int closed = 0;
+        for (long guildId : expired) {
+            try {
+                if (cleanup(guildId)) {
+                    closed++;
+                }
+            } catch (Exception e) {
+                log.error("Failed to clean up the voice connection of guild {}", guildId, e);
+            }
+        }
+        if (closed > 0) {
+            log.info("Closed {} of {} voice connections.", closed, connectionsCount() + closed);
+            Metrics.voiceChannelsCleanedUp.inc(closed);
+        }
+        return closed;
+    }
+
+    private boolean cleanup(long guildId) {
+        Guild guild = guildProvider.getGuildById(guildId);
+        if (guild == null || !guild.isAvailable()) {
+            //its shard is probably reconnecting, look again later. the shard rebuilds its part of the index once it is
+            // ready, dropping this connection if the guild is gone for good
+            synchronized (connections) {
+                if (connections.containsKey(guildId) && !deadlines.isScheduled(guildId)) {
+                    deadlines.schedule(guildId, System.currentTimeMillis() + EMPTY_TIMEOUT_MILLIS);
+                }
+            }
+            return false;
+        }
+        //the state was maintained from events, check what is actually going on before leaving
+        State state = evaluate(guild);
+        synchronized (connections) {
+            if (deadlines.isScheduled(guildId)) {
+                return false; //rescheduled by an event in the meantime
+            }
+            //something changed that we missed, start over from the actual state
+            if (state != connections.get(guildId) || state == null || state == State.PLAYING) {
+                update(guildId, state);
+                return false;
+            }
+            connections.remove(guildId);
+        }
+
+        if (state == State.EMPTY) {
+            VoteSkipCommand.guildSkipVotes.remove(guildId);
+        }
+        audioConnectionFacade.closeConnection(guild);
+        return true;
+    }
+
+    private void onPlayingChange(long guildId, boolean playing) {
+        synchronized (connections) {
+            State state = connections.get(guildId);
+            //not connected, or nobody there to listen anyways
+            if (state == null || state == State.EMPTY) {
+                return;
+            }
+            update(guildId, playing ? State.PLAYING : State.IDLE);
+        }
+    }
+
+    private void update(long guildId, @Nullable State state) {
+        synchronized (connections) {
+            State previous = state == null ? connections.remove(guildId) : connections.put(guildId, state);
+            if (previous == state) {
+                return; //keep the running deadline
+            }
+            if (state == State.EMPTY) {
+                deadlines.schedule(guildId, System.currentTimeMillis() + EMPTY_TIMEOUT_MILLIS);
+            } else if (state == State.IDLE) {
+                deadlines.schedule(guildId, System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS);
+            } else {
+                deadlines.cancel(guildId);
+            }
+        }
+    }
+
+    //don't call this while holding the lock, players call us while holding theirs
+    @Nullable
+    private State evaluate(Guild guild) {
+        Member self = guild.getSelfMember();
+        if (self == null) { //we got kicked from the guild
+            return null;
+        }
+        GuildVoiceState voiceState = self.getVoiceState();
+        VoiceChannel channel = voiceState == null ? null : voiceState.getChannel();
+        if (channel == null) {
+            return null;
+        }
+        if (!hasHumanMembers(channel)) {
+            return State.EMPTY;
+        }
+        GuildPlayer player = playerRegistry.getExisting(guild);
+        return player != null && player.isPlaying() ? State.PLAYING : State.IDLE;
+    }
+
+    private static boolean hasHumanMembers(VoiceChannel channel) {
+        for (Member member : channel.getMembers()) {
+            if (!member.getUser().isBot()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private enum State {
+        PLAYING,
+        IDLE,
+        EMPTY
+    }
+}
@@ -35,31 +35,62 @@ import fredboat.audio.player.GuildPlayer;
 import fredboat.audio.source.PlaylistImportSourceManager;
 import fredboat.audio.source.PlaylistImporter;
 import fredboat.audio.source.SpotifyPlaylistSourceManager;
+import fredboat.audio.source.StreamingAudioPlaylist;
 import fredboat.feature.metrics.Metrics;
 import fredboat.jda.JdaEntityProvider;
 import fredboat.messaging.CentralMessaging;
+import fredboat.messaging.MessageFuture;
 import fredboat.util.TextUtils;
 import fredboat.util.ratelimit.Ratelimiter;
 import fredboat.util.rest.YoutubeAPI;
 import fredboat.util.rest.YoutubeVideo;
 import net.dv8tion.jda.core.MessageBuilder;
+import net.dv8tion.jda.core.entities.Message;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class AudioLoader implements AudioLoadResultHandler {
+/**
+ * Resolves identifiers for a guild player. Several identifiers of the same guild may be resolved at the same time on
+ * the shared audio loader executor, but the results are always added to the track provider in the order in which the
+ * identifiers were requested. No thread waits for its turn to commit: whoever finds the head of the queue resolved
+ * commits it and all resolved requests after it, while later results wait in the queue. A streaming playlist holds
+ * back the requests after it until it has been fully added, without blocking any thread in the meantime.
+ * <p>
+ * Each request passes these stages, which are measured in {@link Metrics#audioLoadingStages}:
+ * dispatched (a loading slot was free), probed (slow loading playlists checked against the rate limits), resolved
+ * (lavaplayer is done loading), ordered (all earlier requests have been committed) and committed (the result has been
+ * added to the queue).
+ */
+public class AudioLoader {
 
     private static final org.slf4j.Logger log = LoggerFactory.getLogger(AudioLoader.class);
 
     //Matches a timestamp and the description
     private static final Pattern SPLIT_DESCRIPTION_PATTERN = Pattern.compile("(.*?)[( \\[]*((?:\\d?\\d:)?\\d?\\d:\\d\\d)[) \\]]*(.*)");
     private static final int QUEUE_TRACK_LIMIT = 10000;
+    //playlists with more entries than this are announced, and get a progress message while they are loaded
+    private static final int LARGE_PLAYLIST_THRESHOLD = 50;
+    //stay well below the rate limits of discord for editing messages
+    private static final long STREAMING_PROGRESS_INTERVAL_MILLIS = 5000;
+    //commits that are done as soon as they return
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
 
     private final JdaEntityProvider jdaEntityProvider;
     private final Ratelimiter ratelimiter;
@@ -67,60 +98,188 @@ public class AudioLoader implements AudioLoadResultHandler {
     private final AudioPlayerManager playerManager;
     private final GuildPlayer gplayer;
     private final YoutubeAPI youtubeAPI;
-    private final ConcurrentLinkedQueue<IdentifierContext> identifierQueue = new ConcurrentLinkedQueue<>();
-    private IdentifierContext context = null;
-    private volatile boolean isLoading = false;
+    private final ExecutorService loaderExecutor;
+    private final int loadingConcurrency;
+
+    //all requests that have not been committed yet, in the order they were made. guarded by this
+    private final ArrayDeque<LoadRequest> uncommitted = new ArrayDeque<>();
+    //requests that have not been dispatched to the loader executor yet. guarded by this
+    private final ArrayDeque<LoadRequest> undispatched = new ArrayDeque<>();
+    private int inFlight = 0;
+    //true while a thread is committing, or while a streaming playlist is being added. guarded by this
+    private boolean draining = false;
+    //streaming playlists that are resolved but not fully added yet, to be cancelled when the player stops. guarded by this
+    private final Set<StreamingPlaylistFeed> activeFeeds = new HashSet<>();
 
     public AudioLoader(JdaEntityProvider jdaEntityProvider, Ratelimiter ratelimiter, ITrackProvider trackProvider,
-                       AudioPlayerManager playerManager, GuildPlayer gplayer, YoutubeAPI youtubeAPI) {
+                       AudioPlayerManager playerManager, GuildPlayer gplayer, YoutubeAPI youtubeAPI,
+                       ExecutorService loaderExecutor, int loadingConcurrency) {
         this.jdaEntityProvider = jdaEntityProvider;
         this.ratelimiter = ratelimiter;
         this.trackProvider = trackProvider;
         this.playerManager = playerManager;
         this.gplayer = gplayer;
         this.youtubeAPI = youtubeAPI;
+        this.loaderExecutor = loaderExecutor;
+        this.loadingConcurrency = loadingConcurrency;
     }
 
+    /**
+     * Does not block. Any slow work, including probing slow loading playlists, happens on the loader executor.
+     */
     public void loadAsync(IdentifierContext ic) {
+        LoadRequest request = new LoadRequest(ic);
+        synchronized (this) {
+            uncommitted.add(request);
+            undispatched.add(request);
+        }
+        dispatch();
+    }
 
-        if (ratelimitIfSlowLoadingPlaylistAndAnnounce(ic)) {
-            identifierQueue.add(ic);
-            if (!isLoading) {
-                loadNextAsync();
+    /**
+     * Hand as many requests to the loader executor as this guild is allowed to load at the same time.
+     */
+    private void dispatch() {
+        List<LoadRequest> toDispatch = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < loadingConcurrency && !undispatched.isEmpty()) {
+                inFlight++;
+                toDispatch.add(undispatched.poll());
+            }
+        }
+
+        for (LoadRequest request : toDispatch) {
+            try {
+                loaderExecutor.execute(() -> resolve(request));
+            } catch (RejectedExecutionException e) {
+                request.commit = now(() -> handleThrowable(request.context, e));
+                onResolved(request);
             }
         }
     }
 
-    private void loadNextAsync() {
+    private void resolve(LoadRequest request) {
+        IdentifierContext ic = request.context;
+        request.stagePassed("dispatched");
         try {
-            IdentifierContext ic = identifierQueue.poll();
-            if (ic != null) {
-                isLoading = true;
-                context = ic;
-
-                if (gplayer.getTrackCount() >= QUEUE_TRACK_LIMIT) {
-                    context.replyWithName(context.i18nFormat("loadQueueTrackLimit", QUEUE_TRACK_LIMIT));
-                    isLoading = false;
+            boolean allowed = ratelimitIfSlowLoadingPlaylistAndAnnounce(request);
+            request.stagePassed("probed");
+            if (!allowed) {
+                return;
+            }
+
+            ResultCollector result = new ResultCollector();
+            playerManager.loadItem(ic.identifier, result).get();
+            request.stagePassed("resolved");
+            request.commit = toCommit(request, result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.commit = now(() -> handleThrowable(ic, e));
+        } catch (ExecutionException e) {
+            request.commit = now(() -> handleThrowable(ic, e.getCause() != null ? e.getCause() : e));
+        } catch (Throwable th) {
+            request.commit = now(() -> handleThrowable(ic, th));
+        } finally {
+            onResolved(request);
+        }
+    }
+
+    private void onResolved(LoadRequest request) {
+        synchronized (this) {
+            inFlight--;
+            request.resolved = true;
+        }
+        commitInOrder();
+        dispatch();
+    }
+
+    /**
+     * Commit all resolved requests at the head of the queue of uncommitted requests. Returns right away if another
+     * thread is committing already, that thread will pick up our request too.
+     */
+    private void commitInOrder() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            LoadRequest head;
+            synchronized (this) {
+                head = uncommitted.peek();
+                if (head == null || !head.resolved) {
+                    draining = false;
                     return;
                 }
+                uncommitted.poll();
+            }
 
-                playerManager.loadItem(ic.identifier, this);
-            } else {
-                isLoading = false;
+            head.stagePassed("ordered");
+            CompletionStage<?> committed;
+            try {
+                committed = head.commit.run();
+            } catch (Throwable th) {
+                handleThrowable(head.context, th);
+                committed = DONE;
             }
-        } catch (Throwable th) {
-            handleThrowable(context, th);
-            isLoading = false;
+            if (!committed.toCompletableFuture().isDone()) {
+                //hold back the later requests until this one is done, then continue from whichever thread finished it
+                LoadRequest streaming = head;
+                committed.whenComplete((result, t) -> {
+                    streaming.stagePassed("committed");
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    commitInOrder();
+                });
+                return;
+            }
+            head.stagePassed("committed");
         }
     }
 
+    /**
+     * Stop adding the tracks of any streaming playlists to the queue, including the ones that are waiting for earlier
+     * requests to be committed. Called whenever the player is stopped or leaves.
+     */
+    public void cancelStreams() {
+        List<StreamingPlaylistFeed> toCancel;
+        synchronized (this) {
+            toCancel = new ArrayList<>(activeFeeds);
+            activeFeeds.clear();
+        }
+        for (StreamingPlaylistFeed feed : toCancel) {
+            feed.cancel();
+        }
+    }
+
+    private synchronized void forget(StreamingPlaylistFeed feed) {
+        activeFeeds.remove(feed);
+    }
+
+    /**
+     * The queue limit is checked when committing, since earlier requests of this guild may fill up the queue while
+     * later ones are resolved.
+     *
+     * @return true if the queue is full, in which case the user has been told so
+     */
+    private boolean queueFull(IdentifierContext ic) {
+        if (gplayer.getTrackCount() >= QUEUE_TRACK_LIMIT) {
+            ic.replyWithName(ic.i18nFormat("loadQueueTrackLimit", QUEUE_TRACK_LIMIT));
+            return true;
+        }
+        return false;
+    }
+
     /**
      * If the requested item is a slow loading playlist that we know of, check for rate limits and announce to the user
      * that it might take a while to gather it.
      *
      * @return false if the user is not allowed to load the playlist, true if he is
      */
-    private boolean ratelimitIfSlowLoadingPlaylistAndAnnounce(IdentifierContext ic) {
+    private boolean ratelimitIfSlowLoadingPlaylistAndAnnounce(LoadRequest request) {
+        IdentifierContext ic = request.context;
         PlaylistInfo playlistInfo = getSlowLoadingPlaylistData(ic.identifier);
 
         if (playlistInfo == null) //not a slow loading playlist
@@ -131,8 +290,8 @@ public class AudioLoader implements AudioLoadResultHandler {
             }
 
             //inform user we are possibly about to do nasty time consuming work
-            if (playlistInfo.getTotalTracks() > 50) {
-                ic.replyWithName(ic.i18nFormat("loadAnnouncePlaylist",
+            if (playlistInfo.getTotalTracks() > LARGE_PLAYLIST_THRESHOLD) {
+                request.announcement = ic.replyWithName(ic.i18nFormat("loadAnnouncePlaylist",
                         playlistInfo.getName(), playlistInfo.getTotalTracks()));
             }
             return true;
@@ -166,84 +325,157 @@ public class AudioLoader implements AudioLoadResultHandler {
         return playlistInfo;
     }
 
-    @Override
-    public void trackLoaded(AudioTrack at) {
-        Metrics.tracksLoaded.inc();
-        try {
-            if(context.isSplit()){
-                loadSplit(at, context);
-            } else {
+    /**
+     * Turn the result of loading an identifier into the action that adds it to the queue. Anything slow, like looking
+     * up the description of a split track, happens right here, on the loader executor.
+     */
+    private Commit toCommit(LoadRequest request, ResultCollector result) {
+        IdentifierContext ic = request.context;
+        if (result.failure != null) {
+            FriendlyException fe = result.failure;
+            return now(() -> handleThrowable(ic, fe));
+        } else if (result.track != null) {
+            AudioTrack at = result.track;
+            if (ic.isSplit()) {
+                return loadSplit(at, ic);
+            }
+            return now(() -> trackLoaded(ic, at));
+        } else if (result.playlist instanceof StreamingAudioPlaylist) {
+            StreamingPlaylistFeed feed = new StreamingPlaylistFeed((StreamingAudioPlaylist) result.playlist,
+                    trackProvider, at -> new AudioTrackContext(jdaEntityProvider, at, ic.getMember()));
+            synchronized (this) {
+                activeFeeds.add(feed);
+            }
+            MessageFuture announcement = request.announcement;
+            return () -> streamingPlaylistLoaded(ic, feed, announcement);
+        } else if (result.playlist != null) {
+            AudioPlaylist ap = result.playlist;
+            return now(() -> playlistLoaded(ic, ap));
+        } else {
+            return now(() -> ic.reply(ic.i18nFormat("loadNoMatches", ic.identifier)));
+        }
+    }
 
-                if (!context.isQuiet()) {
-                    context.reply(gplayer.isPlaying() ?
-                            context.i18nFormat("loadSingleTrack", TextUtils.escapeAndDefuse(at.getInfo().title))
-                            :
-                            context.i18nFormat("loadSingleTrackAndPlay", TextUtils.escapeAndDefuse(at.getInfo().title))
-                    );
-                } else {
-                    log.info("Quietly loaded " + at.getIdentifier());
-                }
+    private void trackLoaded(IdentifierContext ic, AudioTrack at) {
+        if (queueFull(ic)) {
+            return;
+        }
+        if (!ic.isQuiet()) {
+            ic.reply(gplayer.isPlaying() ?
+                    ic.i18nFormat("loadSingleTrack", TextUtils.escapeAndDefuse(at.getInfo().title))
+                    :
+                    ic.i18nFormat("loadSingleTrackAndPlay", TextUtils.escapeAndDefuse(at.getInfo().title))
+            );
+        } else {
+            log.info("Quietly loaded " + at.getIdentifier());
+        }
 
-                at.setPosition(context.getPosition());
+        at.setPosition(ic.getPosition());
 
-                trackProvider.add(new AudioTrackContext(jdaEntityProvider, at, context.getMember()));
-                if (!gplayer.isPaused()) {
-                    gplayer.play();
-                }
-            }
-        } catch (Throwable th) {
-            handleThrowable(context, th);
+        trackProvider.add(new AudioTrackContext(jdaEntityProvider, at, ic.getMember()));
+        if (!gplayer.isPaused()) {
+            gplayer.play();
         }
-        loadNextAsync();
     }
 
-    @Override
-    public void playlistLoaded(AudioPlaylist ap) {
-        Metrics.tracksLoaded.inc(ap.getTracks() == null ? 0 : ap.getTracks().size());
-        try {
-            if(context.isSplit()){
-                context.reply(context.i18n("loadPlaySplitListFail"));
-                loadNextAsync();
-                return;
-            }
+    private void playlistLoaded(IdentifierContext ic, AudioPlaylist ap) {
+        if (ic.isSplit()) {
+            ic.reply(ic.i18n("loadPlaySplitListFail"));
+            return;
+        }
+        if (queueFull(ic)) {
+            return;
+        }
 
-            List<AudioTrackContext> toAdd = new ArrayList<>();
-            for (AudioTrack at : ap.getTracks()) {
-                toAdd.add(new AudioTrackContext(jdaEntityProvider, at, context.getMember()));
-            }
-            trackProvider.addAll(toAdd);
-            context.reply(context.i18nFormat("loadListSuccess", ap.getTracks().size(), ap.getName()));
-            if (!gplayer.isPaused()) {
-                gplayer.play();
-            }
-        } catch (Throwable th) {
-            handleThrowable(context, th);
+        List<AudioTrackContext> toAdd = new ArrayList<>();
+        for (AudioTrack at : ap.getTracks()) {
+            toAdd.add(new AudioTrackContext(jdaEntityProvider, at, ic.getMember()));
+        }
+        trackProvider.addAll(toAdd);
+        ic.reply(ic.i18nFormat("loadListSuccess", ap.getTracks().size(), ap.getName()));
+        if (!gplayer.isPaused()) {
+            gplayer.play();
         }
-        loadNextAsync();
     }
 
-    @Override
-    public void noMatches() {
-        try {
-            context.reply(context.i18nFormat("loadNoMatches", context.identifier));
-        } catch (Throwable th) {
-            handleThrowable(context, th);
+    /**
+     * Adds the tracks of the playlist to the queue in chunks as they are resolved, and starts playing as soon as the
+     * first one is there. Later requests of this guild are committed once the returned stage completes.
+     * <p>
+     * Large playlists get a progress message, which is edited every now and then while the playlist loads, and finally
+     * turned into the success message. If the playlist has been announced, the announcement becomes the progress
+     * message. Nothing is added, played or edited anymore once the feed has been cancelled.
+     */
+    private CompletionStage<?> streamingPlaylistLoaded(IdentifierContext ic, StreamingPlaylistFeed feed,
+                                                       @Nullable MessageFuture announcement) {
+        StreamingAudioPlaylist sap = feed.getPlaylist();
+        if (feed.isCancelled()) { //the player has been stopped while this request was waiting for its turn
+            forget(feed);
+            return DONE;
+        }
+        if (ic.isSplit() || queueFull(ic)) {
+            forget(feed);
+            feed.cancel();
+            if (ic.isSplit()) {
+                ic.reply(ic.i18n("loadPlaySplitListFail"));
+            }
+            return DONE;
         }
-        loadNextAsync();
-    }
 
-    @Override
-    public void loadFailed(FriendlyException fe) {
-        Metrics.trackLoadsFailed.inc();
-        handleThrowable(context, fe);
+        MessageFuture progress = announcement;
+        if (progress == null && sap.size() > LARGE_PLAYLIST_THRESHOLD) {
+            progress = ic.reply(ic.i18nFormat("loadListProgress", 0, sap.getName()));
+        }
+        MessageFuture progressFuture = progress;
+        AtomicLong lastProgressEdit = new AtomicLong(System.currentTimeMillis());
+
+        return feed.start(loaderExecutor, addedSoFar -> {
+            if (!gplayer.isPaused() && !gplayer.isPlaying()) {
+                gplayer.play();
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastProgressEdit.get() >= STREAMING_PROGRESS_INTERVAL_MILLIS) {
+                Message progressMessage = sentMessage(progressFuture);
+                if (progressMessage != null) {
+                    lastProgressEdit.set(now);
+                    CentralMessaging.editMessage(progressMessage,
+                            ic.i18nFormat("loadListProgress", addedSoFar, sap.getName()));
+                }
+            }
+        }).whenComplete((added, t) -> {
+            forget(feed);
+            if (t != null) {
+                handleThrowable(ic, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                return;
+            }
+            if (feed.isCancelled()) {
+                return;
+            }
+            String success = ic.i18nFormat("loadListSuccess", added, sap.getName());
+            Message progressMessage = sentMessage(progressFuture);
+            if (progressMessage != null) {
+                CentralMessaging.editMessage(progressMessage, success);
+            } else {
+                ic.reply(success);
+            }
+        });
+    }
 
-        loadNextAsync();
+    /**
+     * @return the message if it has been sent successfully by now, null otherwise
+     */
+    @Nullable
+    private static Message sentMessage(@Nullable MessageFuture messageFuture) {
+        if (messageFuture == null || !messageFuture.isDone() || messageFuture.isCompletedExceptionally()) {
+            return null;
+        }
+        return messageFuture.getNow(null);
     }
 
-    private void loadSplit(AudioTrack at, IdentifierContext ic){
+    private Commit loadSplit(AudioTrack at, IdentifierContext ic){
         if(!(at instanceof YoutubeAudioTrack)){
-            ic.reply(ic.i18n("loadSplitNotYouTube"));
-            return;
+            return now(() -> ic.reply(ic.i18n("loadSplitNotYouTube")));
         }
         YoutubeAudioTrack yat = (YoutubeAudioTrack) at;
 
@@ -274,8 +506,7 @@ public class AudioLoader implements AudioLoadResultHandler {
         }
 
         if(pairs.size() < 2) {
-            ic.reply(ic.i18n("loadSplitNotResolves"));
-            return;
+            return now(() -> ic.reply(ic.i18n("loadSplitNotResolves")));
         }
 
         ArrayList<SplitAudioTrackContext> list = new ArrayList<>();
@@ -301,28 +532,36 @@ public class AudioLoader implements AudioLoadResultHandler {
             SplitAudioTrackContext atc = new SplitAudioTrackContext(jdaEntityProvider, newAt, ic.getMember(), startPos, endPos, pair.getRight());
 
             list.add(atc);
-            gplayer.queue(atc);
 
             i++;
         }
 
-        MessageBuilder mb = CentralMessaging.getClearThreadLocalMessageBuilder()
-                .append(ic.i18n("loadFollowingTracksAdded")).append("\n");
-        for(SplitAudioTrackContext atc : list) {
-            mb.append("`[")
-                    .append(TextUtils.formatTime(atc.getEffectiveDuration()))
-                    .append("]` ")
-                    .append(TextUtils.escapeAndDefuse(atc.getEffectiveTitle()))
-                    .append("\n");
-        }
+        return now(() -> {
+            if (queueFull(ic)) {
+                return;
+            }
+            for (SplitAudioTrackContext atc : list) {
+                gplayer.queue(atc);
+            }
 
-        //This is pretty spammy .. let's use a shorter one
-        if(mb.length() > 800){
-            mb = CentralMessaging.getClearThreadLocalMessageBuilder()
-                    .append(ic.i18nFormat("loadPlaylistTooMany", list.size()));
-        }
+            MessageBuilder mb = CentralMessaging.getClearThreadLocalMessageBuilder()
+                    .append(ic.i18n("loadFollowingTracksAdded")).append("\n");
+            for(SplitAudioTrackContext atc : list) {
+                mb.append("`[")
+                        .append(TextUtils.formatTime(atc.getEffectiveDuration()))
+                        .append("]` ")
+                        .append(TextUtils.escapeAndDefuse(atc.getEffectiveTitle()))
+                        .append("\n");
+            }
 
-        context.reply(mb.build());
+            //This is pretty spammy .. let's use a shorter one
+            if(mb.length() > 800){
+                mb = CentralMessaging.getClearThreadLocalMessageBuilder()
+                        .append(ic.i18nFormat("loadPlaylistTooMany", list.size()));
+            }
+
+            ic.reply(mb.build());
+        });
     }
 
     @SuppressWarnings("ThrowableResultIgnored")
@@ -332,20 +571,20 @@ public class AudioLoader implements AudioLoadResultHandler {
                 FriendlyException fe = (FriendlyException) th;
                 if (fe.severity == FriendlyException.Severity.COMMON) {
                     if (ic.getTextChannel() != null) {
-                        context.reply(ic.i18nFormat("loadErrorCommon", context.identifier, fe.getMessage()));
+                        ic.reply(ic.i18nFormat("loadErrorCommon", ic.identifier, fe.getMessage()));
                     } else {
                         log.error("Error while loading track ", th);
                     }
                 } else if (ic.getTextChannel() != null) {
-                    context.reply(ic.i18nFormat("loadErrorSusp", context.identifier));
+                    ic.reply(ic.i18nFormat("loadErrorSusp", ic.identifier));
                     Throwable exposed = fe.getCause() == null ? fe : fe.getCause();
-                    TextUtils.handleException(exposed, context);
+                    TextUtils.handleException(exposed, ic);
                 } else {
                     log.error("Error while loading track ", th);
                 }
             } else if (ic.getTextChannel() != null) {
-                context.reply(ic.i18n("loadErrorSusp"));
-                TextUtils.handleException(th, context);
+                ic.reply(ic.i18n("loadErrorSusp"));
+                TextUtils.handleException(th, ic);
             } else {
                 log.error("Error while loading track ", th);
             }
@@ -355,4 +594,78 @@ public class AudioLoader implements AudioLoadResultHandler {
         }
     }
 
+    /**
+     * Adds the result of a request to the queue, or tells the user why it can't be added.
+     */
+    private interface Commit {
+        /**
+         * @return completes once the result has been added, which is later than this returns for streaming playlists
+         */
+        CompletionStage<?> run();
+    }
+
+    private static Commit now(Runnable action) {
+        return () -> {
+            action.run();
+            return DONE;
+        };
+    }
+
+    private static class LoadRequest {
+        private final IdentifierContext context;
+        private final long requested = System.nanoTime();
+        //what to do once all earlier requests have been committed. does nothing by default, for example when the
+        // request got ratelimited
+        private volatile Commit commit = () -> DONE;
+        private boolean resolved = false; //guarded by the audio loader
+        //message telling the user that a large playlist is about to be loaded
+        @Nullable
+        private volatile MessageFuture announcement;
+
+        private LoadRequest(IdentifierContext context) {
+            this.context = context;
+        }
+
+        private void stagePassed(String stage) {
+            Metrics.audioLoadingStages.labels(stage).observe((System.nanoTime() - requested) / 1_000_000_000.0);
+        }
+    }
+
+    /**
+     * Lavaplayer calls back from its own threads, so we just take note of the result and handle it on our loader thread
+     */
+    private static class ResultCollector implements AudioLoadResultHandler {
+        @Nullable
+        private volatile AudioTrack track;
+        @Nullable
+        private volatile AudioPlaylist playlist;
+        @Nullable
+        private volatile FriendlyException failure;
+
+        @Override
+        public void trackLoaded(AudioTrack at) {
+            Metrics.tracksLoaded.inc();
+            track = at;
+        }
+
+        @Override
+        public void playlistLoaded(AudioPlaylist ap) {
+            //the tracks of streaming playlists are counted as they are resolved
+            if (!(ap instanceof StreamingAudioPlaylist)) {
+                Metrics.tracksLoaded.inc(ap.getTracks() == null ? 0 : ap.getTracks().size());
+            }
+            playlist = ap;
+        }
+
+        @Override
+        public void noMatches() {
+            //nothing to take note of
+        }
+
+        @Override
+        public void loadFailed(FriendlyException fe) {
+            Metrics.trackLoadsFailed.inc();
+            failure = fe;
+        }
+    }
 }
@@ -126,6 +126,11 @@ public interface ITrackProvider {
      */
     int streamsCount();
 
+    /**
+     * @return amount of tracks that have been added by the provided userId
+     */
+    int userTracksCount(long userId);
+
     /**
      * @return false if any of the provided tracks was added by user that is not the provided userId
      */
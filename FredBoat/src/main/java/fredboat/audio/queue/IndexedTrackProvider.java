@@ -0,0 +1,299 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.audio.queue;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Track provider that keeps the queue in two order statistic trees, one in regular (insertion) order and one in
+ * shuffled order, plus an index of the tracks by their trackId.
+ * <p>
+ * Unlike the {@link SimpleTrackProvider}, no copying or sorting of the whole queue is necessary when the shuffled queue
+ * changes: getting tracks by index or range, removing tracks by id and providing the next track are all O(log n),
+ * regardless of the queue being shuffled or not.
+ * <p>
+ * The total duration, the amount of streams and the amount of tracks per user are maintained on every change of the
+ * queue, so that the list and skip commands don't have to walk the whole queue.
+ */
+public class IndexedTrackProvider extends AbstractTrackProvider {
+
+    private static final Comparator<Entry> REGULAR_ORDER = Comparator.comparingLong(entry -> entry.sequence);
+    private static final Comparator<Entry> SHUFFLED_ORDER = Comparator.<Entry>comparingInt(entry -> entry.shuffleKey)
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final OrderStatisticTree<Entry> regular = new OrderStatisticTree<>(REGULAR_ORDER);
+    private final OrderStatisticTree<Entry> shuffled = new OrderStatisticTree<>(SHUFFLED_ORDER);
+    private final Long2ObjectOpenHashMap<Entry> byTrackId = new Long2ObjectOpenHashMap<>();
+    private final Long2IntOpenHashMap tracksPerUser = new Long2IntOpenHashMap();
+    //of all tracks that are not streams
+    private long durationMillis = 0;
+    private int streams = 0;
+    private long nextSequence = 0;
+    @Nullable
+    private AudioTrackContext lastTrack = null;
+
+    @Override
+    public synchronized void skipped() {
+        lastTrack = null;
+    }
+
+    @Override
+    public synchronized void setLastTrack(AudioTrackContext lastTrack) {
+        this.lastTrack = lastTrack;
+    }
+
+    @Override
+    @Nullable
+    public synchronized AudioTrackContext provideAudioTrack() {
+        if (getRepeatMode() == RepeatMode.SINGLE && lastTrack != null) {
+            return lastTrack.makeClone();
+        }
+        if (getRepeatMode() == RepeatMode.ALL && lastTrack != null) {
+            //add a fresh copy of the last track back to the queue, if the queue is being repeated
+            AudioTrackContext clone = lastTrack.makeClone();
+            if (isShuffle()) {
+                clone.setRand(Integer.MAX_VALUE); //put it at the back of the shuffled queue
+            }
+            insert(clone);
+        }
+
+        Entry next = orderedTree().first();
+        if (next == null) {
+            lastTrack = null;
+            return null;
+        }
+        delete(next);
+        lastTrack = next.track;
+        return lastTrack;
+    }
+
+    @Override
+    @Nullable
+    public synchronized AudioTrackContext peek() {
+        Entry first = orderedTree().first();
+        return first == null ? null : first.track;
+    }
+
+    @Override
+    public synchronized boolean remove(AudioTrackContext atc) {
+        Entry entry = byTrackId.get(atc.getTrackId());
+        if (entry == null || !entry.track.equals(atc)) {
+            return false;
+        }
+        delete(entry);
+        return true;
+    }
+
+    @Override
+    public synchronized void removeAll(Collection<AudioTrackContext> tracks) {
+        for (AudioTrackContext atc : tracks) {
+            remove(atc);
+        }
+    }
+
+    @Override
+    public synchronized void removeAllById(Collection<Long> trackIds) {
+        for (Long trackId : trackIds) {
+            Entry entry = byTrackId.get((long) trackId);
+            if (entry != null) {
+                delete(entry);
+            }
+        }
+    }
+
+    @Override
+    public synchronized AudioTrackContext getTrack(int index) {
+        return orderedTree().get(index).track;
+    }
+
+    /**
+     * Returns all songs from the lower index (inclusive) till the higher index (exclusive) in playing order. Indices
+     * outside of the bounds of the queue are clamped.
+     */
+    @Override
+    public synchronized List<AudioTrackContext> getTracksInRange(int indexA, int indexB) {
+        //make sure startIndex <= endIndex
+        int startIndex = indexA < indexB ? indexA : indexB;
+        int endIndex = indexA < indexB ? indexB : indexA;
+
+        return toTracks(orderedTree().range(startIndex, endIndex));
+    }
+
+    @Override
+    public synchronized List<AudioTrackContext> getAsList() {
+        return toTracks(regular.toList());
+    }
+
+    @Override
+    public synchronized List<AudioTrackContext> getAsListOrdered() {
+        return toTracks(orderedTree().toList());
+    }
+
+    @Override
+    public synchronized void reshuffle() {
+        shuffled.clear();
+        for (Entry entry : regular.toList()) {
+            entry.shuffleKey = entry.track.randomize();
+            shuffled.add(entry);
+        }
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return regular.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return regular.size();
+    }
+
+    @Override
+    public synchronized void add(AudioTrackContext track) {
+        insert(track);
+    }
+
+    @Override
+    public synchronized void addAll(Collection<AudioTrackContext> tracks) {
+        for (AudioTrackContext atc : tracks) {
+            insert(atc);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        lastTrack = null;
+        regular.clear();
+        shuffled.clear();
+        byTrackId.clear();
+        tracksPerUser.clear();
+        durationMillis = 0;
+        streams = 0;
+    }
+
+    @Override
+    public synchronized long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public synchronized int streamsCount() {
+        return streams;
+    }
+
+    @Override
+    public synchronized int userTracksCount(long userId) {
+        return tracksPerUser.get(userId);
+    }
+
+    @Override
+    public synchronized boolean isUserTrackOwner(long userId, Collection<Long> trackIds) {
+        if (tracksPerUser.get(userId) == byTrackId.size()) {
+            return true; //the whole queue belongs to the user
+        }
+        for (Long trackId : trackIds) {
+            Entry entry = byTrackId.get((long) trackId);
+            if (entry != null && entry.track.getUserId() != userId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private OrderStatisticTree<Entry> orderedTree() {
+        return isShuffle() ? shuffled : regular;
+    }
+
+    private void insert(AudioTrackContext atc) {
+        Entry entry = new Entry(atc, nextSequence++);
+        Entry previous = byTrackId.put(atc.getTrackId(), entry);
+        if (previous != null) { //the very same track context was added again, don't let it exist twice
+            regular.remove(previous);
+            shuffled.remove(previous);
+            count(previous, -1);
+        }
+        regular.add(entry);
+        shuffled.add(entry);
+        count(entry, 1);
+    }
+
+    private void delete(Entry entry) {
+        regular.remove(entry);
+        shuffled.remove(entry);
+        byTrackId.remove(entry.track.getTrackId());
+        count(entry, -1);
+    }
+
+    /**
+     * Update the aggregates for an entry being added (sign 1) to or removed (sign -1) from the queue.
+     */
+    private void count(Entry entry, int sign) {
+        if (entry.stream) {
+            streams += sign;
+        } else {
+            durationMillis += sign * entry.durationMillis;
+        }
+        long userId = entry.track.getUserId();
+        if (tracksPerUser.addTo(userId, sign) + sign == 0) {
+            tracksPerUser.remove(userId);
+        }
+    }
+
+    private static List<AudioTrackContext> toTracks(List<Entry> entries) {
+        List<AudioTrackContext> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.track);
+        }
+        return result;
+    }
+
+    /**
+     * The shuffle key is a snapshot of the rand value of the track context, so that the shuffled tree stays consistent
+     * even if the rand value of the track context is modified from the outside. The same goes for the duration and the
+     * stream flag, which the aggregates of the queue are based on.
+     */
+    private static class Entry {
+        private final AudioTrackContext track;
+        private final long sequence;
+        private int shuffleKey;
+        private final boolean stream;
+        private final long durationMillis;
+
+        private Entry(AudioTrackContext track, long sequence) {
+            this.track = track;
+            this.sequence = sequence;
+            this.shuffleKey = track.getRand();
+            this.stream = track.getTrack().getInfo().isStream;
+            this.durationMillis = stream ? 0 : track.getEffectiveDuration();
+        }
+    }
+}
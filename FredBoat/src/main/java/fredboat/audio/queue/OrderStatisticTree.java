@@ -0,0 +1,229 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.audio.queue;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A treap (randomized binary search tree) where every node knows the size of its subtree, which allows looking up
+ * elements by their index. Insert, remove, get by index and poll first are O(log n) expected, a range of k elements
+ * can be collected in O(log n + k).
+ * <p>
+ * The elements are required to be unique in respect to the provided comparator.
+ * <p>
+ * Not thread safe.
+ */
+class OrderStatisticTree<E> {
+
+    private final Comparator<? super E> comparator;
+    @Nullable
+    private Node<E> root = null;
+
+    OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    void add(E element) {
+        Node<E> node = new Node<>(element);
+        Node<E>[] split = split(root, element, false);
+        root = merge(merge(split[0], node), split[1]);
+    }
+
+    /**
+     * @return true if an element equal to the provided one (in respect to the comparator) was removed
+     */
+    boolean remove(E element) {
+        Node<E>[] lower = split(root, element, false);
+        Node<E>[] upper = split(lower[1], element, true);
+        root = merge(lower[0], upper[1]);
+        return upper[0] != null;
+    }
+
+    @Nullable
+    E first() {
+        Node<E> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.element;
+    }
+
+    @Nullable
+    E pollFirst() {
+        E first = first();
+        if (first != null) {
+            remove(first);
+        }
+        return first;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.element;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        throw new IllegalStateException("Subtree sizes are inconsistent"); //should never happen
+    }
+
+    /**
+     * @param fromIndex inclusive, will be clamped to the bounds of this tree
+     * @param toIndex   exclusive, will be clamped to the bounds of this tree
+     * @return the elements in the requested range, in order
+     */
+    List<E> range(int fromIndex, int toIndex) {
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(size(), toIndex);
+        List<E> result = new ArrayList<>(Math.max(0, to - from));
+        if (from < to) {
+            collect(root, from, to, 0, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return all elements of this tree, in order
+     */
+    List<E> toList() {
+        return range(0, size());
+    }
+
+    private static <E> void collect(@Nullable Node<E> node, int from, int to, int offset, List<E> out) {
+        if (node == null) {
+            return;
+        }
+        int index = offset + size(node.left);
+        if (from < index) {
+            collect(node.left, from, to, offset, out);
+        }
+        if (from <= index && index < to) {
+            out.add(node.element);
+        }
+        if (index + 1 < to) {
+            collect(node.right, from, to, index + 1, out);
+        }
+    }
+
+    /**
+     * Splits the tree into two trees. The left one contains all elements lower than the provided key (or lower or
+     * equal, if inclusive is true), the right one all other elements.
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E>[] split(@Nullable Node<E> node, E key, boolean inclusive) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        int cmp = comparator.compare(node.element, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<E>[] split = split(node.right, key, inclusive);
+            node.right = split[0];
+            node.update();
+            split[0] = node;
+            return split;
+        } else {
+            Node<E>[] split = split(node.left, key, inclusive);
+            node.left = split[1];
+            node.update();
+            split[1] = node;
+            return split;
+        }
+    }
+
+    /**
+     * All elements of the left tree need to be lower than the ones of the right tree.
+     */
+    @Nullable
+    private static <E> Node<E> merge(@Nullable Node<E> left, @Nullable Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+    }
+
+    private static int size(@Nullable Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node<E> {
+        private final E element;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        @Nullable
+        private Node<E> left;
+        @Nullable
+        private Node<E> right;
+
+        private Node(E element) {
+            this.element = element;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
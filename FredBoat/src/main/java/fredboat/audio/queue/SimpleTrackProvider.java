@@ -236,6 +236,17 @@ public class SimpleTrackProvider extends AbstractTrackProvider {
         return streams;
     }
 
+    @Override
+    public int userTracksCount(long userId) {
+        int tracks = 0;
+        for (AudioTrackContext atc : queue) {
+            if (atc.getUserId() == userId) {
+                tracks++;
+            }
+        }
+        return tracks;
+    }
+
     @Override
     public AudioTrackContext peek() {
         if (isShuffle() && queue.size() > 0) {
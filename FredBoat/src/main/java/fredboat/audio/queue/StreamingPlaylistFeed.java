@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.audio.queue;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import fredboat.audio.source.StreamingAudioPlaylist;
+import fredboat.feature.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Adds the tracks of a {@link StreamingAudioPlaylist} to a track provider in chunks, as they are resolved.
+ * <p>
+ * Once {@link #cancel()} returns, no more tracks are added and no more chunks are reported, even if some entries of
+ * the playlist were resolved already.
+ */
+public class StreamingPlaylistFeed {
+
+    private final StreamingAudioPlaylist playlist;
+    private final ITrackProvider trackProvider;
+    private final Function<AudioTrack, AudioTrackContext> contextFactory;
+    private boolean cancelled = false; //guarded by this
+    private int added = 0; //guarded by this
+
+    public StreamingPlaylistFeed(StreamingAudioPlaylist playlist, ITrackProvider trackProvider,
+                                 Function<AudioTrack, AudioTrackContext> contextFactory) {
+        this.playlist = playlist;
+        this.trackProvider = trackProvider;
+        this.contextFactory = contextFactory;
+    }
+
+    /**
+     * Start adding the tracks of the playlist. Does not block.
+     *
+     * @param chunkAdded called with the amount of tracks added so far, after each chunk has been added
+     * @return completes with the amount of tracks added once the playlist has been fully resolved or cancelled
+     */
+    public CompletableFuture<Integer> start(Executor executor, IntConsumer chunkAdded) {
+        return playlist.forEachResolvedAsync(chunk -> addChunk(chunk, chunkAdded), executor)
+                .thenApply(handedOver -> getAdded());
+    }
+
+    private synchronized void addChunk(List<AudioTrack> chunk, IntConsumer chunkAdded) {
+        if (cancelled) {
+            return;
+        }
+        List<AudioTrackContext> toAdd = new ArrayList<>(chunk.size());
+        for (AudioTrack at : chunk) {
+            toAdd.add(contextFactory.apply(at));
+        }
+        trackProvider.addAll(toAdd);
+        Metrics.tracksLoaded.inc(toAdd.size());
+        added += toAdd.size();
+        chunkAdded.accept(added);
+    }
+
+    /**
+     * Waits for a chunk that is being added right now.
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+        }
+        playlist.cancel();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized int getAdded() {
+        return added;
+    }
+
+    public StreamingAudioPlaylist getPlaylist() {
+        return playlist;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.audio.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import fredboat.audio.queue.PlaylistInfo;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived cache of what the playlist importers learned about a playlist, keyed by the identifier of the playlist.
+ * <p>
+ * Loading a playlist first probes it for the ratelimiter with {@link PlaylistImporter#getPlaylistDataBlocking(String)},
+ * and then loads it for real through the source manager. Both need the same remote resource, so the probe leaves its
+ * result here for the loading to pick up, instead of fetching it a second time. The hits of this cache in the cache
+ * metrics are the fetches saved.
+ */
+@Component
+public class PlaylistImportSessions {
+
+    //the loading follows right after the probe, unless the request has to wait for other requests of its guild
+    private static final long SESSION_TTL_SECONDS = 60;
+    //bound by the amount of track ids held, paste playlists can be huge
+    private static final long MAX_WEIGHT = 100_000;
+
+    private final Cache<String, ImportSession> sessions = CacheBuilder.newBuilder()
+            .recordStats()
+            .expireAfterWrite(SESSION_TTL_SECONDS, TimeUnit.SECONDS)
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((String identifier, ImportSession session) -> 1 + session.trackIds.size())
+            .build();
+
+    public PlaylistImportSessions(CacheMetricsCollector cacheMetrics) {
+        cacheMetrics.addCache("playlistImportSessions", sessions);
+    }
+
+    @Nullable
+    public ImportSession get(String identifier) {
+        return sessions.getIfPresent(identifier);
+    }
+
+    /**
+     * @param trackIds the identifiers of the tracks of the playlist, if the importer learned them already
+     */
+    public ImportSession put(String identifier, PlaylistInfo playlistInfo, List<String> trackIds) {
+        ImportSession session = new ImportSession(playlistInfo, trackIds);
+        sessions.put(identifier, session);
+        return session;
+    }
+
+    public static class ImportSession {
+        private final PlaylistInfo playlistInfo;
+        private final List<String> trackIds;
+
+        private ImportSession(PlaylistInfo playlistInfo, List<String> trackIds) {
+            this.playlistInfo = playlistInfo;
+            this.trackIds = trackIds;
+        }
+
+        public PlaylistInfo getPlaylistInfo() {
+            return playlistInfo;
+        }
+
+        /**
+         * @return may be empty if the importer does not need to learn the track ids to probe the playlist
+         */
+        public List<String> getTrackIds() {
+            return trackIds;
+        }
+    }
+}
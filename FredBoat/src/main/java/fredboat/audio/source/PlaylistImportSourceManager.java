@@ -40,9 +40,10 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 
 public class PlaylistImportSourceManager implements AudioSourceManager, PlaylistImporter {
@@ -50,9 +51,11 @@ public class PlaylistImportSourceManager implements AudioSourceManager, Playlist
     private static final Logger log = LoggerFactory.getLogger(PlaylistImportSourceManager.class);
 
     private final AudioPlayerManager audioPlayerManager;
+    private final PlaylistImportSessions importSessions;
 
-    public PlaylistImportSourceManager(AudioPlayerManager audioPlayerManager) {
+    public PlaylistImportSourceManager(AudioPlayerManager audioPlayerManager, PlaylistImportSessions importSessions) {
         this.audioPlayerManager = audioPlayerManager;
+        this.importSessions = importSessions;
     }
 
     @Override
@@ -72,25 +75,20 @@ public class PlaylistImportSourceManager implements AudioSourceManager, Playlist
         if (pasteId == null || "".equals(pasteId) || !PasteServiceConstants.PASTE_SERVICE_URLS.containsKey(serviceName)) {
             return null;
         }
-        List<String> trackIds = loadAndParseTrackIds(serviceName, pasteId);
-
-        PasteServiceAudioResultHandler handler = new PasteServiceAudioResultHandler();
-        Future<Void> lastFuture = null;
-        for (String id : trackIds) {
-            lastFuture = audioPlayerManager.loadItemOrdered(handler, id, handler);
-        }
-
-        if (lastFuture == null) {
+        List<String> trackIds = getOrLoadSession(ar.identifier, serviceName, pasteId).getTrackIds();
+        if (trackIds.isEmpty()) {
             return null;
         }
 
-        try {
-            lastFuture.get();
-        } catch (InterruptedException | ExecutionException ex) {
-            throw new FriendlyException("Failed loading playlist item", FriendlyException.Severity.FAULT, ex);
+        //the entries are loaded one after another and handed out as they come in, see AudioLoader
+        List<CompletableFuture<List<AudioTrack>>> entries = new ArrayList<>(trackIds.size());
+        for (int i = 0; i < trackIds.size(); i++) {
+            entries.add(new CompletableFuture<>());
         }
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        new PasteEntryLoader(trackIds, entries, cancelled).loadNext();
 
-        return new BasicAudioPlaylist(pasteId, handler.getLoadedTracks(), null, false);
+        return new StreamingAudioPlaylist(pasteId, entries, cancelled);
     }
 
     @Override
@@ -184,43 +182,81 @@ public class PlaylistImportSourceManager implements AudioSourceManager, Playlist
         String pasteId = pasteData[1];
         if (serviceName == null || "".equals(serviceName) || pasteId == null || "".equals(pasteId)) return null;
 
-        List<String> trackIds = loadAndParseTrackIds(serviceName, pasteId);
+        return getOrLoadSession(identifier, serviceName, pasteId).getPlaylistInfo();
+    }
 
-        return new PlaylistInfo(trackIds.size(), pasteId, PlaylistInfo.Source.PASTESERVICE);
+    /**
+     * The paste is downloaded only once for probing and loading it right after.
+     */
+    private PlaylistImportSessions.ImportSession getOrLoadSession(String identifier, String serviceName, String pasteId) {
+        PlaylistImportSessions.ImportSession session = importSessions.get(identifier);
+        if (session != null) {
+            return session;
+        }
+        List<String> trackIds = loadAndParseTrackIds(serviceName, pasteId);
+        PlaylistInfo playlistInfo = new PlaylistInfo(trackIds.size(), pasteId, PlaylistInfo.Source.PASTESERVICE);
+        return importSessions.put(identifier, playlistInfo, trackIds);
     }
 
-    private class PasteServiceAudioResultHandler implements AudioLoadResultHandler {
+    /**
+     * Loads the entries of a paste in order, each one only after the previous one is done, which is the same pace as
+     * queueing them all on a single ordering channel of the player manager, but stops right away once the playlist
+     * is cancelled.
+     */
+    private class PasteEntryLoader implements AudioLoadResultHandler {
+
+        private final List<String> trackIds;
+        private final List<CompletableFuture<List<AudioTrack>>> entries;
+        private final AtomicBoolean cancelled;
+        private int index = -1;
+
+        private PasteEntryLoader(List<String> trackIds, List<CompletableFuture<List<AudioTrack>>> entries,
+                                 AtomicBoolean cancelled) {
+            this.trackIds = trackIds;
+            this.entries = entries;
+            this.cancelled = cancelled;
+        }
 
-        private final List<AudioTrack> loadedTracks;
+        private void loadNext() {
+            index++;
+            if (index >= trackIds.size() || cancelled.get()) {
+                return;
+            }
+            try {
+                audioPlayerManager.loadItemOrdered(this, trackIds.get(index), this);
+            } catch (RuntimeException e) {
+                //the player manager is shutting down, give up on the rest
+                for (int i = index; i < entries.size(); i++) {
+                    entries.get(i).completeExceptionally(e);
+                }
+            }
+        }
 
-        private PasteServiceAudioResultHandler() {
-            this.loadedTracks = new ArrayList<>();
+        private void complete(List<AudioTrack> tracks) {
+            entries.get(index).complete(tracks);
+            loadNext();
         }
 
         @Override
         public void trackLoaded(AudioTrack track) {
-            loadedTracks.add(track);
+            complete(Collections.singletonList(track));
         }
 
         @Override
         public void playlistLoaded(AudioPlaylist playlist) {
-            loadedTracks.addAll(playlist.getTracks());
+            complete(playlist.getTracks());
         }
 
         @Override
         public void noMatches() {
-            // ignore
+            complete(Collections.emptyList());
         }
 
         @Override
         public void loadFailed(FriendlyException exception) {
             log.debug("Failed loading track provided via the paste service", exception);
+            complete(Collections.emptyList());
         }
-
-        public List<AudioTrack> getLoadedTracks() {
-            return loadedTracks;
-        }
-
     }
 
 }
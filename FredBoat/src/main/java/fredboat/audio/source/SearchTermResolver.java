@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.audio.source;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import fredboat.config.property.AppConfig;
+import fredboat.definitions.SearchProvider;
+import fredboat.feature.metrics.collectors.ThreadPoolCollector;
+import fredboat.util.concurrent.InstrumentedThreadPoolExecutor;
+import fredboat.util.rest.TrackSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the search terms of imported playlists to tracks, shared by all playlist importers of this bot.
+ * <p>
+ * The search results of all terms of a playlist are fetched from the search cache with a single bulk request first.
+ * Terms that can be answered by the local cache then are resolved right away, the others are searched on a shared pool.
+ * The remote searches are limited per search provider across all imports, so that importing several huge playlists
+ * at once doesn't get us flagged by the search providers.
+ */
+@Component
+public class SearchTermResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchTermResolver.class);
+
+    private final TrackSearcher trackSearcher;
+    private final Map<SearchProvider, Semaphore> permits = new EnumMap<>(SearchProvider.class);
+    private final ExecutorService searchExecutor;
+
+    public SearchTermResolver(TrackSearcher trackSearcher, AppConfig appConfig,
+                              ThreadPoolCollector threadPoolCollector) {
+        this.trackSearcher = trackSearcher;
+        int concurrency = appConfig.getPlaylistSearchConcurrency();
+        for (SearchProvider provider : SearchProvider.values()) {
+            permits.put(provider, new Semaphore(concurrency, true));
+        }
+        //enough threads to use the permits of all providers at the same time
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("playlist-search",
+                concurrency * SearchProvider.values().length, 0, true, new ThreadPoolExecutor.AbortPolicy());
+        threadPoolCollector.addPool(executor.getName(), executor);
+        searchExecutor = executor;
+    }
+
+    /**
+     * Does not wait for any remote searches, the tracks of the returned playlist are resolved in the background.
+     *
+     * @param searchTerms   the search terms of the tracks, in playlist order
+     * @param cacheMaxAge   age of acceptable search results from the cache
+     * @param timeoutMillis how long to wait for each remote search
+     * @param providers     search providers to be used, in order
+     */
+    public StreamingAudioPlaylist resolve(String playlistName, List<String> searchTerms, long cacheMaxAge,
+                                          int timeoutMillis, List<SearchProvider> providers) {
+        try {
+            trackSearcher.prefetch(searchTerms, cacheMaxAge, providers);
+        } catch (RuntimeException e) {
+            log.warn("Failed to prefetch search results for playlist {}", playlistName, e);
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        List<CompletableFuture<List<AudioTrack>>> tracks = new ArrayList<>(searchTerms.size());
+        int cached = 0;
+        for (String searchTerm : searchTerms) {
+            AudioPlaylist cacheResult = trackSearcher.searchLocalCache(searchTerm, cacheMaxAge, providers);
+            if (cacheResult != null) {
+                tracks.add(CompletableFuture.completedFuture(asEntry(topResult(cacheResult))));
+                cached++;
+            } else {
+                tracks.add(CompletableFuture.supplyAsync(
+                        () -> cancelled.get() ? Collections.emptyList()
+                                : asEntry(search(searchTerm, cacheMaxAge, timeoutMillis, providers)),
+                        searchExecutor));
+            }
+        }
+        log.debug("Resolved {} of {} tracks of playlist {} from cache, searching the rest", cached, searchTerms.size(),
+                playlistName);
+
+        return new StreamingAudioPlaylist(playlistName, tracks, cancelled);
+    }
+
+    @Nullable
+    private AudioTrack search(String searchTerm, long cacheMaxAge, int timeoutMillis, List<SearchProvider> providers) {
+        try {
+            return topResult(trackSearcher.searchForTracks(searchTerm, cacheMaxAge, timeoutMillis, providers, permits));
+        } catch (TrackSearcher.SearchingException e) {
+            //none of the providers available
+            return null;
+        }
+    }
+
+    /**
+     * Pick the topmost result, and hope it's what the user wants to listen to.
+     * <p>
+     * Having users pick tracks like they can do for individual searches would be ridiculous for playlists with dozens
+     * of tracks. Youtube search is probably good enough for this.
+     * <p>
+     * testcase:   Rammstein playlists; high quality Rammstein vids are really rare on Youtube.
+     *             https://open.spotify.com/user/11174036433/playlist/0ePRMvD3Dn3zG31A8y64xX
+     * result:     lots of low quality (covers, pitched up/down, etc) tracks loaded.
+     * conclusion: there's room for improvement
+     */
+    @Nullable
+    private static AudioTrack topResult(@Nullable AudioPlaylist searchResult) {
+        if (searchResult == null || searchResult.getTracks().isEmpty()) {
+            return null;
+        }
+        return searchResult.getTracks().get(0);
+    }
+
+    private static List<AudioTrack> asEntry(@Nullable AudioTrack track) {
+        return track == null ? Collections.emptyList() : Collections.singletonList(track);
+    }
+}
@@ -40,17 +40,17 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Created by napster on 08.03.17.
  * <p>
- * Loads playlists from Spotify playlist links.
- *
- * todo bulk load the songs from the search cache (remote db connections are slow when loading one by one)
+ * Loads playlists from Spotify playlist links. The tracks are resolved in the background by the
+ * {@link SearchTermResolver}, so the returned playlist can be streamed into the queue.
  *
  * @author napster
  */
@@ -63,18 +63,17 @@ public class SpotifyPlaylistSourceManager implements AudioSourceManager, Playlis
     //https://regex101.com/r/AEWyxi/3
     private static final Pattern PLAYLIST_PATTERN = Pattern.compile("https?://.*\\.spotify\\.com/user/(.*)/playlist/([^?/\\s]*)");
 
-    //Take care when deciding on upping the core pool size: The threads may hog database connections when loading an uncached playlist.
-    // Upping the threads will also fire search requests more aggressively against Youtube which is probably better avoided.
-    public static ScheduledExecutorService loader = Executors.newScheduledThreadPool(1);
-
     private static final List<SearchProvider> searchProviders
             = Arrays.asList(SearchProvider.YOUTUBE, SearchProvider.SOUNDCLOUD);
-    private final TrackSearcher trackSearcher;
+    private final SearchTermResolver searchTermResolver;
     private final SpotifyAPIWrapper spotifyAPIWrapper;
+    private final PlaylistImportSessions importSessions;
 
-    public SpotifyPlaylistSourceManager(TrackSearcher trackSearcher, SpotifyAPIWrapper spotifyAPIWrapper) {
-        this.trackSearcher = trackSearcher;
+    public SpotifyPlaylistSourceManager(SearchTermResolver searchTermResolver, SpotifyAPIWrapper spotifyAPIWrapper,
+                                        PlaylistImportSessions importSessions) {
+        this.searchTermResolver = searchTermResolver;
         this.spotifyAPIWrapper = spotifyAPIWrapper;
+        this.importSessions = importSessions;
     }
 
     @Override
@@ -90,19 +89,12 @@ public class SpotifyPlaylistSourceManager implements AudioSourceManager, Playlis
         final String spotifyUser = data[0];
         final String spotifyListId = data[1];
 
-        PlaylistInfo plData;
-        try {
-            plData = spotifyAPIWrapper.getPlaylistDataBlocking(spotifyUser, spotifyListId);
-        } catch (Exception e) {
-            log.warn("Could not retrieve playlist " + spotifyListId + " of user " + spotifyUser, e);
-            throw new FriendlyException("Couldn't load playlist. Either Spotify is down or the playlist does not exist.", FriendlyException.Severity.COMMON, e);
-        }
+        PlaylistInfo plData = getOrLoadPlaylistData(ar.identifier, spotifyUser, spotifyListId);
 
         String playlistName = plData.getName();
         if (playlistName == null || "".equals(playlistName)) playlistName = "Spotify Playlist";
         int tracksTotal = plData.getTotalTracks();
 
-        final List<AudioTrack> trackList = new ArrayList<>();
         final List<String> trackListSearchTerms;
 
         try {
@@ -113,64 +105,12 @@ public class SpotifyPlaylistSourceManager implements AudioSourceManager, Playlis
         }
         log.info("Retrieved playlist data for " + playlistName + " from Spotify, loading up " + tracksTotal + " tracks");
 
-        //build a task list
-        List<CompletableFuture<AudioTrack>> taskList = new ArrayList<>();
-        for (final String s : trackListSearchTerms) {
+        List<String> queries = new ArrayList<>(trackListSearchTerms.size());
+        for (String s : trackListSearchTerms) {
             //remove all punctuation
-            final String query = s.replaceAll(TrackSearcher.PUNCTUATION_REGEX, "");
-
-            CompletableFuture<AudioTrack> f = CompletableFuture.supplyAsync(() -> searchSingleTrack(query), loader);
-            taskList.add(f);
-        }
-
-        //build a tracklist from that task list
-        for (CompletableFuture<AudioTrack> futureTrack : taskList) {
-            try {
-                final AudioTrack audioItem = futureTrack.get();
-                if (audioItem == null) {
-                    continue; //skip the track if we couldn't find it
-                }
-                trackList.add(audioItem);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            } catch (ExecutionException ignored) {
-                //this is fine, loop will go for the next item
-            }
-        }
-        return new BasicAudioPlaylist(playlistName, trackList, null, true);
-    }
-
-    /**
-     * Searches all available searching sources for a single track.
-     * <p>
-     * Will go Youtube > SoundCloud > return null
-     * This could probably be moved to SearchUtil
-     *
-     * @param query Term that shall be searched
-     * @return An AudioTrack likely corresponding to the query term or null.
-     */
-    private AudioTrack searchSingleTrack(final String query) {
-        try {
-            AudioPlaylist list = trackSearcher.searchForTracks(query, CACHE_DURATION, 60000, searchProviders);
-            //didn't find anything
-            if (list == null || list.getTracks().isEmpty()) {
-                return null;
-            }
-
-            //pick topmost result, and hope it's what the user wants to listen to
-            //having users pick tracks like they can do for individual searches would be ridiculous for playlists with
-            //dozens of tracks. youtube search is probably good enough for this
-            //
-            //testcase:   Rammstein playlists; high quality Rammstein vids are really rare on Youtube.
-            //            https://open.spotify.com/user/11174036433/playlist/0ePRMvD3Dn3zG31A8y64xX
-            //result:     lots of low quality (covers, pitched up/down, etc) tracks loaded.
-            //conclusion: there's room for improvement to this whole method
-            return list.getTracks().get(0);
-        } catch (TrackSearcher.SearchingException e) {
-            //youtube & soundcloud not available
-            return null;
+            queries.add(s.replaceAll(TrackSearcher.PUNCTUATION_REGEX, ""));
         }
+        return searchTermResolver.resolve(playlistName, queries, CACHE_DURATION, 60000, searchProviders);
     }
 
     @Override
@@ -219,11 +159,27 @@ public class SpotifyPlaylistSourceManager implements AudioSourceManager, Playlis
         final String spotifyUser = data[0];
         final String spotifyListId = data[1];
 
+        return getOrLoadPlaylistData(identifier, spotifyUser, spotifyListId);
+    }
+
+    /**
+     * The playlist data is requested only once for probing and loading the playlist right after.
+     */
+    private PlaylistInfo getOrLoadPlaylistData(String identifier, String spotifyUser, String spotifyListId) {
+        PlaylistImportSessions.ImportSession session = importSessions.get(identifier);
+        if (session != null) {
+            return session.getPlaylistInfo();
+        }
+
+        PlaylistInfo playlistInfo;
         try {
-            return spotifyAPIWrapper.getPlaylistDataBlocking(spotifyUser, spotifyListId);
+            playlistInfo = spotifyAPIWrapper.getPlaylistDataBlocking(spotifyUser, spotifyListId);
         } catch (Exception e) {
             log.warn("Could not retrieve playlist " + spotifyListId + " of user " + spotifyUser, e);
             throw new FriendlyException("Couldn't load playlist. Either Spotify is down or the playlist does not exist.", FriendlyException.Severity.COMMON, e);
         }
+        //the search terms of the tracks are not needed for probing the playlist, so they are not part of the session
+        importSessions.put(identifier, playlistInfo, Collections.emptyList());
+        return playlistInfo;
     }
 }
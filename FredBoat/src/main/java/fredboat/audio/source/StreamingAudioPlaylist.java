@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.audio.source;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A playlist whose tracks are still being resolved in the background.
+ * <p>
+ * Consumers that know about it can add the tracks to the queue in chunks as soon as they are resolved, see
+ * {@link #forEachResolvedAsync(Consumer, Executor)}. For everyone else it behaves like a regular playlist, with {@link #getTracks()}
+ * blocking until all of its tracks are resolved.
+ */
+public class StreamingAudioPlaylist implements AudioPlaylist {
+
+    private final String name;
+    //in playlist order, one per entry of the playlist. An entry may resolve to several tracks, or to none at all
+    private final List<CompletableFuture<List<AudioTrack>>> entries;
+    private final AtomicBoolean cancelled;
+
+    public StreamingAudioPlaylist(String name, List<CompletableFuture<List<AudioTrack>>> entries, AtomicBoolean cancelled) {
+        this.name = name;
+        this.entries = entries;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Blocks until all tracks are resolved.
+     */
+    @Override
+    public List<AudioTrack> getTracks() {
+        List<AudioTrack> result = new ArrayList<>(entries.size());
+        try {
+            forEachResolved(result::addAll);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public AudioTrack getSelectedTrack() {
+        return null;
+    }
+
+    @Override
+    public boolean isSearchResult() {
+        return false;
+    }
+
+    /**
+     * @return amount of entries of this playlist, including the ones that are not resolved yet or can't be found
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Hands the tracks to the consumer in playlist order. Each chunk contains all tracks that have been resolved
+     * since the last chunk without any unresolved entry before them, so the consumer is called once per burst of
+     * resolved tracks rather than once per track. Entries that could not be found are skipped. Blocks until all tracks
+     * have been handed over.
+     *
+     * @return the amount of tracks handed to the consumer
+     */
+    public int forEachResolved(Consumer<List<AudioTrack>> chunkConsumer) throws InterruptedException {
+        int handedOver = 0;
+        List<AudioTrack> chunk = new ArrayList<>();
+        for (CompletableFuture<List<AudioTrack>> entry : entries) {
+            if (!entry.isDone() && !chunk.isEmpty()) {
+                //hand over what we have before waiting for the next entry
+                chunkConsumer.accept(chunk);
+                handedOver += chunk.size();
+                chunk = new ArrayList<>();
+            }
+            try {
+                chunk.addAll(entry.get());
+            } catch (ExecutionException | CancellationException ignored) {
+                //skipped
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(chunk);
+            handedOver += chunk.size();
+        }
+        return handedOver;
+    }
+
+    /**
+     * Like {@link #forEachResolved(Consumer)}, but without blocking any thread while waiting for entries to resolve.
+     * The consumer is called on the executor, one chunk after the other. If the executor rejects a chunk, the consumer
+     * is called by the thread that resolved the entry instead.
+     *
+     * @return completes with the amount of tracks handed to the consumer once all entries have been resolved or
+     * cancelled, or exceptionally if the consumer threw
+     */
+    public CompletableFuture<Integer> forEachResolvedAsync(Consumer<List<AudioTrack>> chunkConsumer, Executor executor) {
+        AsyncHandOver handOver = new AsyncHandOver(chunkConsumer, executor);
+        handOver.schedule();
+        return handOver.done;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Stop resolving the tracks that have not been resolved yet.
+     */
+    public void cancel() {
+        cancelled.set(true);
+        for (CompletableFuture<List<AudioTrack>> entry : entries) {
+            entry.cancel(false);
+        }
+    }
+
+    private static List<AudioTrack> resolvedTracks(CompletableFuture<List<AudioTrack>> entry) {
+        try {
+            return entry.join();
+        } catch (CompletionException | CancellationException e) {
+            return Collections.emptyList(); //skipped
+        }
+    }
+
+    /**
+     * Hands over the resolved entries at the front, then waits for the next entry by registering itself as its
+     * callback. There is at most one scheduled run at a time, so the chunks are handed over in order.
+     */
+    private class AsyncHandOver implements Runnable {
+        private final Consumer<List<AudioTrack>> chunkConsumer;
+        private final Executor executor;
+        private final CompletableFuture<Integer> done = new CompletableFuture<>();
+        private int next = 0;
+        private int handedOver = 0;
+
+        private AsyncHandOver(Consumer<List<AudioTrack>> chunkConsumer, Executor executor) {
+            this.chunkConsumer = chunkConsumer;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<AudioTrack> chunk = new ArrayList<>();
+                while (next < entries.size() && entries.get(next).isDone()) {
+                    chunk.addAll(resolvedTracks(entries.get(next++)));
+                }
+                if (!chunk.isEmpty()) {
+                    chunkConsumer.accept(chunk);
+                    handedOver += chunk.size();
+                }
+                if (next < entries.size()) {
+                    entries.get(next).whenComplete((tracks, t) -> schedule());
+                } else {
+                    done.complete(handedOver);
+                }
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                run();
+            }
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class PlayerDebugCommand extends Command implements ICommandRestricted {
     public void onInvoke(@Nonnull CommandContext context) {
         JSONArray a = new JSONArray();
 
-        for (GuildPlayer gp : Launcher.getBotController().getPlayerRegistry().getRegistry().values()) {
+        for (GuildPlayer gp : Launcher.getBotController().getPlayerRegistry().getPlayers()) {
             JSONObject data = new JSONObject();
             data.put("name", gp.getGuild().getName());
             data.put("id", gp.getGuild().getId());
@@ -117,7 +117,7 @@ public class ModulesCommand extends Command implements IConfigCommand {
         Function<Module, String> moduleStatusFormatter = moduleStatusLine(gm, context);
         String moduleStatus = "";
 
-        if (PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context.invoker)) {
+        if (PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context)) {
             moduleStatus
                     = moduleStatusFormatter.apply(Module.ADMIN) + " " + Emojis.LOCK + "\n"
                     + moduleStatusFormatter.apply(Module.INFO) + " " + Emojis.LOCK + "\n"
@@ -132,6 +132,7 @@ public class PermissionsCommand extends Command implements IConfigCommand {
             return gp.setFromEnum(permissionLevel, newList);
         };
         Launcher.getBotController().getGuildPermsService().transformGuildPerms(context.guild, transformation);
+        PermsUtil.invalidate(context.guild);
     }
 
     public void add(CommandContext context) {
@@ -162,6 +163,7 @@ public class PermissionsCommand extends Command implements IConfigCommand {
             return gp.setFromEnum(permissionLevel, newList);
         };
         Launcher.getBotController().getGuildPermsService().transformGuildPerms(context.guild, transformation);
+        PermsUtil.invalidate(context.guild);
     }
 
     public void list(CommandContext context) {
@@ -28,6 +28,9 @@ package fredboat.command.config;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import fredboat.commandmeta.PrefixFilter;
 import fredboat.commandmeta.abs.Command;
 import fredboat.commandmeta.abs.CommandContext;
 import fredboat.commandmeta.abs.IConfigCommand;
@@ -58,6 +61,9 @@ public class PrefixCommand extends Command implements IConfigCommand {
         }
     }
 
+    //knows the prefixes of the guilds held by the cache below
+    public static final PrefixFilter PREFIX_FILTER = new PrefixFilter();
+
     @SuppressWarnings("ConstantConditions")
     public static final LoadingCache<Long, Optional<String>> CUSTOM_PREFIXES = CacheBuilder.newBuilder()
             //it is fine to check the db for updates occasionally, as we currently dont have any use case where we change
@@ -68,10 +74,29 @@ public class PrefixCommand extends Command implements IConfigCommand {
             .refreshAfterWrite(1, TimeUnit.MINUTES) //NOTE: never use refreshing without async reloading, because Guavas cache uses the thread calling it to do cleanup tasks (including refreshing)
             .expireAfterAccess(1, TimeUnit.MINUTES) //evict inactive guilds
             .concurrencyLevel(Launcher.getBotController().getCredentials().getRecommendedShardCount())  //each shard has a thread (main JDA thread) accessing this cache many times
-            .build(CacheLoader.asyncReloading(CacheLoader.from(
-                    guildId -> Launcher.getBotController().getPrefixService().getPrefix(new GuildBotComposite(guildId, DiscordUtil.getBotId(Launcher.getBotController().getCredentials())))),
+            .removalListener((RemovalListener<Long, Optional<String>>) notification -> {
+                //replaced values have been put into the filter by the reload already
+                if (notification.getCause() != RemovalCause.REPLACED) {
+                    PREFIX_FILTER.remove(notification.getKey());
+                }
+            })
+            .build(CacheLoader.asyncReloading(CacheLoader.from(PrefixCommand::loadPrefix),
                     Launcher.getBotController().getExecutor()));
 
+    private static Optional<String> loadPrefix(long guildId) {
+        //registered before fetching, so that a prefix change invalidating the cache meanwhile cancels this load
+        long load = PREFIX_FILTER.beginLoad(guildId);
+        Optional<String> prefix;
+        try {
+            prefix = Launcher.getBotController().getPrefixService().getPrefix(new GuildBotComposite(guildId, DiscordUtil.getBotId(Launcher.getBotController().getCredentials())));
+        } catch (RuntimeException e) {
+            PREFIX_FILTER.abortLoad(guildId, load);
+            throw e;
+        }
+        PREFIX_FILTER.finishLoad(guildId, load, prefix, Launcher.getBotController().getAppConfig().getPrefix());
+        return prefix;
+    }
+
     @Nonnull
     private static String giefPrefix(long guildId) {
         return CacheUtil.getUncheckedUnwrapped(CUSTOM_PREFIXES, guildId)
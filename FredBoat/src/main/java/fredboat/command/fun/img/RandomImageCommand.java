@@ -31,7 +31,6 @@ import fredboat.commandmeta.abs.IFunCommand;
 import fredboat.main.BotController;
 import fredboat.main.Launcher;
 import fredboat.messaging.internal.Context;
-import fredboat.util.rest.CacheUtil;
 import fredboat.util.rest.Http;
 import okhttp3.Response;
 import org.json.JSONArray;
@@ -40,7 +39,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -84,16 +82,6 @@ public class RandomImageCommand extends Command implements IFunCommand {
         context.replyImage(getRandomImageUrl());
     }
 
-    public File getRandomFile() {
-        //Get a random image as a cached file
-        String randomUrl;
-        synchronized (this) {
-            randomUrl = getRandomImageUrl();
-        }
-
-        return CacheUtil.getImageFromURL(randomUrl);
-    }
-
     public String getRandomImageUrl() {
         return (String) Array.get(urls, ThreadLocalRandom.current().nextInt(urls.length));
     }
@@ -67,7 +67,7 @@ public class CommandsCommand extends Command implements IInfoCommand {
         if (!context.hasArguments()) {
 
             Collection<Module> enabledModules = context.getEnabledModules();
-            if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context.invoker)) {
+            if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context)) {
                 enabledModules.remove(Module.ADMIN);//dont show admin commands/modules for non admins
             }
 
@@ -85,7 +85,7 @@ public class CommandsCommand extends Command implements IInfoCommand {
         List<Module> showHelpFor;
         if (context.rawArgs.toLowerCase().contains(ALL.toLowerCase())) {
             showHelpFor = new ArrayList<>(Arrays.asList(Module.values()));
-            if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context.invoker)) {
+            if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context)) {
                 showHelpFor.remove(Module.ADMIN);//dont show admin commands/modules for non admins
             }
         } else {
@@ -117,7 +117,7 @@ public class CommandsCommand extends Command implements IInfoCommand {
                 .filter(command -> {
                     if (command instanceof ICommandRestricted) {
                         if (((ICommandRestricted) command).getMinimumPerms().getLevel() >= PermissionLevel.BOT_ADMIN.getLevel()) {
-                            return PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context.invoker);
+                            return PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context);
                         }
                     }
                     return true;
@@ -59,7 +59,7 @@ public class ClearCommand extends Command implements IModerationCommand {
         Member invoker = context.invoker;
 
         if (!invoker.hasPermission(channel, Permission.MESSAGE_MANAGE)
-                && !PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, invoker)) {
+                && !PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context)) {
             context.replyWithName("You must have Manage Messages to do that!");
             return;
         }
@@ -171,7 +171,7 @@ public class SkipCommand extends Command implements IMusicCommand, ICommandRestr
 
     private void skipUser(GuildPlayer player, CommandContext context, List<User> users) {
 
-        if (!PermsUtil.checkPerms(PermissionLevel.DJ, context.invoker)) {
+        if (!PermsUtil.checkPerms(PermissionLevel.DJ, context)) {
 
             if (users.size() == 1) {
                 User user = users.get(0);
@@ -187,6 +187,12 @@ public class SkipCommand extends Command implements IMusicCommand, ICommandRestr
             }
         }
 
+        //no need to look through the whole queue if none of the users has added anything
+        if (users.stream().allMatch(user -> player.getUserTracksCount(user.getIdLong()) == 0)) {
+            context.reply(context.i18n("skipUserNoTracks"));
+            return;
+        }
+
         List<AudioTrackContext> listAtc = player.getTracksInRange(0, player.getTrackCount());
         List<Long> userAtcIds = new ArrayList<>();
         List<User> affectedUsers = new ArrayList<>();
@@ -35,9 +35,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Created by napster on 23.02.18.
@@ -47,9 +44,6 @@ public class CommandContextParser {
 
     private static final Logger log = LoggerFactory.getLogger(CommandContext.class);
 
-    // https://regex101.com/r/ceFMeF/6
-    //group 1 is the mention, group 2 is the id of the mention, group 3 is the rest of the input including new lines
-    public static final Pattern MENTION_PREFIX = Pattern.compile("^(<@!?([0-9]+)>)(.*)$", Pattern.DOTALL);
     private final AppConfig appConfig;
 
     public CommandContextParser(AppConfig appConfig) {
@@ -62,71 +56,159 @@ public class CommandContextParser {
      */
     @Nullable
     public CommandContext parse(MessageReceivedEvent event) {
-        String raw = event.getMessage().getContentRaw();
+        Invocation invocation = parse(event.getMessage().getContentRaw(), event.getJDA().getSelfUser().getIdLong(),
+                PrefixCommand.giefPrefix(event.getGuild()), appConfig.getPrefix());
+        if (invocation == null) {
+            return null;
+        }
+        return new CommandContext(
+                event.getGuild(),
+                event.getTextChannel(),
+                event.getMember(),
+                event.getMessage(),
+                invocation.isMention,
+                invocation.trigger,
+                invocation.args,
+                invocation.rawArgs,
+                invocation.command);
+    }
 
-        String input;
+    /**
+     * Tokenizes the input in a single pass without any regexes. Nothing is allocated for messages that don't start
+     * with a prefix or a mention, and only the trigger, the arguments and the raw arguments for messages that do.
+     *
+     * @return the parsed command invocation, or null if it's not a command that we know.
+     */
+    @Nullable
+    public static Invocation parse(String raw, long selfId, String prefix, String defaultPrefix) {
+        int start;
         boolean isMention = false;
-        Matcher mentionMatcher = MENTION_PREFIX.matcher(raw);
+        int mentionEnd = mentionEnd(raw, selfId);
         // either starts with a mention of us
-        if (mentionMatcher.find() && mentionMatcher.group(2).equals(event.getJDA().getSelfUser().getId())) {
-            input = mentionMatcher.group(3).trim();
+        if (mentionEnd >= 0) {
+            start = mentionEnd;
             isMention = true;
         }
         // or starts with a custom/default prefix
-        else {
-            String prefix = PrefixCommand.giefPrefix(event.getGuild());
-            String defaultPrefix = appConfig.getPrefix();
-            if (raw.startsWith(prefix)) {
-                input = raw.substring(prefix.length());
-                if (prefix.equals(defaultPrefix)) {
-                    Metrics.prefixParsed.labels("default").inc();
-                } else {
-                    Metrics.prefixParsed.labels("custom").inc();
-                }
+        else if (raw.startsWith(prefix)) {
+            start = prefix.length();
+            if (prefix.equals(defaultPrefix)) {
+                Metrics.prefixParsed.labels("default").inc();
             } else {
-                //hardcoded check for the help or prefix command that is always displayed as FredBoat status
-                if (raw.startsWith(defaultPrefix + CommandInitializer.HELP_COMM_NAME)
-                        || raw.startsWith(defaultPrefix + CommandInitializer.PREFIX_COMM_NAME)) {
-                    Metrics.prefixParsed.labels("default").inc();
-                    input = raw.substring(defaultPrefix.length());
-                } else {
-                    //no match neither mention nor custom/default prefix
-                    return null;
-                }
+                Metrics.prefixParsed.labels("custom").inc();
             }
         }
-        input = input.trim();// eliminate possible whitespace between the mention/prefix and the rest of the input
-        if (input.isEmpty()) {
+        //hardcoded check for the help or prefix command that is always displayed as FredBoat status
+        else if (raw.startsWith(defaultPrefix)
+                && (raw.startsWith(CommandInitializer.HELP_COMM_NAME, defaultPrefix.length())
+                || raw.startsWith(CommandInitializer.PREFIX_COMM_NAME, defaultPrefix.length()))) {
+            Metrics.prefixParsed.labels("default").inc();
+            start = defaultPrefix.length();
+        } else {
+            //no match neither mention nor custom/default prefix
+            return null;
+        }
+
+        // eliminate possible whitespace between the mention/prefix and the rest of the input
+        String input = raw;
+        int end = input.length();
+        start = skipWhitespace(input, start, end);
+        while (end > start && isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
             if (isMention) { //just a mention and nothing else? trigger the prefix command
-                input = "prefix";
+                input = CommandInitializer.PREFIX_COMM_NAME;
+                start = 0;
+                end = input.length();
             } else {
                 return null; //no command will be detectable from an empty input
             }
         }
 
-        // the \p{javaSpaceChar} instead of the better known \s is used because it actually includes unicode whitespaces
-        String[] args = input.split("\\p{javaSpaceChar}+");
-        if (args.length < 1) {
-            return null; //while this shouldn't technically be possible due to the preprocessing of the input, better be safe than throw exceptions
+        int triggerEnd = nextWhitespace(input, start, end);
+        String trigger = input.substring(start, triggerEnd);
+        Command command = CommandRegistry.findCommand(trigger.toLowerCase());
+        if (command == null) {
+            log.info("Unknown command:\t{}", trigger);
+            return null;
         }
 
-        String commandTrigger = args[0];
+        int argsStart = skipWhitespace(input, triggerEnd, end);
+        int argsCount = 0;
+        for (int i = argsStart; i < end; i = skipWhitespace(input, nextWhitespace(input, i, end), end)) {
+            argsCount++;
+        }
+        String[] args = new String[argsCount];
+        int arg = 0;
+        for (int i = argsStart; i < end; ) {
+            int argEnd = nextWhitespace(input, i, end);
+            args[arg++] = input.substring(i, argEnd);
+            i = skipWhitespace(input, argEnd, end);
+        }
 
-        Command command = CommandRegistry.findCommand(commandTrigger.toLowerCase());
-        if (command == null) {
-            log.info("Unknown command:\t{}", commandTrigger);
-            return null;
-        } else {
-            return new CommandContext(
-                    event.getGuild(),
-                    event.getTextChannel(),
-                    event.getMember(),
-                    event.getMessage(),
-                    isMention,
-                    commandTrigger,
-                    Arrays.copyOfRange(args, 1, args.length),//exclude args[0] that contains the command trigger
-                    input.replaceFirst(commandTrigger, "").trim(),
-                    command);
+        return new Invocation(isMention, trigger, args, input.substring(argsStart, end), command);
+    }
+
+    /**
+     * @return the index right after a leading {@literal <@id>} or {@literal <@!id>} mention of the given user, or -1 if
+     * the input doesn't start with such a mention
+     */
+    private static int mentionEnd(String input, long userId) {
+        if (!input.startsWith("<@")) {
+            return -1;
+        }
+        int i = input.startsWith("!", 2) ? 3 : 2;
+        int digitsStart = i;
+        long id = 0;
+        for (; i < input.length() && input.charAt(i) != '>'; i++) {
+            char c = input.charAt(i);
+            //snowflakes have at most 19 digits
+            if (c < '0' || c > '9' || i - digitsStart >= 19) {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        if (i == digitsStart || i == input.length() || id != userId) {
+            return -1;
+        }
+        return i + 1;
+    }
+
+    // covers both what String#trim() removes and \p{javaSpaceChar}, which includes unicode whitespaces
+    private static boolean isWhitespace(char c) {
+        return c <= ' ' || Character.isSpaceChar(c);
+    }
+
+    private static int skipWhitespace(String input, int from, int end) {
+        int i = from;
+        while (i < end && isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int nextWhitespace(String input, int from, int end) {
+        int i = from;
+        while (i < end && !isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    public static class Invocation {
+        public final boolean isMention;
+        public final String trigger;
+        public final String[] args;
+        public final String rawArgs;
+        public final Command command;
+
+        private Invocation(boolean isMention, String trigger, String[] args, String rawArgs, Command command) {
+            this.isMention = isMention;
+            this.trigger = trigger;
+            this.args = args;
+            this.rawArgs = rawArgs;
+            this.command = command;
         }
     }
 
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.commandmeta;
+
+import fredboat.config.property.AppConfig;
+import fredboat.feature.metrics.Metrics;
+import fredboat.feature.metrics.collectors.ThreadPoolCollector;
+import fredboat.util.concurrent.InstrumentedThreadPoolExecutor;
+import fredboat.util.concurrent.VirtualThreadExecutor;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs command invocations off the JDA event threads, so that commands waiting for slow third party APIs don't hold up
+ * the other events of their shard.
+ * <p>
+ * Each command class gets its own executor, so a slow API only ties up the threads of the commands using it. The
+ * invocations of a guild are run one after another in the order in which they were dispatched, no matter which
+ * executors they end up on, so that for example a skip issued right after a play command still happens after it.
+ */
+@Component
+public class CommandDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandDispatcher.class);
+
+    //per command class. the guild lanes limit the tasks in flight to one per guild, so the queues need no bounds
+    private static final int THREADS_PER_COMMAND = 10;
+
+    private final AppConfig appConfig;
+    private final ThreadPoolCollector threadPoolCollector;
+    private final Map<Class<?>, ExecutorService> executors = new ConcurrentHashMap<>();
+    private final Long2ObjectOpenHashMap<Lane> lanes = new Long2ObjectOpenHashMap<>(); //guarded by itself
+
+    public CommandDispatcher(AppConfig appConfig, ThreadPoolCollector threadPoolCollector) {
+        this.appConfig = appConfig;
+        this.threadPoolCollector = threadPoolCollector;
+    }
+
+    /**
+     * Does not block.
+     */
+    public void dispatch(long guildId, Class<?> commandClass, Runnable invocation) {
+        Task task = new Task(guildId, commandClass, invocation, MDC.getCopyOfContextMap());
+        boolean start;
+        synchronized (lanes) {
+            Lane lane = lanes.get(guildId);
+            if (lane == null) {
+                lane = new Lane();
+                lanes.put(guildId, lane);
+            }
+            lane.queue.add(task);
+            start = lane.queue.size() == 1;
+        }
+        if (start) {
+            submit(task);
+        }
+    }
+
+    private void submit(Task task) {
+        try {
+            executor(task.commandClass).execute(task);
+        } catch (RejectedExecutionException e) {
+            //shutting down
+            log.warn("Dropping invocation of {}", task.commandClass.getSimpleName(), e);
+            done(task);
+        }
+    }
+
+    /**
+     * Remove the task from its lane and start the next task of the guild, if there is any.
+     */
+    private void done(Task task) {
+        Task next;
+        synchronized (lanes) {
+            Lane lane = lanes.get(task.guildId);
+            lane.queue.poll();
+            next = lane.queue.peek();
+            if (next == null) {
+                lanes.remove(task.guildId);
+            }
+        }
+        if (next != null) {
+            submit(next);
+        }
+    }
+
+    private ExecutorService executor(Class<?> commandClass) {
+        return executors.computeIfAbsent(commandClass, clazz -> {
+            String name = "command-" + clazz.getSimpleName();
+            ExecutorService executor = null;
+            if (appConfig.useVirtualThreads()) {
+                executor = VirtualThreadExecutor.create(name, Integer.MAX_VALUE);
+            }
+            if (executor == null) {
+                InstrumentedThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor(name, THREADS_PER_COMMAND,
+                        0, true, new ThreadPoolExecutor.AbortPolicy());
+                threadPoolCollector.addPool(name, pool);
+                executor = pool;
+            }
+            return executor;
+        });
+    }
+
+    private static class Lane {
+        //the head of the queue is the task in flight
+        private final Queue<Task> queue = new ArrayDeque<>();
+    }
+
+    private class Task implements Runnable {
+        private final long guildId;
+        private final Class<?> commandClass;
+        private final Runnable invocation;
+        @Nullable
+        private final Map<String, String> mdc;
+        private final long dispatched = System.nanoTime();
+
+        private Task(long guildId, Class<?> commandClass, Runnable invocation, @Nullable Map<String, String> mdc) {
+            this.guildId = guildId;
+            this.commandClass = commandClass;
+            this.invocation = invocation;
+            this.mdc = mdc;
+        }
+
+        @Override
+        public void run() {
+            Metrics.commandQueueWait.labels(commandClass.getSimpleName())
+                    .observe((System.nanoTime() - dispatched) / 1_000_000_000.0);
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            try {
+                invocation.run();
+            } catch (Throwable t) {
+                log.error("Uncaught exception while running {}", commandClass.getSimpleName(), t);
+            } finally {
+                MDC.clear();
+                done(this);
+            }
+        }
+    }
+}
@@ -250,6 +250,8 @@ public class CommandInitializer {
         musicModule.registerCommand(new RestartCommand("restart", "replay"));
         musicModule.registerCommand(new RewindCommand("rewind", "rew"));
         musicModule.registerCommand(new SeekCommand("seek"));
+
+        CommandRegistry.buildTriggerIndex();
     }
 
 
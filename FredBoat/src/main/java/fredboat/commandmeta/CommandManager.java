@@ -31,6 +31,7 @@ import fredboat.commandmeta.abs.Command;
 import fredboat.commandmeta.abs.CommandContext;
 import fredboat.commandmeta.abs.ICommandRestricted;
 import fredboat.commandmeta.abs.IMusicCommand;
+import fredboat.config.property.AppConfig;
 import fredboat.config.property.Credentials;
 import fredboat.definitions.PermissionLevel;
 import fredboat.feature.PatronageChecker;
@@ -41,8 +42,8 @@ import fredboat.perms.PermsUtil;
 import fredboat.shared.constant.BotConstants;
 import fredboat.util.DiscordUtil;
 import fredboat.util.TextUtils;
+import io.prometheus.client.Histogram;
 import net.dv8tion.jda.core.entities.Guild;
-import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.TextChannel;
 import org.springframework.stereotype.Component;
 
@@ -60,19 +61,42 @@ public class CommandManager {
     private final PatronageChecker patronageChecker;
     private final MusicTextChannelProvider musicTextChannelProvider;
     private final Credentials credentials;
+    private final AppConfig appConfig;
+    private final CommandDispatcher commandDispatcher;
 
     public CommandManager(PatronageChecker patronageChecker, MusicTextChannelProvider musicTextChannelProvider,
-                          Credentials credentials) {
+                          Credentials credentials, AppConfig appConfig, CommandDispatcher commandDispatcher) {
         this.patronageChecker = patronageChecker;
         this.musicTextChannelProvider = musicTextChannelProvider;
         this.credentials = credentials;
+        this.appConfig = appConfig;
+        this.commandDispatcher = commandDispatcher;
     }
 
+    /**
+     * Runs the command right away, or hands it to the {@link CommandDispatcher} if async commands are enabled.
+     */
     public void prefixCalled(CommandContext context) {
+        if (appConfig.useAsyncCommands()) {
+            commandDispatcher.dispatch(context.guild.getIdLong(), context.command.getClass(), () -> execute(context));
+        } else {
+            execute(context);
+        }
+    }
+
+    private void execute(CommandContext context) {
+        try (//NOTE: Some commands, like ;;mal, run async and will not reflect the real performance of FredBoat
+             // their performance should be judged by the totalResponseTime metric instead
+             Histogram.Timer ignored = Metrics.executionTime.labels(context.command.getClass().getSimpleName()).startTimer()
+        ) {
+            invoke(context);
+        }
+    }
+
+    private void invoke(CommandContext context) {
         Guild guild = context.guild;
         Command invoked = context.command;
         TextChannel channel = context.channel;
-        Member invoker = context.invoker;
 
         totalCommandsExecuted.incrementAndGet();
         Metrics.commandsExecuted.labels(invoked.getClass().getSimpleName()).inc();
@@ -94,7 +118,7 @@ public class CommandManager {
         if (guild.getIdLong() == BotConstants.FREDBOAT_HANGOUT_ID && DiscordUtil.isOfficialBot(credentials)) {
             if (!channel.getId().equals("174821093633294338") // #spam_and_music
                     && !channel.getId().equals("217526705298866177") // #staff
-                    && !PermsUtil.checkPerms(PermissionLevel.ADMIN, invoker)) {
+                    && !PermsUtil.checkPerms(PermissionLevel.ADMIN, context)) {
                 context.deleteMessage();
                 context.replyWithName("Please read <#219483023257763842> for server rules and only use commands in <#174821093633294338>!",
                         msg -> CentralMessaging.restService.schedule(() -> CentralMessaging.deleteMessage(msg),
@@ -111,7 +135,7 @@ public class CommandManager {
         if (invoked instanceof ICommandRestricted) {
             //Check if invoker actually has perms
             PermissionLevel minPerms = ((ICommandRestricted) invoked).getMinimumPerms();
-            PermissionLevel actual = PermsUtil.getPerms(invoker);
+            PermissionLevel actual = PermsUtil.getPerms(context);
 
             if(actual.getLevel() < minPerms.getLevel()) {
                 context.replyWithName(context.i18nFormat("cmdPermsTooLow", minPerms, actual));
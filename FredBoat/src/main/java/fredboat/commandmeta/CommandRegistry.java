@@ -38,6 +38,9 @@ public class CommandRegistry {
 
     private static Map<Module, CommandRegistry> modules = new HashMap<>();
 
+    //lowercase names and aliases of the commands of all modules, see #buildTriggerIndex
+    private static volatile Map<String, Command> triggerIndex = Collections.emptyMap();
+
     public static void registerModule(@Nonnull CommandRegistry registry) {
         modules.put(registry.module, registry);
     }
@@ -51,13 +54,32 @@ public class CommandRegistry {
         return mod;
     }
 
+    /**
+     * Build the global lookup of all command names and aliases of all registered modules. Needs to be called after all
+     * modules have been registered, commands registered afterwards won't be found by {@link #findCommand(String)}.
+     * <p>
+     * If several modules register the same trigger, the module that is declared first in {@link Module} wins.
+     */
+    public static void buildTriggerIndex() {
+        Map<String, Command> index = new HashMap<>();
+        for (Module module : Module.values()) {
+            CommandRegistry registry = modules.get(module);
+            if (registry == null) {
+                continue;
+            }
+            for (Map.Entry<String, Command> entry : registry.registry.entrySet()) {
+                index.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        triggerIndex = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * @param name lowercase name or alias of a command
+     */
     @Nullable
     public static Command findCommand(@Nonnull String name) {
-        return modules.values().stream()
-                .map(cr -> cr.getCommand(name))
-                .filter(Objects::nonNull)
-                .findAny()
-                .orElse(null);
+        return triggerIndex.get(name);
     }
 
     public static int getTotalSize() {
@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.commandmeta;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects messages that can't possibly be commands before any parsing happens, by comparing their first character to
+ * the first character of the prefix of their guild.
+ * <p>
+ * The known prefixes are fed by the prefix cache of the {@link fredboat.command.config.PrefixCommand} whenever it
+ * loads a prefix, and dropped whenever the cache drops it. Guilds with an unknown prefix are never rejected, so that
+ * parsing their messages loads the prefix, which also makes sure that no commands are lost if this filter is stale
+ * or empty.
+ * <p>
+ * Loads register themselves before they fetch the prefix, and a removal cancels any registered load of its guild. That
+ * way a load that fetched a prefix before it was changed can't put the outdated prefix back after the change dropped
+ * it, which would reject the commands with the new prefix.
+ */
+public class PrefixFilter {
+
+    private static final int UNKNOWN = -1;
+    private static final int ANY = -2; //empty prefix, any message may be a command
+    private static final int STRIPES = 64;
+    private static final long NO_LOAD = 0;
+
+    //guild id -> first char of the prefix, striped to keep lock contention between the shard threads low
+    private final Long2IntOpenHashMap[] stripes = new Long2IntOpenHashMap[STRIPES];
+    //guild id -> the load that may put its prefix, guarded by the stripe of the guild
+    private final Long2LongOpenHashMap[] loads = new Long2LongOpenHashMap[STRIPES];
+    private final AtomicLong loadCounter = new AtomicLong();
+
+    public PrefixFilter() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Long2IntOpenHashMap();
+            stripes[i].defaultReturnValue(UNKNOWN);
+            loads[i] = new Long2LongOpenHashMap();
+            loads[i].defaultReturnValue(NO_LOAD);
+        }
+    }
+
+    /**
+     * @param customPrefix the custom prefix of the guild, or empty if it uses the default one
+     */
+    public void put(long guildId, Optional<String> customPrefix, String defaultPrefix) {
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            stripe.put(guildId, firstChar(customPrefix, defaultPrefix));
+        }
+    }
+
+    /**
+     * Call this before fetching the prefix of a guild, and hand the returned load to
+     * {@link #finishLoad(long, long, Optional, String)} or {@link #abortLoad(long, long)} afterwards. Only the latest
+     * load of a guild that has not been cancelled by a {@link #remove(long)} may put its prefix.
+     */
+    public long beginLoad(long guildId) {
+        long load = loadCounter.incrementAndGet();
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            loads[stripeIndex(guildId)].put(guildId, load);
+        }
+        return load;
+    }
+
+    /**
+     * Puts the fetched prefix, unless the load has been cancelled or overtaken in the meantime.
+     *
+     * @param customPrefix the custom prefix of the guild, or empty if it uses the default one
+     */
+    public void finishLoad(long guildId, long load, Optional<String> customPrefix, String defaultPrefix) {
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            if (endLoad(guildId, load)) {
+                stripe.put(guildId, firstChar(customPrefix, defaultPrefix));
+            }
+        }
+    }
+
+    public void abortLoad(long guildId, long load) {
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            endLoad(guildId, load);
+        }
+    }
+
+    /**
+     * Drops the prefix of the guild and cancels its load, if it has one.
+     */
+    public void remove(long guildId) {
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            stripe.remove(guildId);
+            loads[stripeIndex(guildId)].remove(guildId);
+        }
+    }
+
+    /**
+     * Does not allocate anything.
+     *
+     * @return false if the message is definitely not a command, true if it may be one
+     */
+    public boolean mayBeCommand(long guildId, String raw, String defaultPrefix) {
+        if (raw.isEmpty()) {
+            return false;
+        }
+        char c = raw.charAt(0);
+        //mentions of the bot, and the help and prefix commands which are always available with the default prefix
+        if (c == '<' || (!defaultPrefix.isEmpty() && c == defaultPrefix.charAt(0))) {
+            return true;
+        }
+        int first;
+        Long2IntOpenHashMap stripe = stripe(guildId);
+        synchronized (stripe) {
+            first = stripe.get(guildId);
+        }
+        return first == UNKNOWN || first == ANY || first == c;
+    }
+
+    //needs to hold the lock of the stripe of the guild
+    private boolean endLoad(long guildId, long load) {
+        Long2LongOpenHashMap stripeLoads = loads[stripeIndex(guildId)];
+        if (stripeLoads.get(guildId) != load) {
+            return false;
+        }
+        stripeLoads.remove(guildId);
+        return true;
+    }
+
+    private static int firstChar(Optional<String> customPrefix, String defaultPrefix) {
+        String prefix = customPrefix.orElse(defaultPrefix);
+        return prefix.isEmpty() ? ANY : prefix.charAt(0);
+    }
+
+    private Long2IntOpenHashMap stripe(long guildId) {
+        return stripes[stripeIndex(guildId)];
+    }
+
+    private static int stripeIndex(long guildId) {
+        return (int) (HashCommon.mix(guildId) & (STRIPES - 1));
+    }
+}
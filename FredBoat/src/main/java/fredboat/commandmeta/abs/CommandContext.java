@@ -26,15 +26,18 @@
 package fredboat.commandmeta.abs;
 
 import fredboat.definitions.Module;
+import fredboat.definitions.PermissionLevel;
 import fredboat.main.Launcher;
 import fredboat.messaging.CentralMessaging;
 import fredboat.messaging.internal.Context;
+import fredboat.perms.PermsUtil;
 import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.entities.*;
 import space.npstr.annotations.FieldsAreNonNullByDefault;
 import space.npstr.annotations.ParametersAreNonnullByDefault;
 import space.npstr.annotations.ReturnTypesAreNonNullByDefault;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -62,6 +65,9 @@ public class CommandContext extends Context {
     public final String rawArgs;             // raw arguments excluding prefix and trigger, trimmed
     public final Command command;
 
+    //resolved on first use, see getInvokerPerms()
+    @Nullable
+    private PermissionLevel invokerPerms;
 
     //built by the CommandContextParser
     public CommandContext(Guild guild, TextChannel channel, Member invoker, Message message,
@@ -112,6 +118,18 @@ public class CommandContext extends Context {
         return args.length > 0 && !rawArgs.isEmpty();
     }
 
+    /**
+     * @return the permission level of the invoker, resolved once per command
+     */
+    public PermissionLevel getInvokerPerms() {
+        PermissionLevel perms = invokerPerms;
+        if (perms == null) {
+            perms = PermsUtil.getPerms(invoker);
+            invokerPerms = perms;
+        }
+        return perms;
+    }
+
     public Collection<Module> getEnabledModules() {
         return Launcher.getBotController().getGuildModulesService().fetchGuildModules(this.guild).getEnabledModules();
     }
@@ -25,8 +25,12 @@
 package fredboat.config;
 
 import fredboat.agent.StatsAgent;
+import fredboat.config.property.AppConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by napster on 24.02.18.
@@ -34,8 +38,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class AgentConfiguration {
 
+    @Primary
     @Bean
     public StatsAgent botMetricsStatsAgent() {
         return new StatsAgent("bot metrics");
     }
+
+    //refreshes the snapshot served by the /stats endpoint
+    @Bean
+    public StatsAgent statsSnapshotAgent(AppConfig appConfig) {
+        return new StatsAgent("stats snapshot", appConfig.getStatsSnapshotSeconds(), TimeUnit.SECONDS);
+    }
 }
@@ -36,12 +36,13 @@ import com.sedmelluq.discord.lavaplayer.source.twitch.TwitchStreamAudioSourceMan
 import com.sedmelluq.discord.lavaplayer.source.vimeo.VimeoAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
 import fredboat.audio.source.HttpSourceManager;
+import fredboat.audio.source.PlaylistImportSessions;
 import fredboat.audio.source.PlaylistImportSourceManager;
+import fredboat.audio.source.SearchTermResolver;
 import fredboat.audio.source.SpotifyPlaylistSourceManager;
 import fredboat.config.property.AppConfig;
 import fredboat.config.property.AudioSourcesConfig;
 import fredboat.util.rest.SpotifyAPIWrapper;
-import fredboat.util.rest.TrackSearcher;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -179,8 +180,9 @@ public class AudioPlayerManagerConfiguration {
 
     @Bean
     @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-    public PlaylistImportSourceManager playlistImportSourceManager(@Qualifier("pasteAudioPlayerManager") AudioPlayerManager audioPlayerManager) {
-        return new PlaylistImportSourceManager(audioPlayerManager);
+    public PlaylistImportSourceManager playlistImportSourceManager(@Qualifier("pasteAudioPlayerManager") AudioPlayerManager audioPlayerManager,
+                                                                   PlaylistImportSessions playlistImportSessions) {
+        return new PlaylistImportSourceManager(audioPlayerManager, playlistImportSessions);
     }
 
     @Bean
@@ -226,9 +228,10 @@ public class AudioPlayerManagerConfiguration {
 
     @Bean
     @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-    public SpotifyPlaylistSourceManager spotifyPlaylistSourceManager(TrackSearcher trackSearcher,
-                                                                     SpotifyAPIWrapper spotifyAPIWrapper) {
-        return new SpotifyPlaylistSourceManager(trackSearcher, spotifyAPIWrapper);
+    public SpotifyPlaylistSourceManager spotifyPlaylistSourceManager(SearchTermResolver searchTermResolver,
+                                                                     SpotifyAPIWrapper spotifyAPIWrapper,
+                                                                     PlaylistImportSessions playlistImportSessions) {
+        return new SpotifyPlaylistSourceManager(searchTermResolver, spotifyAPIWrapper, playlistImportSessions);
     }
 
     @Bean
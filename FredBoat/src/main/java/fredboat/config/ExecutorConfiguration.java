@@ -24,31 +24,106 @@
 
 package fredboat.config;
 
+import fredboat.config.property.AppConfig;
 import fredboat.feature.metrics.collectors.ThreadPoolCollector;
+import fredboat.util.concurrent.InstrumentedScheduledThreadPoolExecutor;
+import fredboat.util.concurrent.InstrumentedThreadPoolExecutor;
+import fredboat.util.concurrent.VirtualThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Created by napster on 24.02.18.
+ * <p>
+ * All pools created here are bounded and report their queue wait and task run times, see
+ * {@link InstrumentedThreadPoolExecutor}.
  */
 @Configuration
 public class ExecutorConfiguration {
 
+    private static final Logger log = LoggerFactory.getLogger(ExecutorConfiguration.class);
+
+    //each guild can only have a few identifiers in flight, so this is only hit when lots of guilds load at once
+    private static final int AUDIO_LOADER_QUEUE_SIZE = 10000;
+    //a bulk fetch covers up to a hundred cache misses, so only a handful of them run at once even on a reconnect storm
+    private static final int REST_REPO_FETCH_THREADS = 4;
+    private static final int REST_REPO_FETCH_QUEUE_SIZE = 1000;
+
     /**
-     * Unlimited threads = http://i.imgur.com/H3b7H1S.gif
-     * Use this executor for various small async tasks
+     * Use this executor for various small async tasks.
+     * <p>
+     * When all of its threads are busy and its queue is full, the submitting thread runs the task itself. That slows
+     * down whatever produces the tasks instead of piling up threads or dropping work.
      */
     @Bean
-    public ExecutorService executor(ThreadPoolCollector threadPoolCollector) {
-        ExecutorService executor = Executors.newCachedThreadPool(
-                r -> new Thread(r, "main-executor-worker")
-        );
-        threadPoolCollector.addPool("main-executor", (ThreadPoolExecutor) executor);
+    @Primary
+    public ExecutorService executor(AppConfig appConfig, ThreadPoolCollector threadPoolCollector) {
+        String name = "main-executor";
+        ExecutorService executor = null;
+        if (appConfig.useVirtualThreads()) {
+            executor = VirtualThreadExecutor.create(name,
+                    appConfig.getExecutorThreads() + appConfig.getExecutorQueueSize());
+            if (executor == null) {
+                log.warn("Virtual threads are not supported by this JVM, using a regular thread pool instead");
+            }
+        }
+        if (executor == null) {
+            InstrumentedThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor(name,
+                    appConfig.getExecutorThreads(), appConfig.getExecutorQueueSize(), false,
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            threadPoolCollector.addPool(name, pool);
+            executor = pool;
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdown, "main-executor-shutdown-hook"));
         return executor;
     }
+
+    /**
+     * Resolves the identifiers queued up by all guild players. The amount of its threads is the global limit of
+     * identifiers being loaded at the same time. Rejected identifiers are reported to the user by the audio loader.
+     */
+    @Bean
+    public ExecutorService audioLoaderExecutor(AppConfig appConfig, ThreadPoolCollector threadPoolCollector) {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("audio-loader",
+                appConfig.getGlobalLoadingConcurrency(), AUDIO_LOADER_QUEUE_SIZE, false,
+                new ThreadPoolExecutor.AbortPolicy());
+        threadPoolCollector.addPool(executor.getName(), executor);
+        Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdown, "audio-loader-shutdown-hook"));
+        return executor;
+    }
+
+    /**
+     * Runs the bulk fetches of the cache misses of the rest repos. When it is saturated, it rejects the batches handed
+     * over to it, which fails their fetches. Running them on the handing over thread instead would block the
+     * {@link #restRepoBatchTimer}.
+     */
+    @Bean
+    public ExecutorService restRepoFetchExecutor(ThreadPoolCollector threadPoolCollector) {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("rest-repo-fetch",
+                REST_REPO_FETCH_THREADS, REST_REPO_FETCH_QUEUE_SIZE, true,
+                new ThreadPoolExecutor.AbortPolicy());
+        threadPoolCollector.addPool(executor.getName(), executor);
+        Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdown, "rest-repo-fetch-shutdown-hook"));
+        return executor;
+    }
+
+    /**
+     * Dispatches the batches of cache misses of the rest repos once their delay has passed. It only hands them over to
+     * the {@link #restRepoFetchExecutor}.
+     */
+    @Bean
+    public ScheduledExecutorService restRepoBatchTimer(ThreadPoolCollector threadPoolCollector) {
+        InstrumentedScheduledThreadPoolExecutor timer =
+                new InstrumentedScheduledThreadPoolExecutor("rest-repo-batch-timer", 1, true);
+        threadPoolCollector.addPool(timer.getName(), timer);
+        Runtime.getRuntime().addShutdownHook(new Thread(timer::shutdown, "rest-repo-batch-timer-shutdown-hook"));
+        return timer;
+    }
 }
@@ -34,12 +34,15 @@ import fredboat.shared.constant.ExitCodes;
 import fredboat.util.rest.Http;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -55,9 +58,16 @@ public class RepoConfiguration {
     private final BackendConfig.Quarterdeck quarterdeckConfig;
     private final Gson gson = new Gson();
     private final Http http = BotController.HTTP; //todo replace
+    private final ExecutorService fetchExecutor;
+    private final ScheduledExecutorService batchTimer;
 
-    public RepoConfiguration(BackendConfig backendConfig, ShutdownHandler shutdownHandler) throws InterruptedException {
+    public RepoConfiguration(BackendConfig backendConfig, ShutdownHandler shutdownHandler,
+                             @Qualifier("restRepoFetchExecutor") ExecutorService fetchExecutor,
+                             @Qualifier("restRepoBatchTimer") ScheduledExecutorService batchTimer)
+            throws InterruptedException {
         this.quarterdeckConfig = backendConfig.getQuarterdeck();
+        this.fetchExecutor = fetchExecutor;
+        this.batchTimer = batchTimer;
 
         log.info("Contacting the quarterdeck backend");
         String[] apiVersions = null;
@@ -99,37 +109,44 @@ public class RepoConfiguration {
 
     @Bean
     public BlacklistRepo blacklistRepo() {
-        return new RestBlacklistRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestBlacklistRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Bean
     public GuildConfigRepo guildConfigRepo() {
-        return new RestGuildConfigRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestGuildConfigRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Bean
     public GuildDataRepo guildDataRepo() {
-        return new RestGuildDataRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestGuildDataRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Bean
     public GuildModulesRepo guildModulesRepo() {
-        return new RestGuildModulesRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestGuildModulesRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Bean
     public GuildPermsRepo guildPermsRepo() {
-        return new RestGuildPermsRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestGuildPermsRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Bean
     public PrefixRepo prefixRepo() {
-        return new RestPrefixRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestPrefixRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 
     @Nullable
     @Bean
     public SearchResultRepo searchResultRepo() {
-        return new RestSearchResultRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth());
+        return new RestSearchResultRepo(quarterdeckConfig.getHost(), http, gson, quarterdeckConfig.getBasicAuth(),
+                fetchExecutor, batchTimer);
     }
 }
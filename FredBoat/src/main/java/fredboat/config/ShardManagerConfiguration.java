@@ -35,6 +35,7 @@ import fredboat.event.ShardReviveHandler;
 import fredboat.feature.DikeSessionController;
 import fredboat.feature.metrics.JdaEventsMetricsListener;
 import fredboat.feature.metrics.Metrics;
+import fredboat.feature.metrics.UniqueUserCounter;
 import fredboat.main.ShutdownHandler;
 import fredboat.metrics.OkHttpEventMetrics;
 import fredboat.util.rest.Http;
@@ -72,7 +73,7 @@ public class ShardManagerConfiguration {
                                           AudioConnectionFacade audioConnectionFacade, SessionController sessionController,
                                           EventLogger eventLogger, JdaEventsMetricsListener jdaEventsMetricsListener,
                                           ShardReviveHandler shardReviveHandler, MusicPersistenceHandler musicPersistenceHandler,
-                                          ShutdownHandler shutdownHandler) {
+                                          ShutdownHandler shutdownHandler, UniqueUserCounter uniqueUserCounter) {
 
         DefaultShardManagerBuilder builder = new DefaultShardManagerBuilder()
                 .setToken(configProvider.getCredentials().getBotToken())
@@ -87,6 +88,7 @@ public class ShardManagerConfiguration {
                         .eventListener(new OkHttpEventMetrics("jda", Metrics.httpEventCounter)))
                 .addEventListeners(mainEventListener)
                 .addEventListeners(jdaEventsMetricsListener)
+                .addEventListeners(uniqueUserCounter)
                 .addEventListeners(eventLogger)
                 .addEventListeners(shardReviveHandler)
                 .addEventListeners(musicPersistenceHandler)
@@ -75,4 +75,63 @@ public interface AppConfig {
     }
 
     boolean getContinuePlayback();
+
+    /**
+     * @return how many identifiers a single guild player may resolve at the same time
+     */
+    int getGuildLoadingConcurrency();
+
+    /**
+     * @return how many identifiers may be resolved at the same time by all guild players of this bot
+     */
+    int getGlobalLoadingConcurrency();
+
+    /**
+     * @return true to use the lock free sliding window engine for ratelimits, false to use the timestamp based one
+     */
+    boolean useSlidingWindowRatelimits();
+
+    /**
+     * @return how many searches for the tracks of imported playlists may run at the same time against each search
+     * provider
+     */
+    int getPlaylistSearchConcurrency();
+
+    /**
+     * @return amount of threads of the main executor, which runs various small async tasks
+     */
+    int getExecutorThreads();
+
+    /**
+     * @return how many tasks may wait for a thread of the main executor before the submitting threads have to run them
+     * on their own
+     */
+    int getExecutorQueueSize();
+
+    /**
+     * @return true to run the tasks of the main executor on virtual threads, if the JVM supports them
+     */
+    boolean useVirtualThreads();
+
+    /**
+     * @return true to run commands off the JDA event threads, on an executor per command class
+     */
+    boolean useAsyncCommands();
+
+    /**
+     * @return how long the output of expensive metrics collectors may be reused by later scrapes, 0 to collect them on
+     * every scrape
+     */
+    long getMetricsSnapshotMillis();
+
+    /**
+     * @return interval in seconds at which the stats served by the /stats endpoint are refreshed, at least 1
+     */
+    int getStatsSnapshotSeconds();
+
+    /**
+     * @return true to count unique users exactly, at the cost of memory in the order of the user cache, false to
+     * estimate them with a fixed size sketch per shard
+     */
+    boolean useExactUserCount();
 }
@@ -54,6 +54,17 @@ public class AppConfigProperties implements AppConfig {
 
     //undocumented
     private int playerLimit = -1;
+    private int guildLoadingConcurrency = 3;
+    private int globalLoadingConcurrency = 20;
+    private boolean slidingWindowRatelimits = true;
+    private int playlistSearchConcurrency = 3;
+    private int executorThreads = 50;
+    private int executorQueueSize = 1000;
+    private boolean virtualThreads = false;
+    private boolean asyncCommands = false;
+    private long metricsSnapshotMillis = 5000;
+    private int statsSnapshotSeconds = 10;
+    private boolean exactUserCount = false;
 
     private boolean distributionLogged = false;
 
@@ -100,6 +111,61 @@ public class AppConfigProperties implements AppConfig {
         return playerLimit;
     }
 
+    @Override
+    public int getGuildLoadingConcurrency() {
+        return guildLoadingConcurrency;
+    }
+
+    @Override
+    public int getGlobalLoadingConcurrency() {
+        return globalLoadingConcurrency;
+    }
+
+    @Override
+    public boolean useSlidingWindowRatelimits() {
+        return slidingWindowRatelimits;
+    }
+
+    @Override
+    public int getPlaylistSearchConcurrency() {
+        return playlistSearchConcurrency;
+    }
+
+    @Override
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    @Override
+    public int getExecutorQueueSize() {
+        return executorQueueSize;
+    }
+
+    @Override
+    public boolean useVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public boolean useAsyncCommands() {
+        return asyncCommands;
+    }
+
+    @Override
+    public long getMetricsSnapshotMillis() {
+        return metricsSnapshotMillis;
+    }
+
+    @Override
+    public int getStatsSnapshotSeconds() {
+        return statsSnapshotSeconds;
+    }
+
+    @Override
+    public boolean useExactUserCount() {
+        return exactUserCount;
+    }
+
     public void setDevelopment(boolean development) {
         this.development = development;
     }
@@ -136,4 +202,48 @@ public class AppConfigProperties implements AppConfig {
     public void setPlayerLimit(int playerLimit) {
         this.playerLimit = playerLimit;
     }
+
+    public void setGuildLoadingConcurrency(int guildLoadingConcurrency) {
+        this.guildLoadingConcurrency = Math.max(1, guildLoadingConcurrency);
+    }
+
+    public void setGlobalLoadingConcurrency(int globalLoadingConcurrency) {
+        this.globalLoadingConcurrency = Math.max(1, globalLoadingConcurrency);
+    }
+
+    public void setSlidingWindowRatelimits(boolean slidingWindowRatelimits) {
+        this.slidingWindowRatelimits = slidingWindowRatelimits;
+    }
+
+    public void setPlaylistSearchConcurrency(int playlistSearchConcurrency) {
+        this.playlistSearchConcurrency = Math.max(1, playlistSearchConcurrency);
+    }
+
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = Math.max(1, executorThreads);
+    }
+
+    public void setExecutorQueueSize(int executorQueueSize) {
+        this.executorQueueSize = Math.max(1, executorQueueSize);
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void setAsyncCommands(boolean asyncCommands) {
+        this.asyncCommands = asyncCommands;
+    }
+
+    public void setMetricsSnapshotMillis(long metricsSnapshotMillis) {
+        this.metricsSnapshotMillis = metricsSnapshotMillis;
+    }
+
+    public void setStatsSnapshotSeconds(int statsSnapshotSeconds) {
+        this.statsSnapshotSeconds = Math.max(1, statsSnapshotSeconds);
+    }
+
+    public void setExactUserCount(boolean exactUserCount) {
+        this.exactUserCount = exactUserCount;
+    }
 }
@@ -41,9 +41,13 @@ import space.npstr.sqlsauce.DatabaseException;
 import space.npstr.sqlsauce.entities.GuildBotComposite;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * This class serves as the glue between FredBoat and repositories of entities. It is home
@@ -132,6 +136,11 @@ public class EntityService implements BlacklistService, GuildConfigService, Guil
         return fetchUserFriendly(() -> blacklistRepo.merge(entry));
     }
 
+    @Override
+    public List<BlacklistEntry> mergeBlacklistEntries(Collection<BlacklistEntry> entries) {
+        return fetchUserFriendly(() -> blacklistRepo.mergeAll(entries));
+    }
+
     @Override
     public void deleteBlacklistEntry(long id) {
         doUserFriendly(() -> blacklistRepo.delete(id));
@@ -240,4 +249,16 @@ public class EntityService implements BlacklistService, GuildConfigService, Guil
             return getUserFriendly(() -> searchResultRepo.getMaxAged(id, maxAgeMillis));
         }
     }
+
+    @Override
+    public List<SearchResult> getSearchResults(Collection<SearchResult.SearchResultId> ids, long maxAgeMillis) {
+        if (searchResultRepo == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //fetching creates empty search results for the ids that don't exist, those are filtered by their timestamp
+        long oldest = maxAgeMillis < 0 ? 0 : System.currentTimeMillis() - maxAgeMillis;
+        return fetchUserFriendly(() -> searchResultRepo.fetchAll(ids)).stream()
+                .filter(searchResult -> searchResult.getTimestamp() > oldest)
+                .collect(Collectors.toList());
+    }
 }
@@ -28,6 +28,8 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import fredboat.audio.player.GuildPlayer;
 import fredboat.audio.player.PlayerRegistry;
+import fredboat.audio.player.VoiceConnectionTracker;
+import fredboat.command.config.PrefixCommand;
 import fredboat.command.info.HelloCommand;
 import fredboat.command.info.HelpCommand;
 import fredboat.command.info.ShardsCommand;
@@ -51,10 +53,11 @@ import fredboat.messaging.CentralMessaging;
 import fredboat.perms.PermsUtil;
 import fredboat.util.DiscordUtil;
 import fredboat.util.ratelimit.Ratelimiter;
-import io.prometheus.client.Histogram;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 import net.dv8tion.jda.core.entities.*;
 import net.dv8tion.jda.core.events.ReadyEvent;
+import net.dv8tion.jda.core.events.ReconnectedEvent;
+import net.dv8tion.jda.core.events.guild.GuildAvailableEvent;
 import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
 import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceJoinEvent;
@@ -93,12 +96,13 @@ public class EventListenerBoat extends AbstractEventListener {
     private final AppConfig appConfig;
     private final GuildDataService guildDataService;
     private final GuildConfigService guildConfigService;
+    private final VoiceConnectionTracker voiceConnectionTracker;
 
     public EventListenerBoat(CommandManager commandManager, CommandContextParser commandContextParser,
                              PlayerRegistry playerRegistry, CacheMetricsCollector cacheMetrics,
                              ShardStatsCounterProvider shardStatsCounterProvider, JdaEntityProvider jdaEntityProvider,
                              Ratelimiter ratelimiter, AppConfig appConfig, GuildDataService guildDataService,
-                             GuildConfigService guildConfigService) {
+                             GuildConfigService guildConfigService, VoiceConnectionTracker voiceConnectionTracker) {
         this.commandManager = commandManager;
         this.commandContextParser = commandContextParser;
         this.playerRegistry = playerRegistry;
@@ -108,6 +112,7 @@ public class EventListenerBoat extends AbstractEventListener {
         this.appConfig = appConfig;
         this.guildDataService = guildDataService;
         this.guildConfigService = guildConfigService;
+        this.voiceConnectionTracker = voiceConnectionTracker;
         cacheMetrics.addCache("messagesToDeleteIfIdDeleted", messagesToDeleteIfIdDeleted);
     }
 
@@ -146,6 +151,13 @@ public class EventListenerBoat extends AbstractEventListener {
             return;
         }
 
+        //reject the vast majority of messages that aren't commands by looking at their first character only
+        if (!PrefixCommand.PREFIX_FILTER.mayBeCommand(event.getGuild().getIdLong(),
+                event.getMessage().getContentRaw(), appConfig.getPrefix())) {
+            Metrics.messagesRejectedByPrefixFilter.inc();
+            return;
+        }
+
         TextChannel channel = event.getTextChannel(); //never null since we are filtering private messages out above
 
         //preliminary permission filter to avoid a ton of parsing
@@ -170,7 +182,7 @@ public class EventListenerBoat extends AbstractEventListener {
         Metrics.commandsReceived.labels(context.command.getClass().getSimpleName()).inc();
 
         //BOT_ADMINs can always use all commands everywhere
-        if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, event.getMember())) {
+        if (!PermsUtil.checkPerms(PermissionLevel.BOT_ADMIN, context)) {
 
             //ignore commands of disabled modules for plebs
             Module module = context.command.getModule();
@@ -193,12 +205,7 @@ public class EventListenerBoat extends AbstractEventListener {
             return;
         }
 
-        try (//NOTE: Some commands, like ;;mal, run async and will not reflect the real performance of FredBoat
-             // their performance should be judged by the totalResponseTime metric instead
-             Histogram.Timer ignored = Metrics.executionTime.labels(context.command.getClass().getSimpleName()).startTimer()
-        ) {
-            commandManager.prefixCalled(context);
-        }
+        commandManager.prefixCalled(context);
     }
 
     @Override
@@ -250,6 +257,7 @@ public class EventListenerBoat extends AbstractEventListener {
     @Override
     public void onGuildVoiceLeave(GuildVoiceLeaveEvent event) {
         checkForAutoPause(event.getChannelLeft());
+        voiceConnectionTracker.onVoiceUpdate(event.getGuild());
     }
 
     @Override
@@ -261,11 +269,13 @@ public class EventListenerBoat extends AbstractEventListener {
         if (event.getMember().getUser().getIdLong() == event.getJDA().getSelfUser().getIdLong()) {
             checkForAutoPause(event.getChannelJoined());
         }
+        voiceConnectionTracker.onVoiceUpdate(event.getGuild());
     }
 
     @Override
     public void onGuildVoiceJoin(GuildVoiceJoinEvent event) {
         checkForAutoResume(event.getChannelJoined(), event.getMember());
+        voiceConnectionTracker.onVoiceUpdate(event.getGuild());
     }
 
     private void checkForAutoResume(VoiceChannel joinedChannel, Member joined) {
@@ -342,6 +352,7 @@ public class EventListenerBoat extends AbstractEventListener {
     @Override
     public void onGuildLeave(GuildLeaveEvent event) {
         playerRegistry.destroyPlayer(event.getGuild());
+        voiceConnectionTracker.onGuildLeave(event.getGuild().getIdLong());
     }
 
     @Override
@@ -358,6 +369,17 @@ public class EventListenerBoat extends AbstractEventListener {
         log.info("Received ready event for {}", event.getJDA().getShardInfo().toString());
 
         shardStatsCounterProvider.registerShard(event.getJDA().getShardInfo());
+        voiceConnectionTracker.onShardReady(event.getJDA());
+    }
+
+    @Override
+    public void onReconnect(ReconnectedEvent event) {
+        voiceConnectionTracker.onShardReady(event.getJDA());
+    }
+
+    @Override
+    public void onGuildAvailable(GuildAvailableEvent event) {
+        voiceConnectionTracker.onGuildAvailable(event.getGuild());
     }
 
     private void sendHelloOnJoin(@Nonnull Guild guild) {
@@ -26,11 +26,15 @@
 package fredboat.event;
 
 import fredboat.config.property.EventLoggerConfig;
+import fredboat.feature.metrics.Metrics;
+import fredboat.feature.metrics.collectors.ThreadPoolCollector;
 import fredboat.jda.ShardProvider;
 import fredboat.main.ShutdownHandler;
 import fredboat.messaging.CentralMessaging;
 import fredboat.util.Emojis;
 import fredboat.util.TextUtils;
+import fredboat.util.concurrent.InstrumentedScheduledThreadPoolExecutor;
+import fredboat.util.concurrent.OverwritingRingBuffer;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Message;
@@ -61,7 +65,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Shards status events and guild join/leave events are collected. In regular intervals messages are created containing
  * the collected information. The created messages are then attempted to be posted via the webhook. A small buffer is
  * used to try to not drop occasionally failed messages, since the reporting of status events is especially important
- * during ongoing connection issues. If the amount of status events is too damn high, summaries are posted.
+ * during ongoing connection issues.
+ * <p>
+ * Status events go into a fixed size ring buffer, so that a reconnect storm of all shards costs neither the JDA event
+ * threads nor our memory more than a constant amount. When reporting, the events are coalesced into one line per shard
+ * and status, with the amount and the time of the first and last event. Messages that could not be sent are retried a
+ * few times with the next reports, and the oldest ones are dropped once too many are waiting.
  */
 @FieldsAreNonNullByDefault
 @ParametersAreNonnullByDefault
@@ -71,8 +80,12 @@ public class EventLogger extends ListenerAdapter {
 
     public static final Logger log = LoggerFactory.getLogger(EventLogger.class);
 
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
-            runnable -> new Thread(runnable, "eventlogger"));
+    private static final int STATUS_EVENTS_CAPACITY = 4096;
+    private static final int PENDING_MESSAGES_CAPACITY = 20;
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final InstrumentedScheduledThreadPoolExecutor scheduler =
+            new InstrumentedScheduledThreadPoolExecutor("eventlogger", 1, false);
     private final ShardProvider shardProvider;
     @Nullable
     private WebhookClient eventLogWebhook;
@@ -80,10 +93,10 @@ public class EventLogger extends ListenerAdapter {
     private WebhookClient guildStatsWebhook;
 
     //saves some messages, so that in case we run into occasional connection issues we dont just drop them due to the webhook timing out
-    private final Queue<Message> toBeSentEventLog = new ConcurrentLinkedQueue<>();
-    private final Queue<Message> toBeSentGuildStats = new ConcurrentLinkedQueue<>();
+    private final PendingMessages toBeSentEventLog = new PendingMessages("eventlog");
+    private final PendingMessages toBeSentGuildStats = new PendingMessages("guildstats");
 
-    private final List<ShardStatusEvent> statusStats = new CopyOnWriteArrayList<>();
+    private final OverwritingRingBuffer<ShardStatusEvent> statusStats = new OverwritingRingBuffer<>(STATUS_EVENTS_CAPACITY);
     private final AtomicInteger guildsJoinedEvents = new AtomicInteger(0);
     private final AtomicInteger guildsLeftEvents = new AtomicInteger(0);
 
@@ -94,7 +107,7 @@ public class EventLogger extends ListenerAdapter {
         if (eventLogWebhook == null) {
             return;
         }
-        statusStats.add(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
+        statusStats.offer(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
                 ShardStatusEvent.StatusEvent.READY, ""));
     }
 
@@ -103,7 +116,7 @@ public class EventLogger extends ListenerAdapter {
         if (eventLogWebhook == null) {
             return;
         }
-        statusStats.add(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
+        statusStats.offer(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
                 ShardStatusEvent.StatusEvent.RESUME, ""));
     }
 
@@ -112,7 +125,7 @@ public class EventLogger extends ListenerAdapter {
         if (eventLogWebhook == null) {
             return;
         }
-        statusStats.add(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
+        statusStats.offer(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
                 ShardStatusEvent.StatusEvent.RECONNECT, ""));
     }
 
@@ -122,7 +135,7 @@ public class EventLogger extends ListenerAdapter {
             return;
         }
         String closeCodeStr = "close code " + (event.getCloseCode() == null ? "null" : event.getCloseCode().getCode());
-        statusStats.add(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
+        statusStats.offer(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
                 ShardStatusEvent.StatusEvent.DISCONNECT, "with " + closeCodeStr));
     }
 
@@ -132,7 +145,7 @@ public class EventLogger extends ListenerAdapter {
             return;
         }
         String closeCodeStr = "close code " + (event.getCloseCode() == null ? "null" : event.getCloseCode().getCode());
-        statusStats.add(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
+        statusStats.offer(new ShardStatusEvent(event.getJDA().getShardInfo().getShardId(),
                 ShardStatusEvent.StatusEvent.SHUTDOWN, "with " + closeCodeStr));
     }
 
@@ -179,8 +192,10 @@ public class EventLogger extends ListenerAdapter {
     }
 
     //actual constructor
-    public EventLogger(EventLoggerConfig eventLoggerConfig, ShutdownHandler shutdownHandler, ShardProvider shardProvider) {
+    public EventLogger(EventLoggerConfig eventLoggerConfig, ShutdownHandler shutdownHandler, ShardProvider shardProvider,
+                       ThreadPoolCollector threadPoolCollector) {
         this.shardProvider = shardProvider;
+        threadPoolCollector.addPool(scheduler.getName(), scheduler);
         Runtime.getRuntime().addShutdownHook(new Thread(createShutdownHook(shutdownHandler), EventLogger.class.getSimpleName() + " shutdownhook"));
 
         String eventLoggerWebhookUrl = eventLoggerConfig.getEventLogWebhook();
@@ -280,47 +295,139 @@ public class EventLogger extends ListenerAdapter {
         }
 
         toBeSentGuildStats.add(CentralMessaging.from(eb.build()));
-        drainMessageQueue(toBeSentGuildStats, guildStatsWebhook);
+        toBeSentGuildStats.send(guildStatsWebhook);
     }
 
     private void sendEventLogs() {
         if (eventLogWebhook == null) {
             return;
         }
-        List<ShardStatusEvent> events = new ArrayList<>(statusStats);
-        statusStats.removeAll(events);
+        //one summary per shard and status, in the order of their first event
+        Map<Long, ShardStatusSummary> summaries = new LinkedHashMap<>();
+        int dropped = statusStats.drain(event -> summaries
+                .computeIfAbsent(ShardStatusSummary.key(event), key -> new ShardStatusSummary(event))
+                .add(event));
 
-        if (events.isEmpty()) {
+        if (summaries.isEmpty() && dropped == 0) {
             return;//nothing to report
         }
+        int coalesced = 0;
+        List<String> lines = new ArrayList<>(summaries.size() + 1);
+        if (dropped > 0) {
+            Metrics.eventLogStatusEventsDropped.inc(dropped);
+            lines.add(String.format("- [%s] %d status events were dropped",
+                    TextUtils.asTimeInCentralEurope(System.currentTimeMillis()), dropped));
+        }
+        for (ShardStatusSummary summary : summaries.values()) {
+            coalesced += summary.count - 1;
+            lines.add(summary.toString());
+        }
+        Metrics.eventLogStatusEventsCoalesced.inc(coalesced);
 
         //split into messages of acceptable size (2k chars max)
         StringBuilder msg = new StringBuilder();
-        for (ShardStatusEvent event : events) {
-            String eventStr = event.toString();
-            if (msg.length() + eventStr.length() > 1900) {
+        for (String line : lines) {
+            if (msg.length() + line.length() > 1900) {
                 toBeSentEventLog.add(CentralMessaging.getClearThreadLocalMessageBuilder()
                         .appendCodeBlock(msg.toString(), "diff").build());
                 msg = new StringBuilder();
             }
-            msg.append("\n").append(eventStr);
+            msg.append("\n").append(line);
         }
         if (msg.length() > 0) {//any leftovers?
             toBeSentEventLog.add(CentralMessaging.getClearThreadLocalMessageBuilder()
                     .appendCodeBlock(msg.toString(), "diff").build());
         }
-        drainMessageQueue(toBeSentEventLog, eventLogWebhook);
+        toBeSentEventLog.send(eventLogWebhook);
+    }
+
+    /**
+     * Messages waiting to be sent to a webhook. When full, the oldest message is dropped to make room for the new one.
+     * A message that fails to be sent is retried with the next reports, up to {@link #MAX_SEND_ATTEMPTS} times.
+     */
+    private static class PendingMessages {
+
+        private final String webhookName;
+        private final Deque<Message> messages = new ArrayDeque<>();
+        //failed attempts of the first message
+        private int failedAttempts = 0;
+
+        private PendingMessages(String webhookName) {
+            this.webhookName = webhookName;
+        }
+
+        private synchronized void add(Message message) {
+            if (messages.size() >= PENDING_MESSAGES_CAPACITY) {
+                drop("full");
+            }
+            messages.addLast(message);
+        }
+
+        private synchronized void send(WebhookClient webhook) {
+            while (!messages.isEmpty()) {
+                try {
+                    webhook.send(messages.peekFirst()).get(30, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    if (++failedAttempts >= MAX_SEND_ATTEMPTS) {
+                        log.warn("Webhook failed to send a message {} times, dropping it.", failedAttempts, e);
+                        drop("retries");
+                    } else {
+                        log.warn("Webhook failed to send a message. Will try again next time.", e);
+                    }
+                    return;
+                }
+                messages.pollFirst();
+                failedAttempts = 0;
+            }
+        }
+
+        private void drop(String reason) {
+            messages.pollFirst();
+            failedAttempts = 0;
+            Metrics.eventLogMessagesDropped.labels(webhookName, reason).inc();
+        }
     }
 
-    private static void drainMessageQueue(@Nonnull Queue<Message> queue, @Nonnull WebhookClient webhook) {
-        try {
-            while (!queue.isEmpty()) {
-                Message message = queue.peek();
-                webhook.send(message).get();
-                queue.poll();
+    /**
+     * All events of one status of one shard since the last report
+     */
+    private static class ShardStatusSummary {
+
+        final int shardId;
+        final ShardStatusEvent.StatusEvent event;
+        final long firstTimestamp;
+        long lastTimestamp;
+        String lastAdditionalInfo = "";
+        int count = 0;
+
+        private ShardStatusSummary(ShardStatusEvent first) {
+            this.shardId = first.shardId;
+            this.event = first.event;
+            this.firstTimestamp = first.timestamp;
+        }
+
+        static long key(ShardStatusEvent event) {
+            return (long) event.shardId * ShardStatusEvent.StatusEvent.values().length + event.event.ordinal();
+        }
+
+        private ShardStatusSummary add(ShardStatusEvent event) {
+            count++;
+            lastTimestamp = event.timestamp;
+            lastAdditionalInfo = event.additionalInfo;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            if (count == 1) {
+                return String.format("%s [%s] Shard %s %s %s",
+                        event.diff, TextUtils.asTimeInCentralEurope(firstTimestamp),
+                        TextUtils.forceNDigits(shardId, 3), event.str, lastAdditionalInfo);
             }
-        } catch (Exception e) {
-            log.warn("Webhook failed to send a message. Will try again next time.", e);
+            return String.format("%s [%s - %s] Shard %s %s %d times%s",
+                    event.diff, TextUtils.asTimeInCentralEurope(firstTimestamp),
+                    TextUtils.asTimeInCentralEurope(lastTimestamp), TextUtils.forceNDigits(shardId, 3), event.str,
+                    count, lastAdditionalInfo.isEmpty() ? "" : ", last " + lastAdditionalInfo);
         }
     }
 
@@ -355,26 +462,5 @@ public class EventLogger extends ListenerAdapter {
                 this.diff = diff;
             }
         }
-
-        @Override
-        public String toString() {
-            return String.format("%s [%s] Shard %s %s %s",
-                    event.diff, TextUtils.asTimeInCentralEurope(timestamp),
-                    TextUtils.forceNDigits(shardId, 3), event.str, additionalInfo);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(shardId, event, timestamp);
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof ShardStatusEvent)) return false;
-            ShardStatusEvent other = (ShardStatusEvent) obj;
-            return other.shardId == this.shardId
-                    && other.event == this.event
-                    && other.timestamp == this.timestamp;
-        }
     }
 }
@@ -35,12 +35,11 @@ import fredboat.audio.queue.AudioTrackContext;
 import fredboat.audio.queue.RepeatMode;
 import fredboat.audio.queue.SplitAudioTrackContext;
 import fredboat.config.property.AppConfig;
-import fredboat.config.property.Credentials;
 import fredboat.feature.I18n;
 import fredboat.jda.JdaEntityProvider;
 import fredboat.messaging.CentralMessaging;
-import fredboat.shared.constant.DistributionEnum;
 import fredboat.shared.constant.ExitCodes;
+import it.unimi.dsi.fastutil.longs.LongList;
 import net.dv8tion.jda.core.JDA;
 import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
@@ -48,10 +47,6 @@ import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.hooks.ListenerAdapter;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -60,34 +55,62 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Saves all guild players into one binary {@link MusicPersistenceSnapshot} on shutdown, and restores them shard by
+ * shard when they are ready.
+ */
 @Component
 public class MusicPersistenceHandler extends ListenerAdapter {
 
     private static final Logger log = LoggerFactory.getLogger(MusicPersistenceHandler.class);
+
+    private static final Path PERSISTENCE_DIR = Paths.get("music_persistence");
+    private static final Path SNAPSHOT_FILE = PERSISTENCE_DIR.resolve("players.snapshot");
+    private static final Path SNAPSHOT_TEMP_FILE = PERSISTENCE_DIR.resolve("players.snapshot.tmp");
+    //a snapshot is moved here while being restored, so that it will not be restored a second time after a crash
+    private static final Path RESTORING_FILE = PERSISTENCE_DIR.resolve("players.snapshot.restoring");
+
+    //all players need to be saved within this time, including sending the shutdown announcements
+    private static final long SHUTDOWN_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(30); //30 seconds is enough on patron boat
+    private static final int SAVE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
     private final PlayerRegistry playerRegistry;
-    private final Credentials credentials;
     private final MusicTextChannelProvider musicTextChannelProvider;
     private final JdaEntityProvider jdaEntityProvider;
     private final AudioPlayerManager audioPlayerManager;
     private final AppConfig appConfig;
 
-    public MusicPersistenceHandler(PlayerRegistry playerRegistry, Credentials credentials,
-                                   MusicTextChannelProvider musicTextChannelProvider, JdaEntityProvider jdaEntityProvider,
+    private final Object snapshotLock = new Object();
+    private boolean snapshotOpened = false;
+    @Nullable
+    private MusicPersistenceSnapshot restoringSnapshot = null;
+    //shards that had their turn at restoring their players
+    private final Set<Integer> restoredShards = new HashSet<>();
+
+    public MusicPersistenceHandler(PlayerRegistry playerRegistry, MusicTextChannelProvider musicTextChannelProvider,
+                                   JdaEntityProvider jdaEntityProvider,
                                    @Qualifier("loadAudioPlayerManager") AudioPlayerManager audioPlayerManager,
                                    AppConfig appConfig) {
         this.playerRegistry = playerRegistry;
-        this.credentials = credentials;
         this.musicTextChannelProvider = musicTextChannelProvider;
         this.jdaEntityProvider = jdaEntityProvider;
         this.audioPlayerManager = audioPlayerManager;
@@ -96,230 +119,322 @@ public class MusicPersistenceHandler extends ListenerAdapter {
 
     //this needs to happen before the shard manager is shut down, inside of a shutdown hook (for docker etc)
     public void handlePreShutdown(int code) {
-        File dir = new File("music_persistence");
-        if (!dir.exists()) {
-            boolean created = dir.mkdir();
-            if (!created) {
-                log.error("Failed to create music persistence directory");
-                return;
-            }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_DEADLINE_MILLIS;
+        //players that have not been restored by now are not going to be
+        synchronized (snapshotLock) {
+            closeRestoringSnapshot();
+        }
+        try {
+            Files.createDirectories(PERSISTENCE_DIR);
+        } catch (IOException e) {
+            log.error("Failed to create music persistence directory", e);
+            return;
+        }
+        Collection<GuildPlayer> players = playerRegistry.getPlayers();
+
+        String announcementKey;
+        if (code == ExitCodes.EXIT_CODE_UPDATE) {
+            announcementKey = "shutdownUpdating";
+        } else if (code == ExitCodes.EXIT_CODE_RESTART) {
+            announcementKey = "shutdownRestarting";
+        } else {
+            announcementKey = "shutdownIndef";
         }
-        Map<Long, GuildPlayer> reg = playerRegistry.getRegistry();
-
-        boolean isUpdate = code == ExitCodes.EXIT_CODE_UPDATE;
-        boolean isRestart = code == ExitCodes.EXIT_CODE_RESTART;
 
-        for (long gId : reg.keySet()) {
+        //fire all announcements at once, we will wait for them after saving the players
+        List<CompletableFuture> announcements = new ArrayList<>();
+        for (GuildPlayer player : players) {
             try {
-                GuildPlayer player = reg.get(gId);
-
-                String msg;
-
-                if (isUpdate) {
-                    msg = I18n.get(player.getGuild()).getString("shutdownUpdating");
-                } else if (isRestart) {
-                    msg = I18n.get(player.getGuild()).getString("shutdownRestarting");
-                } else {
-                    msg = I18n.get(player.getGuild()).getString("shutdownIndef");
-                }
-
                 TextChannel activeTextChannel = player.getActiveTextChannel();
-                List<CompletableFuture> announcements = new ArrayList<>();
                 if (activeTextChannel != null && player.isPlaying()) {
+                    String msg = I18n.get(player.getGuild()).getString(announcementKey);
                     announcements.add(CentralMessaging.message(activeTextChannel, msg).send(null));
                 }
-                for (Future announcement : announcements) {
+            } catch (Exception e) {
+                log.error("Failed to announce shutdown to {}", player, e);
+            }
+        }
+
+        AtomicInteger saved = new AtomicInteger(0);
+        ExecutorService workers = Executors.newFixedThreadPool(SAVE_THREADS,
+                r -> new Thread(r, "music-persistence-worker"));
+        try (MusicPersistenceSnapshot.Writer writer = new MusicPersistenceSnapshot.Writer(SNAPSHOT_TEMP_FILE)) {
+            for (GuildPlayer player : players) {
+                workers.execute(() -> {
                     try {
-                        announcement.get(30, TimeUnit.SECONDS); //30 seconds is enough on patron boat
-                    } catch (Exception ignored) {}
-                }
+                        writer.append(player.getGuildId(), encodePlayer(player));
+                        saved.incrementAndGet();
+                    } catch (Exception e) {
+                        log.error("Error when saving guild player {}", player, e);
+                        announcePersistenceFail(player, e);
+                    }
+                });
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(remaining(deadline), TimeUnit.MILLISECONDS)) {
+                //closing the writer makes all pending saves fail fast, and won't leave any partially written records
+                log.warn("Hit the music persistence deadline, not all players were saved");
+            }
+        } catch (IOException e) {
+            log.error("Failed to write music persistence file", e);
+            return;
+        } catch (InterruptedException e) {
+            log.error("Interrupted while saving music persistence", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            //the writer is closed at this point, so interrupting any late workers can't corrupt the file
+            workers.shutdownNow();
+        }
 
-                JSONObject data = new JSONObject();
-                VoiceChannel vc = player.getCurrentVoiceChannel();
-                data.put("vc", vc != null ? vc.getId() : "0");
-                data.put("tc", activeTextChannel != null ? activeTextChannel.getId() : "");
-                data.put("isPaused", player.isPaused());
-                data.put("volume", Float.toString(player.getVolume()));
-                data.put("repeatMode", player.getRepeatMode());
-                data.put("shuffle", player.isShuffle());
-
-                if (player.getPlayingTrack() != null) {
-                    data.put("position", player.getPosition());
-                }
+        try {
+            Files.move(SNAPSHOT_TEMP_FILE, SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved {} of {} guild players", saved.get(), players.size());
+        } catch (IOException e) {
+            log.error("Failed to move music persistence file into place", e);
+        }
 
-                ArrayList<JSONObject> identifiers = new ArrayList<>();
+        try {
+            CompletableFuture.allOf(announcements.toArray(new CompletableFuture[0]))
+                    .get(remaining(deadline), TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {}
+    }
 
-                for (AudioTrackContext atc : player.getRemainingTracks()) {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    audioPlayerManager.encodeTrack(new MessageOutput(baos), atc.getTrack());
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
 
-                    JSONObject ident = new JSONObject()
-                            .put("message", Base64.encodeBase64String(baos.toByteArray()))
-                            .put("user", atc.getUserId());
+    private void announcePersistenceFail(GuildPlayer player, Exception e) {
+        TextChannel activeTextChannel = player.getActiveTextChannel();
+        if (activeTextChannel != null) {
+            CentralMessaging.message(activeTextChannel,
+                    MessageFormat.format(I18n.get(player.getGuild()).getString("shutdownPersistenceFail"),
+                            e.getMessage()))
+                    .send(null);
+        }
+    }
 
-                    if(atc instanceof SplitAudioTrackContext) {
-                        JSONObject split = new JSONObject();
-                        SplitAudioTrackContext c = (SplitAudioTrackContext) atc;
-                        split.put("title", c.getEffectiveTitle())
-                                .put("startPos", c.getStartPosition())
-                                .put("endPos", c.getStartPosition() + c.getEffectiveDuration());
+    private byte[] encodePlayer(GuildPlayer player) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+
+        VoiceChannel vc = player.getCurrentVoiceChannel();
+        TextChannel activeTextChannel = player.getActiveTextChannel();
+        out.writeLong(vc != null ? vc.getIdLong() : 0);
+        out.writeLong(activeTextChannel != null ? activeTextChannel.getIdLong() : 0);
+        out.writeBoolean(player.isPaused());
+        out.writeFloat(player.getVolume());
+        out.writeUTF(player.getRepeatMode().name());
+        out.writeBoolean(player.isShuffle());
+        out.writeLong(player.getPlayingTrack() != null ? player.getPosition() : -1);
+
+        List<AudioTrackContext> tracks = player.getRemainingTracks();
+        out.writeInt(tracks.size());
+        //lavaplayer messages carry their own length, so they can be written right into our stream
+        MessageOutput trackOutput = new MessageOutput(out);
+        for (AudioTrackContext atc : tracks) {
+            out.writeLong(atc.getUserId());
+            if (atc instanceof SplitAudioTrackContext) {
+                SplitAudioTrackContext c = (SplitAudioTrackContext) atc;
+                out.writeBoolean(true);
+                out.writeUTF(c.getEffectiveTitle());
+                out.writeLong(c.getStartPosition());
+                out.writeLong(c.getStartPosition() + c.getEffectiveDuration());
+            } else {
+                out.writeBoolean(false);
+            }
+            audioPlayerManager.encodeTrack(trackOutput, atc.getTrack());
+        }
 
-                        ident.put("split", split);
-                    }
+        out.flush();
+        return baos.toByteArray();
+    }
 
-                    identifiers.add(ident);
+    @Override
+    public void onReady(ReadyEvent event) {
+        if (appConfig.isMusicDistribution()) {
+            //music persistence loading is disabled on the MUSIC distribution
+            return;
+        }
+        try {
+            reloadPlaylists(event.getJDA());
+        } catch (Exception e) {
+            log.error("Uncaught exception when dispatching ready event to music persistence handler", e);
+        }
+    }
+
+    /**
+     * @return the snapshot that is being restored, opened by whichever shard gets ready first
+     */
+    @Nullable
+    private MusicPersistenceSnapshot getRestoringSnapshot() {
+        synchronized (snapshotLock) {
+            if (!snapshotOpened) {
+                snapshotOpened = true;
+                if (!Files.exists(SNAPSHOT_FILE)) {
+                    log.info("No music persistence file found.");
+                    MusicPersistenceSnapshot.deleteQuietly(RESTORING_FILE);
+                    return null;
                 }
+                try {
+                    Files.move(SNAPSHOT_FILE, RESTORING_FILE, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    restoringSnapshot = MusicPersistenceSnapshot.open(RESTORING_FILE);
+                    log.info("Found {} guild players to restore", restoringSnapshot.guildIds().size());
+                } catch (IOException e) {
+                    log.error("Failed to open music persistence file", e);
+                    MusicPersistenceSnapshot.deleteQuietly(RESTORING_FILE);
+                }
+            }
+            return restoringSnapshot;
+        }
+    }
 
-                data.put("sources", identifiers);
+    private void reloadPlaylists(JDA jda) {
+        MusicPersistenceSnapshot snapshot = getRestoringSnapshot();
+        if (snapshot == null) {
+            return;
+        }
 
-                try {
-                    FileUtils.writeStringToFile(new File(dir, Long.toString(gId)), data.toString(), Charset.forName("UTF-8"));
-                } catch (IOException ex) {
-                    if (activeTextChannel != null) {
-                        CentralMessaging.message(activeTextChannel,
-                                MessageFormat.format(I18n.get(player.getGuild()).getString("shutdownPersistenceFail"),
-                                        ex.getMessage()))
-                                .send(null);
-                    }
+        int shardId = jda.getShardInfo().getShardId();
+        log.info("Began reloading playlists for shard {}", shardId);
+        int restored = 0;
+        try {
+            restored = restorePlayers(jda, snapshot);
+        } finally {
+            //records of guilds that their shard does not have anymore would keep the file open forever. only the
+            // shards of the remaining records are waited for, so this works no matter how many processes share the
+            // shards, since each process restores its own snapshot
+            synchronized (snapshotLock) {
+                restoredShards.add(shardId);
+                if (restoringSnapshot != null
+                        && allShardsRestored(restoringSnapshot.guildIds(), jda.getShardInfo().getShardTotal())) {
+                    closeRestoringSnapshot();
                 }
-            } catch (Exception ex) {
-                log.error("Error when saving persistence file", ex);
             }
         }
+        log.info("Restored {} guild players for shard {}", restored, shardId);
     }
 
-    @Override
-    public void onReady(ReadyEvent event) {
-        //the current implementation of music persistence is not a good idea on big bots
-        if (credentials.getRecommendedShardCount() <= 10 && appConfig.getDistribution() != DistributionEnum.MUSIC) {
+    private int restorePlayers(JDA jda, MusicPersistenceSnapshot snapshot) {
+        int restored = 0;
+        for (long guildId : snapshot.guildIds()) {
+            Guild guild = jda.getGuildById(guildId);
+            if (guild == null) {
+                //only load guilds that are part of this shard
+                continue;
+            }
             try {
-                reloadPlaylists(event.getJDA());
-            } catch (Exception e) {
-                log.error("Uncaught exception when dispatching ready event to music persistence handler", e);
+                byte[] payload = snapshot.take(guildId);
+                if (payload != null) {
+                    restorePlayer(guild, payload);
+                    restored++;
+                }
+            } catch (Exception ex) {
+                log.error("Error when restoring guild player {}", guildId, ex);
             }
         }
+        return restored;
     }
 
-    private void reloadPlaylists(JDA jda) {
-        File dir = new File("music_persistence");
-
-        if (appConfig.isMusicDistribution()) {
-            log.warn("Music persistence loading is disabled on the MUSIC distribution! Use PATRON or DEVELOPMENT instead"
-                    + "How did this call end up in here anyways?");
-            return;
+    //needs to hold the snapshot lock
+    private boolean allShardsRestored(LongList guildIds, int shardTotal) {
+        for (long guildId : guildIds) {
+            if (!restoredShards.contains((int) ((guildId >> 22) % shardTotal))) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        log.info("Began reloading playlists for shard {}", jda.getShardInfo().getShardId());
-        if (!dir.exists()) {
-            log.info("No music persistence directory found.");
+    //needs to hold the snapshot lock
+    private void closeRestoringSnapshot() {
+        if (restoringSnapshot == null) {
             return;
         }
-        File[] files = dir.listFiles();
-        if (files == null || files.length == 0) {
-            log.info("No files present in music persistence directory");
-            return;
+        try {
+            restoringSnapshot.close();
+        } catch (IOException e) {
+            log.warn("Failed to close music persistence file", e);
         }
+        MusicPersistenceSnapshot.deleteQuietly(restoringSnapshot.getPath());
+        restoringSnapshot = null;
+    }
 
-        for (File file : files) {
-            try {
-                Guild guild = jda.getGuildById(file.getName());
-                if (guild == null) {
-                    //only load guilds that are part of this shard
-                    continue;
-                }
-                JSONObject data = new JSONObject(FileUtils.readFileToString(file, Charset.forName("UTF-8")));
-
-                boolean isPaused = data.getBoolean("isPaused");
-                final JSONArray sources = data.getJSONArray("sources");
-                @Nullable VoiceChannel vc = jda.getVoiceChannelById(data.getString("vc"));
-                @Nullable TextChannel tc = jda.getTextChannelById(data.getString("tc"));
-                float volume = Float.parseFloat(data.getString("volume"));
-                RepeatMode repeatMode = data.getEnum(RepeatMode.class, "repeatMode");
-                boolean shuffle = data.getBoolean("shuffle");
-
-                GuildPlayer player = playerRegistry.getOrCreate(guild);
+    private void restorePlayer(Guild guild, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
 
-                if (tc != null) {
-                    musicTextChannelProvider.setMusicChannel(tc);
-                }
-                if (appConfig.getDistribution().volumeSupported()) {
-                    player.setVolume(volume);
-                }
-                player.setRepeatMode(repeatMode);
-                player.setShuffle(shuffle);
+        long vcId = in.readLong();
+        long tcId = in.readLong();
+        boolean isPaused = in.readBoolean();
+        float volume = in.readFloat();
+        RepeatMode repeatMode = RepeatMode.valueOf(in.readUTF());
+        boolean shuffle = in.readBoolean();
+        long position = in.readLong();
+        int trackCount = in.readInt();
 
-                final boolean[] isFirst = {true};
+        @Nullable VoiceChannel vc = guild.getVoiceChannelById(vcId);
+        @Nullable TextChannel tc = guild.getTextChannelById(tcId);
 
-                List<AudioTrackContext> tracks = new ArrayList<>();
-                sources.forEach((Object t) -> {
-                    JSONObject json = (JSONObject) t;
-                    byte[] message = Base64.decodeBase64(json.getString("message"));
-                    Member member = guild.getMemberById(json.getLong("user"));
-                    if (member == null)
-                        member = guild.getSelfMember(); //member left the guild meanwhile, set ourselves as the one who added the song
+        GuildPlayer player = playerRegistry.getOrCreate(guild);
 
-                    AudioTrack at;
-                    try {
-                        ByteArrayInputStream bais = new ByteArrayInputStream(message);
-                        at = audioPlayerManager.decodeTrack(new MessageInput(bais)).decodedTrack;
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+        if (tc != null) {
+            musicTextChannelProvider.setMusicChannel(tc);
+        }
+        if (appConfig.getDistribution().volumeSupported()) {
+            player.setVolume(volume);
+        }
+        player.setRepeatMode(repeatMode);
+        player.setShuffle(shuffle);
+
+        List<AudioTrackContext> tracks = new ArrayList<>(trackCount);
+        MessageInput trackInput = new MessageInput(in);
+        for (int i = 0; i < trackCount; i++) {
+            long userId = in.readLong();
+            boolean isSplit = in.readBoolean();
+            String title = isSplit ? in.readUTF() : null;
+            long startPos = isSplit ? in.readLong() : 0;
+            long endPos = isSplit ? in.readLong() : 0;
+            AudioTrack at = audioPlayerManager.decodeTrack(trackInput).decodedTrack;
+
+            if (at == null) {
+                log.error("Loaded track that was null! Skipping...");
+                continue;
+            }
 
-                    if (at == null) {
-                        log.error("Loaded track that was null! Skipping...");
-                        return;
-                    }
+            Member member = guild.getMemberById(userId);
+            if (member == null)
+                member = guild.getSelfMember(); //member left the guild meanwhile, set ourselves as the one who added the song
+
+            // Handle split tracks
+            AudioTrackContext atc;
+            if (isSplit) {
+                atc = new SplitAudioTrackContext(jdaEntityProvider, at, member, startPos, endPos, title);
+                at.setPosition(startPos);
+            } else {
+                atc = new AudioTrackContext(jdaEntityProvider, at, member);
+            }
 
-                    // Handle split tracks
-                    AudioTrackContext atc;
-                    JSONObject split = json.optJSONObject("split");
-                    if(split != null) {
-                        atc = new SplitAudioTrackContext(jdaEntityProvider, at, member,
-                                split.getLong("startPos"),
-                                split.getLong("endPos"),
-                                split.getString("title")
-                        );
-                        at.setPosition(split.getLong("startPos"));
-
-                        if (isFirst[0]) {
-                            isFirst[0] = false;
-                            if (data.has("position")) {
-                                at.setPosition(split.getLong("startPos") + data.getLong("position"));
-                            }
-                        }
-                    } else {
-                        atc = new AudioTrackContext(jdaEntityProvider, at, member);
-
-                        if (isFirst[0]) {
-                            isFirst[0] = false;
-                            if (data.has("position")) {
-                                at.setPosition(data.getLong("position"));
-                            }
-                        }
-                    }
+            //the position belongs to the first track that could be decoded, skipped tracks don't shift it
+            if (tracks.isEmpty() && position >= 0) {
+                at.setPosition(startPos + position);
+            }
 
-                    tracks.add(atc);
-                });
+            tracks.add(atc);
+        }
 
-                player.loadAll(tracks);
-                if (!isPaused) {
-                    if (vc != null) {
-                        try {
-                            player.joinChannel(vc);
-                            player.play();
-                        } catch (Exception ignored) {}
-                    }
-                    if (tc != null) {
-                        CentralMessaging.message(tc, MessageFormat.format(I18n.get(guild).getString("reloadSuccess"), sources.length()))
-                                .send(null);
-                    }
-                }
-            } catch (Exception ex) {
-                log.error("Error when loading persistence file", ex);
+        player.loadAll(tracks);
+        if (!isPaused) {
+            if (vc != null) {
+                try {
+                    player.joinChannel(vc);
+                    player.play();
+                } catch (Exception ignored) {}
+            }
+            if (tc != null) {
+                CentralMessaging.message(tc, MessageFormat.format(I18n.get(guild).getString("reloadSuccess"), trackCount))
+                        .send(null);
             }
-            boolean deleted = file.delete();
-            log.info(deleted ? "Deleted persistence file: " + file : "Failed to delete persistence file: " + file);
         }
     }
 
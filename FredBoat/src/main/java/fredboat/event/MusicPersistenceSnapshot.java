@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.event;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary file holding the persisted guild players of a whole FredBoat process.
+ * <p>
+ * Layout: a header of {@link #MAGIC} (int) and {@link #VERSION} (byte), followed by records of guild id (long),
+ * payload length (int) and the payload bytes. The length prefix allows indexing the file by reading only the record
+ * headers, so that each shard can decode the payloads of its own guilds whenever it is ready.
+ */
+public class MusicPersistenceSnapshot implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MusicPersistenceSnapshot.class);
+
+    public static final int MAGIC = 0x46424d50; //FBMP
+    public static final byte VERSION = 1;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    //guild id -> position of the payload of its record
+    private final Long2LongOpenHashMap payloadPositions = new Long2LongOpenHashMap();
+
+    private MusicPersistenceSnapshot(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Index a snapshot file by reading its record headers. A truncated last record is ignored.
+     *
+     * @throws IOException if the file can't be read or is not a snapshot of a known version
+     */
+    public static MusicPersistenceSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        MusicPersistenceSnapshot snapshot = new MusicPersistenceSnapshot(path, channel);
+        boolean indexed = false;
+        try {
+            ByteBuffer header = read(channel, 0, FILE_HEADER_SIZE);
+            int magic = header.getInt();
+            byte version = header.get();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException(String.format("Unknown music persistence file format %x v%d", magic, version));
+            }
+
+            long size = channel.size();
+            long position = FILE_HEADER_SIZE;
+            while (position + RECORD_HEADER_SIZE <= size) {
+                ByteBuffer recordHeader = read(channel, position, RECORD_HEADER_SIZE);
+                long guildId = recordHeader.getLong();
+                int length = recordHeader.getInt();
+                long payloadPosition = position + RECORD_HEADER_SIZE;
+                if (length < 0 || payloadPosition + length > size) {
+                    log.warn("Truncated music persistence record for guild {}, ignoring it", guildId);
+                    break;
+                }
+                snapshot.payloadPositions.put(guildId, payloadPosition);
+                position = payloadPosition + length;
+            }
+            indexed = true;
+        } finally {
+            if (!indexed) {
+                channel.close();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return ids of the guilds that have a record in this snapshot which has not been taken yet
+     */
+    public synchronized LongList guildIds() {
+        return new LongArrayList(payloadPositions.keySet());
+    }
+
+    public synchronized boolean isDrained() {
+        return payloadPositions.isEmpty();
+    }
+
+    /**
+     * Read and remove the record of a guild. Each record can be taken only once.
+     *
+     * @return the payload of the record, or null if there is no record for that guild (anymore)
+     */
+    @Nullable
+    public byte[] take(long guildId) throws IOException {
+        long payloadPosition;
+        synchronized (this) {
+            if (!payloadPositions.containsKey(guildId)) {
+                return null;
+            }
+            payloadPosition = payloadPositions.remove(guildId);
+        }
+        int length = read(channel, payloadPosition - Integer.BYTES, Integer.BYTES).getInt();
+        return read(channel, payloadPosition, length).array();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            //positional reads are safe to be used by several threads at once
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of music persistence file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Appends records to a new snapshot file. Records may be appended from several threads.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel channel;
+
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).flip();
+            try {
+                write(header);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @throws IOException if the writer has been closed already, which happens when the shutdown deadline is hit
+         */
+        public synchronized void append(long guildId, byte[] payload) throws IOException {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+            record.putLong(guildId).putInt(payload.length).put(payload).flip();
+            write(record);
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /**
+         * Closing is synchronized with appending, so no partially written records can end up in the file.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    public static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete music persistence file {}", path, e);
+        }
+    }
+}
@@ -27,8 +27,6 @@ package fredboat.event;
 import fredboat.audio.player.AudioConnectionFacade;
 import fredboat.audio.player.GuildPlayer;
 import fredboat.audio.player.PlayerRegistry;
-import fredboat.config.property.Credentials;
-import fredboat.util.DiscordUtil;
 import net.dv8tion.jda.core.entities.VoiceChannel;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.events.ShutdownEvent;
@@ -53,12 +51,10 @@ public class ShardReviveHandler extends ListenerAdapter {
     private final Map<Integer, List<Long>> channelsToRejoin = new ConcurrentHashMap<>();
 
     private final PlayerRegistry playerRegistry;
-    private final Credentials credentials;
     private final AudioConnectionFacade audioConnectionFacade;
 
-    public ShardReviveHandler(PlayerRegistry playerRegistry, Credentials credentials, AudioConnectionFacade audioConnectionFacade) {
+    public ShardReviveHandler(PlayerRegistry playerRegistry, AudioConnectionFacade audioConnectionFacade) {
         this.playerRegistry = playerRegistry;
-        this.credentials = credentials;
         this.audioConnectionFacade = audioConnectionFacade;
     }
 
@@ -82,8 +78,7 @@ public class ShardReviveHandler extends ListenerAdapter {
         try {
             List<Long> channels = new ArrayList<>();
             int shardId = event.getJDA().getShardInfo().getShardId();
-            playerRegistry.getPlayingPlayers().stream()
-                    .filter(guildPlayer -> DiscordUtil.getShardId(guildPlayer.getGuildId(), credentials) == shardId)
+            playerRegistry.getPlayingPlayers(shardId)
                     .forEach(guildPlayer -> {
                         VoiceChannel channel = guildPlayer.getCurrentVoiceChannel();
                         if (channel != null) channels.add(channel.getIdLong());
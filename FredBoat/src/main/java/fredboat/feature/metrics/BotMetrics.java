@@ -36,9 +36,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -50,12 +50,13 @@ public class BotMetrics {
 
     private static final Logger log = LoggerFactory.getLogger(BotMetrics.class);
     private final StatsAgent statsAgent;
-    private BotMetrics.JdaEntityCounts jdaEntityCountsTotal = new JdaEntityCounts();
+    private final BotMetrics.JdaEntityCounts jdaEntityCountsTotal;
     private BotMetrics.DockerStats dockerStats = new DockerStats();
 
 
-    public BotMetrics(StatsAgent statsAgent) {
+    public BotMetrics(StatsAgent statsAgent, UniqueUserCounter uniqueUserCounter) {
         this.statsAgent = statsAgent;
+        this.jdaEntityCountsTotal = new JdaEntityCounts(uniqueUserCounter);
     }
 
     @Nonnull
@@ -133,7 +134,17 @@ public class BotMetrics {
         protected int emotesCount;
         protected int rolesCount;
 
-        private final AtomicInteger expectedUniqueUserCount = new AtomicInteger(-1);
+        //counts the users of several shards incrementally, without it only the user cache sizes are summed up
+        @Nullable
+        private final UniqueUserCounter uniqueUserCounter;
+
+        protected JdaEntityCounts() {
+            this(null);
+        }
+
+        protected JdaEntityCounts(@Nullable UniqueUserCounter uniqueUserCounter) {
+            this.uniqueUserCounter = uniqueUserCounter;
+        }
 
         //counts things
         // also checks shards for readiness and only counts if all of them are ready
@@ -148,9 +159,9 @@ public class BotMetrics {
                 }
             }
 
-            this.uniqueUsersCount = JDAUtil.countUniqueUsers(shards, expectedUniqueUserCount);
-            //never shrink the expected user count (might happen due to unready/reloading shards)
-            this.expectedUniqueUserCount.accumulateAndGet(uniqueUsersCount, Math::max);
+            this.uniqueUsersCount = uniqueUserCounter != null
+                    ? uniqueUserCounter.count()
+                    : JDAUtil.countUsers(shards);
 
             this.guildsCount = JDAUtil.countGuilds(shards);
             this.textChannelsCount = JDAUtil.countTextChannels(shards);
@@ -30,7 +30,10 @@ import fredboat.agent.FredBoatAgent;
 import fredboat.command.info.HelpCommand;
 import fredboat.feature.metrics.collectors.FredBoatCollector;
 import fredboat.feature.metrics.collectors.ThreadPoolCollector;
+import fredboat.messaging.CentralMessaging;
+import fredboat.perms.PermsUtil;
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
 import io.prometheus.client.hotspot.DefaultExports;
@@ -67,6 +70,7 @@ public class Metrics {
 
         //add some of our guava caches that are currently only statically reachable
         cacheMetrics.addCache("HELP_RECEIVED_RECENTLY", HelpCommand.HELP_RECEIVED_RECENTLY);
+        cacheMetrics.addCache("compiledGuildPermissions", PermsUtil.COMPILED_PERMISSIONS);
 
         try {
             fredBoatCollector.register();
@@ -77,6 +81,7 @@ public class Metrics {
 
         //register some of our "important" thread pools
         threadPoolCollector.addPool("agents-scheduler", (ThreadPoolExecutor) FredBoatAgent.getScheduler());
+        threadPoolCollector.addPool("central-messaging", (ThreadPoolExecutor) CentralMessaging.restService);
 
         log.info("Metrics set up");
     }
@@ -128,6 +133,47 @@ public class Metrics {
             .labelNames("class") // use the simple name of the command class
             .register();
 
+    public static final Counter ratelimitTableFull = Counter.build()
+            .name("fredboat_ratelimit_table_full_total")
+            .help("Total requests let through unlimited because the sliding window table of a ratelimit had no slot for them")
+            .labelNames("ratelimit") // name of the ratelimit
+            .register();
+
+    public static final Gauge blacklistWriteBufferEntries = Gauge.build()
+            .name("fredboat_blacklist_write_buffer_entries")
+            .help("Changed blacklist entries waiting to be flushed to the backend")
+            .register();
+
+    public static final Histogram blacklistFlushDuration = Histogram.build()
+            .name("fredboat_blacklist_flush_duration_seconds")
+            .help("Time it takes to flush a batch of changed blacklist entries to the backend")
+            .register();
+
+    public static final Counter blacklistEntriesFlushed = Counter.build()
+            .name("fredboat_blacklist_entries_flushed_total")
+            .help("Total changed blacklist entries flushed to the backend")
+            .labelNames("result") // success, failed
+            .register();
+
+
+    //event logger
+
+    public static final Counter eventLogStatusEventsCoalesced = Counter.build()
+            .name("fredboat_eventlog_status_events_coalesced_total")
+            .help("Total shard status events merged into the summary line of an earlier event of the same shard and status")
+            .register();
+
+    public static final Counter eventLogStatusEventsDropped = Counter.build()
+            .name("fredboat_eventlog_status_events_dropped_total")
+            .help("Total shard status events overwritten in the buffer before they could be reported")
+            .register();
+
+    public static final Counter eventLogMessagesDropped = Counter.build()
+            .name("fredboat_eventlog_messages_dropped_total")
+            .help("Total webhook messages of the event logger that were given up on")
+            .labelNames("webhook", "reason") // eventlog, guildstats; full, retries
+            .register();
+
 
     //music stuff
 
@@ -142,6 +188,20 @@ public class Metrics {
             .labelNames("source") //cache, youtube, soundcloud etc
             .register();
 
+    //hit ratio of a tier: hit / (hit + negative + miss), negative lookups are hits of cached empty search results
+    public static final Counter searchCacheLookups = Counter.build()
+            .name("fredboat_music_search_cache_lookups_total")
+            .help("Total lookups of search results per cache tier")
+            .labelNames("tier", "result") // l1, l2; hit, negative, miss
+            .register();
+
+    public static final Histogram searchCacheDecodeDuration = Histogram.build()
+            .name("fredboat_music_search_cache_decode_duration_seconds")
+            .help("Time it takes to decode a cached search result")
+            .labelNames("tier") // l1, l2
+            .buckets(.0001, .00025, .0005, .001, .0025, .005, .01, .025, .05, .1)
+            .register();
+
     public static final Counter tracksLoaded = Counter.build()
             .name("fredboat_music_tracks_loaded_total")
             .help("Total tracks loaded by the audio loader")
@@ -152,6 +212,15 @@ public class Metrics {
             .help("Total failed track loads by the audio loader")
             .register();
 
+    //time between an identifier being handed to the audio loader and it passing a stage of the loading pipeline
+    //the committed stage is the time to first audio of an identifier, if the player isn't busy playing something else
+    public static final Histogram audioLoadingStages = Histogram.build()
+            .name("fredboat_music_loading_stage_duration_seconds")
+            .help("Time from requesting an identifier to be loaded until it passed a stage of the audio loader")
+            .labelNames("stage") // dispatched, probed, resolved, ordered, committed
+            .buckets(.005, .01, .025, .05, .1, .25, .5, 1, 2.5, 5, 10, 30, 60)
+            .register();
+
     public static final Counter voiceChannelsCleanedUp = Counter.build()
             .name("fredboat_music_voicechannels_cleanedup_total")
             .help("Total voice channels that were cleaned up by the voice channel agent")
@@ -166,12 +235,25 @@ public class Metrics {
             .labelNames("type") // default, mention, custom
             .register();
 
+    public static final Counter messagesRejectedByPrefixFilter = Counter.build()
+            .name("fredboat_messages_rejected_by_prefix_filter_total")
+            .help("Total guild messages rejected as non-commands by their first character, without parsing them.")
+            .register();
+
     public static final Counter commandsReceived = Counter.build()
             .name("fredboat_commands_received_total")
             .help("Total received commands. Some of these might get ratelimited.")
             .labelNames("class") // use the simple name of the command class: PlayCommand, DanceCommand, ShardsCommand etc
             .register();
 
+    //only with async commands enabled, see CommandDispatcher. includes waiting for earlier commands of the same guild
+    public static final Histogram commandQueueWait = Histogram.build()
+            .name("fredboat_command_queue_wait_seconds")
+            .help("Time from dispatching a command until its execution starts.")
+            .labelNames("class") // use the simple name of the command class: PlayCommand, DanceCommand, ShardsCommand etc
+            .buckets(.001, .005, .01, .025, .05, .1, .25, .5, 1, 2.5, 5, 10, 30)
+            .register();
+
     public static final Counter commandsExecuted = Counter.build()
             .name("fredboat_commands_executed_total")
             .help("Total executed commands by class")
@@ -230,6 +312,18 @@ public class Metrics {
             .labelNames("path") // like /stats, /metrics, etc
             .register();
 
+    public static final Histogram metricsScrapeDuration = Histogram.build()
+            .name("fredboat_metrics_scrape_duration_seconds")
+            .help("Time it takes to collect and write the metrics exposition")
+            .buckets(.001, .005, .01, .025, .05, .1, .25, .5, 1, 2.5, 5)
+            .register();
+
+    public static final Histogram metricsScrapeSize = Histogram.build()
+            .name("fredboat_metrics_scrape_size_bytes")
+            .help("Size of the written metrics exposition")
+            .exponentialBuckets(16 * 1024, 2, 10)
+            .register();
+
 
     // ################################################################################
     // ##                           Various
@@ -240,4 +334,26 @@ public class Metrics {
             .help("Total database exceptions created")
             .register();
 
+    //thread pools, see fredboat.util.concurrent
+    //for scheduled pools the queue wait is how late a task started compared to when it was scheduled to run
+    public static final Histogram threadPoolQueueWait = Histogram.build()
+            .name("fredboat_threadpool_queue_wait_seconds")
+            .help("Time tasks of a thread pool spent waiting for a thread")
+            .labelNames("name")
+            .buckets(.0001, .0005, .001, .005, .01, .05, .1, .5, 1, 5, 10)
+            .register();
+
+    public static final Histogram threadPoolTaskDuration = Histogram.build()
+            .name("fredboat_threadpool_task_duration_seconds")
+            .help("Time tasks of a thread pool took to run")
+            .labelNames("name")
+            .buckets(.0001, .0005, .001, .005, .01, .05, .1, .5, 1, 5, 10, 60)
+            .register();
+
+    public static final Counter threadPoolRejectedTasks = Counter.build()
+            .name("fredboat_threadpool_rejected_tasks_total")
+            .help("Tasks that did not fit into the queue of a thread pool, and were run by the caller or rejected")
+            .labelNames("name")
+            .register();
+
 }
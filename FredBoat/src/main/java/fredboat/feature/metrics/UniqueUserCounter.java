@@ -0,0 +1,213 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.feature.metrics;
+
+import fredboat.config.property.AppConfig;
+import fredboat.util.HyperLogLog;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.events.ReadyEvent;
+import net.dv8tion.jda.core.events.ReconnectedEvent;
+import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberLeaveEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the unique users over all shards of this process from JDA events, so that the stats don't have to scan the
+ * user caches of all shards. Each shard is counted from scratch whenever it starts a new session, and kept up to date
+ * by member and guild join/leave events after that.
+ * <p>
+ * Approximate mode keeps a {@link HyperLogLog} per shard and merges them when counting. Sketches can't forget users,
+ * so users that left all guilds of a shard are counted until that shard starts its next session.
+ * <p>
+ * Exact mode keeps, per shard, the amount of guilds each user shares with the bot, and over all shards, the amount of
+ * shards each user is seen on.
+ */
+@Component
+public class UniqueUserCounter extends ListenerAdapter {
+
+    private static final int PRECISION = 14;
+
+    private final boolean exact;
+    private final Map<Integer, HyperLogLog> sketches = new ConcurrentHashMap<>();
+    //user id -> amount of guilds of that shard the user is a member of
+    private final Map<Integer, Long2IntOpenHashMap> guildsPerUser = new ConcurrentHashMap<>();
+    //user id -> amount of shards the user is seen on. guarded by itself, as are the maps in guildsPerUser
+    private final Long2IntOpenHashMap shardsPerUser = new Long2IntOpenHashMap();
+
+    public UniqueUserCounter(AppConfig appConfig) {
+        this.exact = appConfig.useExactUserCount();
+    }
+
+    /**
+     * @return amount of unique users of all shards that have been ready at least once
+     */
+    public int count() {
+        if (exact) {
+            synchronized (shardsPerUser) {
+                return shardsPerUser.size();
+            }
+        }
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        sketches.values().forEach(union::merge);
+        return Math.toIntExact(union.cardinality());
+    }
+
+    @Override
+    public void onReady(ReadyEvent event) {
+        rebuild(event.getJDA());
+    }
+
+    //a reconnect means a new session, with the caches being built anew
+    @Override
+    public void onReconnect(ReconnectedEvent event) {
+        rebuild(event.getJDA());
+    }
+
+    @Override
+    public void onShutdown(ShutdownEvent event) {
+        int shardId = shardId(event.getJDA());
+        sketches.remove(shardId);
+        synchronized (shardsPerUser) {
+            Long2IntOpenHashMap users = guildsPerUser.remove(shardId);
+            if (users != null) {
+                users.keySet().forEach((long userId) -> decrement(shardsPerUser, userId));
+            }
+        }
+    }
+
+    @Override
+    public void onGuildJoin(GuildJoinEvent event) {
+        int shardId = shardId(event.getJDA());
+        for (Member member : event.getGuild().getMemberCache()) {
+            add(shardId, member.getUser().getIdLong());
+        }
+    }
+
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event) {
+        if (!exact) {
+            return;
+        }
+        int shardId = shardId(event.getJDA());
+        for (Member member : event.getGuild().getMemberCache()) {
+            remove(shardId, member.getUser().getIdLong());
+        }
+    }
+
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        add(shardId(event.getJDA()), event.getUser().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberLeave(GuildMemberLeaveEvent event) {
+        if (exact) {
+            remove(shardId(event.getJDA()), event.getUser().getIdLong());
+        }
+    }
+
+    //events of a shard are dispatched by a single thread, so there are no updates of the shard while it is rebuilt
+    private void rebuild(JDA jda) {
+        int shardId = shardId(jda);
+        if (!exact) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (Guild guild : jda.getGuildCache()) {
+                for (Member member : guild.getMemberCache()) {
+                    sketch.add(member.getUser().getIdLong());
+                }
+            }
+            sketches.put(shardId, sketch);
+            return;
+        }
+
+        Long2IntOpenHashMap users = new Long2IntOpenHashMap((int) jda.getUserCache().size());
+        for (Guild guild : jda.getGuildCache()) {
+            for (Member member : guild.getMemberCache()) {
+                users.addTo(member.getUser().getIdLong(), 1);
+            }
+        }
+        synchronized (shardsPerUser) {
+            Long2IntOpenHashMap previous = guildsPerUser.put(shardId, users);
+            if (previous != null) {
+                previous.keySet().forEach((long userId) -> decrement(shardsPerUser, userId));
+            }
+            users.keySet().forEach((long userId) -> shardsPerUser.addTo(userId, 1));
+        }
+    }
+
+    private void add(int shardId, long userId) {
+        if (!exact) {
+            HyperLogLog sketch = sketches.get(shardId);
+            if (sketch != null) {
+                sketch.add(userId);
+            }
+            return;
+        }
+        synchronized (shardsPerUser) {
+            Long2IntOpenHashMap users = guildsPerUser.get(shardId);
+            if (users != null && users.addTo(userId, 1) == 0) {
+                shardsPerUser.addTo(userId, 1);
+            }
+        }
+    }
+
+    private void remove(int shardId, long userId) {
+        synchronized (shardsPerUser) {
+            Long2IntOpenHashMap users = guildsPerUser.get(shardId);
+            if (users != null && users.containsKey(userId) && decrement(users, userId)) {
+                decrement(shardsPerUser, userId);
+            }
+        }
+    }
+
+    /**
+     * @return true if the count of the key dropped to zero and the key was removed
+     */
+    private static boolean decrement(Long2IntMap counts, long key) {
+        if (counts.get(key) <= 1) {
+            counts.remove(key);
+            return true;
+        }
+        counts.put(key, counts.get(key) - 1);
+        return false;
+    }
+
+    private static int shardId(JDA jda) {
+        JDA.ShardInfo shardInfo = jda.getShardInfo();
+        return shardInfo == null ? 0 : shardInfo.getShardId();
+    }
+}
@@ -26,11 +26,12 @@
 package fredboat.feature.metrics.collectors;
 
 import fredboat.audio.player.PlayerRegistry;
+import fredboat.config.property.AppConfig;
 import fredboat.feature.metrics.BotMetrics;
 import fredboat.jda.ShardProvider;
-import io.prometheus.client.Collector;
 import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -40,24 +41,26 @@ import java.util.List;
 /**
  * Created by napster on 19.10.17.
  * <p>
- * Collects various FredBoat stats for prometheus
+ * Collects various FredBoat stats for prometheus. These walk the entity caches of all shards, so they are only
+ * collected once per {@link AppConfig#getMetricsSnapshotMillis()}.
  */
 @Component
-public class FredBoatCollector extends Collector {
+public class FredBoatCollector extends SnapshotCollector {
 
     private final PlayerRegistry playerRegistry;
     private final BotMetrics botMetrics;
     private final ShardProvider shardProvider;
 
-    public FredBoatCollector(PlayerRegistry playerRegistry, BotMetrics botMetrics, ShardProvider shardProvider) {
-        super();
+    public FredBoatCollector(PlayerRegistry playerRegistry, BotMetrics botMetrics, ShardProvider shardProvider,
+                             AppConfig appConfig) {
+        super(appConfig.getMetricsSnapshotMillis());
         this.playerRegistry = playerRegistry;
         this.botMetrics = botMetrics;
         this.shardProvider = shardProvider;
     }
 
     @Override
-    public List<MetricFamilySamples> collect() {
+    protected List<MetricFamilySamples> collectSnapshot() {
 
         List<MetricFamilySamples> mfs = new ArrayList<>();
         List<String> labelNames = Arrays.asList("shard", "entity");
@@ -96,6 +99,7 @@ public class FredBoatCollector extends Collector {
 
 
         //per shard stats
+        Int2IntMap playingByShard = playerRegistry.playingCountByShard();
         shardProvider.streamShards().forEach(shard -> {
             String shardId = Integer.toString(shard.getShardInfo().getShardId());
             jdaEntities.addMetric(Arrays.asList(shardId, "User"), shard.getUserCache().size());
@@ -105,6 +109,8 @@ public class FredBoatCollector extends Collector {
             jdaEntities.addMetric(Arrays.asList(shardId, "Category"), shard.getCategoryCache().size());
             jdaEntities.addMetric(Arrays.asList(shardId, "Emote"), shard.getEmoteCache().size());
             jdaEntities.addMetric(Arrays.asList(shardId, "Role"), shard.getRoleCache().size());
+            playersPlaying.addMetric(Arrays.asList(shardId, "Players"),
+                    playingByShard.get(shard.getShardInfo().getShardId()));
         });
 
         return mfs;
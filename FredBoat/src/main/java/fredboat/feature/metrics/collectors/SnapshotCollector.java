@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.feature.metrics.collectors;
+
+import io.prometheus.client.Collector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A collector whose samples are expensive to collect. The collected samples are reused by scrapes within a configured
+ * time, and concurrent scrapes wait for a single collection instead of each walking everything on their own.
+ */
+public abstract class SnapshotCollector extends Collector {
+
+    private final long snapshotNanos;
+    private final Object collectLock = new Object();
+    private volatile List<MetricFamilySamples> snapshot = Collections.emptyList();
+    private volatile long collectedAt;
+    private volatile boolean collected = false;
+
+    /**
+     * @param snapshotMillis how long collected samples may be reused, 0 to collect them on every scrape
+     */
+    protected SnapshotCollector(long snapshotMillis) {
+        this.snapshotNanos = snapshotMillis * 1_000_000;
+    }
+
+    /**
+     * @return the samples, which must not be modified afterwards as they may be handed to several scrapes
+     */
+    protected abstract List<MetricFamilySamples> collectSnapshot();
+
+    @Override
+    public final List<MetricFamilySamples> collect() {
+        if (snapshotNanos <= 0) {
+            return collectSnapshot();
+        }
+        if (isFresh()) {
+            return snapshot;
+        }
+        synchronized (collectLock) {
+            //another scrape may have collected while we were waiting
+            if (!isFresh()) {
+                snapshot = Collections.unmodifiableList(collectSnapshot());
+                collectedAt = System.nanoTime();
+                collected = true;
+            }
+            return snapshot;
+        }
+    }
+
+    private boolean isFresh() {
+        return collected && System.nanoTime() - collectedAt < snapshotNanos;
+    }
+}
@@ -5,17 +5,16 @@ import fredboat.agent.CarbonitexAgent;
 import fredboat.agent.FredBoatAgent;
 import fredboat.agent.StatsAgent;
 import fredboat.agent.VoiceChannelCleanupAgent;
-import fredboat.audio.player.AudioConnectionFacade;
 import fredboat.audio.player.PlayerLimiter;
 import fredboat.audio.player.PlayerRegistry;
 import fredboat.audio.player.VideoSelectionCache;
+import fredboat.audio.player.VoiceConnectionTracker;
 import fredboat.commandmeta.CommandInitializer;
 import fredboat.commandmeta.CommandRegistry;
 import fredboat.config.SentryConfiguration;
 import fredboat.config.property.ConfigPropertiesProvider;
 import fredboat.feature.I18n;
 import fredboat.feature.metrics.BotMetrics;
-import fredboat.jda.GuildProvider;
 import fredboat.jda.ShardProvider;
 import fredboat.util.AppInfo;
 import fredboat.util.GitRepoState;
@@ -32,6 +31,7 @@ import okhttp3.Response;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
@@ -82,13 +82,13 @@ public class Launcher implements ApplicationRunner {
     private final CacheMetricsCollector cacheMetrics;
     private final PlayerRegistry playerRegistry;
     private final StatsAgent statsAgent;
+    private final StatsAgent statsSnapshotAgent;
     private final BotMetrics botMetrics;
     private final Weather weather;
-    private final AudioConnectionFacade audioConnectionFacade;
+    private final VoiceConnectionTracker voiceConnectionTracker;
     private final TrackSearcher trackSearcher;
     private final VideoSelectionCache videoSelectionCache;
     private final ShardProvider shardProvider;
-    private final GuildProvider guildProvider;
     private final SentryConfiguration sentryConfiguration;
     private final PlayerLimiter playerLimiter;
     private final YoutubeAPI youtubeAPI;
@@ -131,9 +131,10 @@ public class Launcher implements ApplicationRunner {
 
     public Launcher(BotController botController, ConfigPropertiesProvider configProvider, ExecutorService executor,
                     CacheMetricsCollector cacheMetrics, PlayerRegistry playerRegistry,
-                    StatsAgent statsAgent, BotMetrics botMetrics, Weather weather,
-                    AudioConnectionFacade audioConnectionFacade, TrackSearcher trackSearcher,
-                    VideoSelectionCache videoSelectionCache, ShardProvider shardProvider, GuildProvider guildProvider,
+                    StatsAgent statsAgent, @Qualifier("statsSnapshotAgent") StatsAgent statsSnapshotAgent,
+                    BotMetrics botMetrics, Weather weather,
+                    VoiceConnectionTracker voiceConnectionTracker, TrackSearcher trackSearcher,
+                    VideoSelectionCache videoSelectionCache, ShardProvider shardProvider,
                     SentryConfiguration sentryConfiguration, PlayerLimiter playerLimiter, YoutubeAPI youtubeAPI) {
         Launcher.BC = botController;
         this.configProvider = configProvider;
@@ -141,13 +142,13 @@ public class Launcher implements ApplicationRunner {
         this.cacheMetrics = cacheMetrics;
         this.playerRegistry = playerRegistry;
         this.statsAgent = statsAgent;
+        this.statsSnapshotAgent = statsSnapshotAgent;
         this.botMetrics = botMetrics;
         this.weather = weather;
-        this.audioConnectionFacade = audioConnectionFacade;
+        this.voiceConnectionTracker = voiceConnectionTracker;
         this.trackSearcher = trackSearcher;
         this.videoSelectionCache = videoSelectionCache;
         this.shardProvider = shardProvider;
-        this.guildProvider = guildProvider;
         this.sentryConfiguration = sentryConfiguration;
         this.playerLimiter = playerLimiter;
         this.youtubeAPI = youtubeAPI;
@@ -165,12 +166,15 @@ public class Launcher implements ApplicationRunner {
 
         if (!configProvider.getAppConfig().isPatronDistribution()) {
             log.info("Starting VoiceChannelCleanupAgent.");
-            FredBoatAgent.start(new VoiceChannelCleanupAgent(playerRegistry, guildProvider, audioConnectionFacade));
+            FredBoatAgent.start(new VoiceChannelCleanupAgent(voiceConnectionTracker));
         } else {
             log.info("Skipped setting up the VoiceChannelCleanupAgent, " +
                     "either running Patron distro or overridden by temp config");
         }
 
+        //stats are served while the shards are still starting up
+        FredBoatAgent.startNow(statsSnapshotAgent);
+
         //Check MAL creds
         executor.submit(this::hasValidMALLogin);
 
@@ -30,6 +30,7 @@ import fredboat.feature.I18n;
 import fredboat.feature.metrics.Metrics;
 import fredboat.messaging.internal.Context;
 import fredboat.shared.constant.BotConstants;
+import fredboat.util.concurrent.InstrumentedScheduledThreadPoolExecutor;
 import io.prometheus.client.Collector;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.MessageBuilder;
@@ -47,7 +48,6 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.ResourceBundle;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 
@@ -72,8 +72,8 @@ public class CentralMessaging {
     // this makes it way easier to track stats + handle failures of such delayed RestActions
     // instead of implementing a ton of overloaded methods in this class
     @Nonnull
-    public static final ScheduledExecutorService restService = Executors.newScheduledThreadPool(10,
-            runnable -> new Thread(runnable, "central-messaging-scheduler"));
+    public static final ScheduledExecutorService restService =
+            new InstrumentedScheduledThreadPoolExecutor("central-messaging", 10, false);
 
 
     // ********************************************************************************
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.perms;
+
+import fredboat.db.entity.main.GuildPermissions;
+import fredboat.definitions.PermissionLevel;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Role;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * The admin, DJ and user lists of a guild, parsed into a single map from role and user ids to the highest level they
+ * have been granted. Resolving the level of a member takes a lookup for the member and each of their roles, instead of
+ * walking all lists with string comparisons.
+ * <p>
+ * Immutable, see {@link PermsUtil} for how these are cached.
+ */
+public final class CompiledGuildPermissions {
+
+    private final long guildId;
+    private final Long2ObjectOpenHashMap<PermissionLevel> levels;
+    //granted to everyone through the public role, which shares its id with the guild
+    @Nullable
+    private final PermissionLevel publicLevel;
+
+    private CompiledGuildPermissions(long guildId, Long2ObjectOpenHashMap<PermissionLevel> levels) {
+        this.guildId = guildId;
+        this.levels = levels;
+        this.publicLevel = levels.get(guildId);
+    }
+
+    public static CompiledGuildPermissions compile(long guildId, GuildPermissions guildPermissions) {
+        return compile(guildId, guildPermissions.getAdminList(), guildPermissions.getDjList(),
+                guildPermissions.getUserList());
+    }
+
+    public static CompiledGuildPermissions compile(long guildId, List<String> adminIds, List<String> djIds,
+                                                   List<String> userIds) {
+        Long2ObjectOpenHashMap<PermissionLevel> levels = new Long2ObjectOpenHashMap<>();
+        //lowest first, so that higher levels overwrite them
+        put(levels, userIds, PermissionLevel.USER);
+        put(levels, djIds, PermissionLevel.DJ);
+        put(levels, adminIds, PermissionLevel.ADMIN);
+        levels.trim();
+        return new CompiledGuildPermissions(guildId, levels);
+    }
+
+    private static void put(Long2ObjectOpenHashMap<PermissionLevel> levels, List<String> ids, PermissionLevel level) {
+        for (String id : ids) {
+            if (id.isEmpty()) continue;
+            try {
+                levels.put(Long.parseLong(id), level);
+            } catch (NumberFormatException ignored) {
+                //not a snowflake, can't match anything
+            }
+        }
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * @return the highest of ADMIN, DJ, USER that has been granted to the member or any of their roles, BASE if none
+     */
+    public PermissionLevel getLevel(Member member) {
+        return getLevel(member.getUser().getIdLong(), member.getRoles());
+    }
+
+    public PermissionLevel getLevel(long userId, List<Role> roles) {
+        PermissionLevel level = max(publicLevel, levels.get(userId));
+        for (Role role : roles) {
+            if (level == PermissionLevel.ADMIN) {
+                break;
+            }
+            level = max(level, levels.get(role.getIdLong()));
+        }
+        return level == null ? PermissionLevel.BASE : level;
+    }
+
+    @Nullable
+    private static PermissionLevel max(@Nullable PermissionLevel a, @Nullable PermissionLevel b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.getLevel() >= b.getLevel() ? a : b;
+    }
+}
@@ -25,22 +25,48 @@
 
 package fredboat.perms;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import fredboat.commandmeta.abs.CommandContext;
-import fredboat.db.entity.main.GuildPermissions;
 import fredboat.definitions.PermissionLevel;
 import fredboat.main.Launcher;
+import fredboat.util.CacheUtil;
 import fredboat.util.DiscordUtil;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.dv8tion.jda.core.Permission;
+import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.Role;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides utility methods for FredBoat's own permission system, **not** the Discord permission system.
  */
 public class PermsUtil {
 
+    //permission changes through the permissions command invalidate their guild right away, the expiry picks up any
+    //changes made to the db by other means
+    public static final Cache<Long, CompiledGuildPermissions> COMPILED_PERMISSIONS = CacheBuilder.newBuilder()
+            .recordStats()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .maximumSize(100_000)
+            .build();
+
+    //the admin ids of the config, and the set compiled from them
+    private static volatile List<Long> botAdminIds = null;
+    private static volatile LongSet botAdmins = new LongOpenHashSet();
+
+    /**
+     * Resolve the level of the invoker of a command. The result is memoized in the context, so checking the level
+     * several times during the same command is cheap.
+     */
+    public static PermissionLevel getPerms(CommandContext context) {
+        return context.getInvokerPerms();
+    }
+
     public static PermissionLevel getPerms(Member member) {
         if (DiscordUtil.getOwnerId(member.getJDA()) == member.getUser().getIdLong()) {
             return PermissionLevel.BOT_OWNER; // https://fred.moe/Q-EB.png
@@ -50,13 +76,20 @@ public class PermsUtil {
             return PermissionLevel.ADMIN;
         }
 
-        GuildPermissions gp = Launcher.getBotController().getGuildPermsService().fetchGuildPermissions(member.getGuild());
+        return getCompiledPermissions(member.getGuild()).getLevel(member);
+    }
 
-        if (checkList(gp.getAdminList(), member)) return PermissionLevel.ADMIN;
-        if (checkList(gp.getDjList(), member)) return PermissionLevel.DJ;
-        if (checkList(gp.getUserList(), member)) return PermissionLevel.USER;
+    public static CompiledGuildPermissions getCompiledPermissions(Guild guild) {
+        return CacheUtil.getUncheckedUnwrapped(COMPILED_PERMISSIONS, guild.getIdLong(),
+                () -> CompiledGuildPermissions.compile(guild.getIdLong(),
+                        Launcher.getBotController().getGuildPermsService().fetchGuildPermissions(guild)));
+    }
 
-        return PermissionLevel.BASE;
+    /**
+     * Drop the compiled permissions of a guild, call this after changing its permissions.
+     */
+    public static void invalidate(Guild guild) {
+        COMPILED_PERMISSIONS.invalidate(guild.getIdLong());
     }
 
     /**
@@ -66,11 +99,18 @@ public class PermsUtil {
         return getPerms(member).getLevel() >= minLevel.getLevel();
     }
 
+    /**
+     * @return True if the invoker of the command has at least the requested PermissionLevel or higher. False if not.
+     */
+    public static boolean checkPerms(PermissionLevel minLevel, CommandContext context) {
+        return getPerms(context).getLevel() >= minLevel.getLevel();
+    }
+
     /**
      * Check whether the invoker has at least the provided minimum permissions level
      */
     public static boolean checkPermsWithFeedback(PermissionLevel minLevel, CommandContext context) {
-        PermissionLevel actual = getPerms(context.invoker);
+        PermissionLevel actual = getPerms(context);
 
         if (actual.getLevel() >= minLevel.getLevel()) {
             return true;
@@ -84,16 +124,28 @@ public class PermsUtil {
      * returns true if the member is or holds a role defined as admin in the configuration file
      */
     private static boolean isBotAdmin(Member member) {
-        boolean botAdmin = false;
-        for (long id : Launcher.getBotController().getAppConfig().getAdminIds()) {
-            Role r = member.getGuild().getRoleById(id);
-            if (member.getUser().getIdLong() == id
-                    || (r != null && member.getRoles().contains(r))) {
-                botAdmin = true;
-                break;
+        LongSet admins = getBotAdmins();
+        if (admins.isEmpty()) {
+            return false;
+        }
+        if (admins.contains(member.getUser().getIdLong())) {
+            return true;
+        }
+        for (Role role : member.getRoles()) {
+            if (admins.contains(role.getIdLong())) {
+                return true;
             }
         }
-        return botAdmin;
+        return false;
+    }
+
+    private static LongSet getBotAdmins() {
+        List<Long> adminIds = Launcher.getBotController().getAppConfig().getAdminIds();
+        if (adminIds != botAdminIds) { //recompile if the config has been reloaded
+            botAdmins = new LongOpenHashSet(adminIds);
+            botAdminIds = adminIds;
+        }
+        return botAdmins;
     }
 
     public static boolean checkList(List<String> list, Member member) {
@@ -24,18 +24,11 @@
  */
 package fredboat.util;
 
-import gnu.trove.procedure.TObjectProcedure;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.dv8tion.jda.core.JDA;
-import net.dv8tion.jda.core.entities.User;
-import net.dv8tion.jda.core.entities.impl.JDAImpl;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * JDA methods/hacks that had merit to put in its own class.
@@ -57,31 +50,16 @@ public class JDAUtil {
     }
 
     /**
-     * A count of unique users over the provided shards. This is an expensive operation given FredBoats scale.
-     * <p>
-     * Optionally pass in a value of value of previous counts / expected size to that we can initialize the set used
-     * to count the unique values with an approriate size reducing expensive resizing operations.
+     * @return Sum of the user cache sizes of the provided shards. This is a unique count for a single shard only, since
+     * users can share guilds with several shards. Unique counts over several shards are kept by the
+     * {@link fredboat.feature.metrics.UniqueUserCounter}.
      */
     @CheckReturnValue
-    public static int countUniqueUsers(@Nonnull Collection<JDA> shards, @Nullable AtomicInteger expectedUserCount) {
-        if (shards.size() == 1) { //a single shard provides a cheap call for getting user cardinality
-            return Math.toIntExact(shards.iterator().next().getUserCache().size());
-        }
-
-        int expected = expectedUserCount != null && expectedUserCount.get() > 0 ? expectedUserCount.get() : LongOpenHashSet.DEFAULT_INITIAL_SIZE;
-        LongOpenHashSet uniqueUsers = new LongOpenHashSet(expected + 10000); //add 10k for good measure
-        TObjectProcedure<User> adder = user -> {
-            uniqueUsers.add(user.getIdLong());
-            return true;
-        };
-        Collections.unmodifiableCollection(shards).forEach(
-                // IMPLEMENTATION NOTE: READ
-                // careful, touching the map is in not all cases safe
-                // In this case, it just so happens to be safe, because the map is synchronized
-                // this means however, that for the (small) duration, the map cannot be used by other threads (if there are any)
-                shard -> ((JDAImpl) shard).getUserMap().forEachValue(adder)
-        );
-        return uniqueUsers.size();
+    public static int countUsers(@Nonnull Collection<JDA> shards) {
+        long result = shards.stream()
+                .mapToLong(shard -> shard.getUserCache().size())
+                .sum();
+        return Math.toIntExact(result);
     }
 
     /**
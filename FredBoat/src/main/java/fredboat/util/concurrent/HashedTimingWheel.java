@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.util.concurrent;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * Deadlines of long keys, bucketed by their tick into a fixed ring of slots. Scheduling and cancelling are O(1), and
+ * advancing the wheel only looks at the slots of the ticks that passed, so the cost does not depend on how many keys
+ * are scheduled further out. Deadlines are rounded up to the next tick. Deadlines further out than a full turn of the
+ * wheel share their slot with earlier ones and are skipped until their turn comes.
+ * <p>
+ * Each key has at most one deadline. Thread safe.
+ */
+public class HashedTimingWheel {
+
+    private final long tickMillis;
+    private final LongOpenHashSet[] slots;
+    private final int mask;
+    //key -> tick of its deadline
+    private final Long2LongOpenHashMap ticks = new Long2LongOpenHashMap();
+    //the last tick that has been processed. it is processed again by the next advance, to pick up overdue deadlines
+    private long lastTick;
+
+    /**
+     * @param slots amount of slots, rounded up to a power of two
+     */
+    public HashedTimingWheel(long tickMillis, int slots, long nowMillis) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.slots = new LongOpenHashSet[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new LongOpenHashSet();
+        }
+        this.ticks.defaultReturnValue(-1);
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedule or reschedule the deadline of a key. Deadlines in the past expire with the next advance.
+     */
+    public synchronized void schedule(long key, long deadlineMillis) {
+        cancel(key);
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, lastTick);
+        ticks.put(key, tick);
+        slot(tick).add(key);
+    }
+
+    /**
+     * @return true if the key had a deadline
+     */
+    public synchronized boolean cancel(long key) {
+        long tick = ticks.remove(key);
+        if (tick < 0) {
+            return false;
+        }
+        slot(tick).remove(key);
+        return true;
+    }
+
+    public synchronized boolean isScheduled(long key) {
+        return ticks.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return ticks.size();
+    }
+
+    /**
+     * Advance the wheel up to the current time.
+     *
+     * @return the keys whose deadline has passed, they are no longer scheduled
+     */
+    public synchronized LongList advance(long nowMillis) {
+        LongList expired = new LongArrayList();
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick < lastTick) {
+            return expired;
+        }
+        //visiting every slot once is enough to find all due keys, no matter how late we are
+        long steps = Math.min(targetTick - lastTick + 1, slots.length);
+        for (long i = 0; i < steps; i++) {
+            LongIterator it = slot(lastTick + i).iterator();
+            while (it.hasNext()) {
+                long key = it.nextLong();
+                if (ticks.get(key) <= targetTick) {
+                    it.remove();
+                    ticks.remove(key);
+                    expired.add(key);
+                }
+            }
+        }
+        lastTick = targetTick;
+        return expired;
+    }
+
+    private LongOpenHashSet slot(long tick) {
+        return slots[(int) (tick & mask)];
+    }
+}
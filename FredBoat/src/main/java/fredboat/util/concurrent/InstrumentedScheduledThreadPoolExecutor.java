@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.util.concurrent;
+
+import fredboat.feature.metrics.Metrics;
+
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled thread pool that measures how late its tasks start compared to when they were scheduled to run, and how
+ * long they run, see {@link Metrics#threadPoolQueueWait} and {@link Metrics#threadPoolTaskDuration}.
+ */
+public class InstrumentedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+
+    private final String name;
+    private final ThreadLocal<Long> started = new ThreadLocal<>();
+
+    public InstrumentedScheduledThreadPoolExecutor(String name, int threads, boolean daemon) {
+        this(name, threads, InstrumentedThreadPoolExecutor.threadFactory(name, daemon));
+    }
+
+    public InstrumentedScheduledThreadPoolExecutor(String name, int threads, ThreadFactory threadFactory) {
+        super(threads, threadFactory);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof RunnableScheduledFuture) {
+            //the delay is negative once the task is due
+            long late = -((RunnableScheduledFuture<?>) r).getDelay(TimeUnit.NANOSECONDS);
+            Metrics.threadPoolQueueWait.labels(name).observe(Math.max(0, late) / 1_000_000_000.0);
+        }
+        started.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        Long start = started.get();
+        if (start != null) {
+            started.remove();
+            Metrics.threadPoolTaskDuration.labels(name).observe((System.nanoTime() - start) / 1_000_000_000.0);
+        }
+        super.afterExecute(r, t);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.util.concurrent;
+
+import fredboat.feature.metrics.Metrics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pool with a fixed amount of threads and a bounded queue, which measures how long its tasks wait in the queue
+ * and how long they run, see {@link Metrics#threadPoolQueueWait} and {@link Metrics#threadPoolTaskDuration}.
+ * <p>
+ * Idle threads time out, so pools that are busy only once in a while don't hold on to their threads.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+
+    /**
+     * @param queueSize          maximum amount of tasks waiting for a thread, 0 for no limit
+     * @param rejectionHandler   what to do with tasks that don't fit into the queue anymore
+     */
+    public InstrumentedThreadPoolExecutor(String name, int threads, int queueSize, boolean daemon,
+                                          RejectedExecutionHandler rejectionHandler) {
+        super(threads, threads, 60, TimeUnit.SECONDS, queue(queueSize), threadFactory(name, daemon),
+                new CountingRejectionHandler(name, rejectionHandler));
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(name, command));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a factory for threads named after the pool, with a running number
+     */
+    public static ThreadFactory threadFactory(String name, boolean daemon) {
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCounter.getAndIncrement());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    private static BlockingQueue<Runnable> queue(int queueSize) {
+        return queueSize > 0 ? new LinkedBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * Remembers when it was handed to the pool.
+     */
+    static class TimedTask implements Runnable {
+        private final String poolName;
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        TimedTask(String poolName, Runnable task) {
+            this.poolName = poolName;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            Metrics.threadPoolQueueWait.labels(poolName).observe((started - submitted) / 1_000_000_000.0);
+            try {
+                task.run();
+            } finally {
+                Metrics.threadPoolTaskDuration.labels(poolName).observe((System.nanoTime() - started) / 1_000_000_000.0);
+            }
+        }
+    }
+
+    static class CountingRejectionHandler implements RejectedExecutionHandler {
+        private final String poolName;
+        private final RejectedExecutionHandler delegate;
+
+        CountingRejectionHandler(String poolName, RejectedExecutionHandler delegate) {
+            this.poolName = poolName;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (!executor.isShutdown()) {
+                Metrics.threadPoolRejectedTasks.labels(poolName).inc();
+            }
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
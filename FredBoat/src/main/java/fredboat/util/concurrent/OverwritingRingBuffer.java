@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fixed size buffer for any amount of producers and a single consumer at a time. Offering never blocks and never
+ * fails: when the consumer falls behind by more than the capacity, the oldest values are overwritten, and reported as
+ * dropped by the next drain.
+ * <p>
+ * Producers claim a sequence number and publish their value into the slot of that sequence. A slot only ever moves to
+ * a higher sequence, so the consumer can tell values that are not published yet from values that have been
+ * overwritten.
+ */
+public class OverwritingRingBuffer<T> {
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final int mask;
+    private final AtomicLong writeSequence = new AtomicLong();
+    //guarded by this
+    private long readSequence;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public OverwritingRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void offer(T value) {
+        Slot<T> slot = new Slot<>(writeSequence.getAndIncrement(), value);
+        //a producer that lags behind by a whole turn must not overwrite a later value
+        slots.accumulateAndGet(index(slot.sequence), slot,
+                (current, next) -> current == null || current.sequence < next.sequence ? next : current);
+    }
+
+    /**
+     * Pass all published values to the consumer, oldest first. Values whose producers have claimed a slot but not
+     * published into it yet are left for the next drain, together with all values after them.
+     *
+     * @return amount of values that have been overwritten since the last drain
+     */
+    public synchronized int drain(Consumer<? super T> consumer) {
+        long end = writeSequence.get();
+        int dropped = 0;
+        if (end - readSequence > slots.length()) {
+            dropped += end - slots.length() - readSequence;
+            readSequence = end - slots.length();
+        }
+        while (readSequence < end) {
+            Slot<T> slot = slots.get(index(readSequence));
+            if (slot == null || slot.sequence < readSequence) {
+                break;
+            }
+            if (slot.sequence > readSequence) {
+                dropped++;
+            } else {
+                consumer.accept(slot.value);
+            }
+            readSequence++;
+        }
+        return dropped;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private static class Slot<T> {
+        private final long sequence;
+        private final T value;
+
+        private Slot(long sequence, T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
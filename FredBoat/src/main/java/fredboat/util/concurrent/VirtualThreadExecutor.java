@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.util.concurrent;
+
+import fredboat.feature.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task on its own virtual thread, with the same task metrics as the {@link InstrumentedThreadPoolExecutor}.
+ * <p>
+ * Virtual threads are cheap, but the resources used by the tasks aren't, so the amount of tasks in flight is limited.
+ * Tasks that exceed the limit are run by the submitting thread, slowing it down.
+ * <p>
+ * Virtual threads are looked up reflectively, as they are not available on the JVM versions that we compile for.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+    private final String name;
+    private final ExecutorService delegate;
+    private final Semaphore inFlight;
+
+    private VirtualThreadExecutor(String name, ExecutorService delegate, int maxInFlight) {
+        this.name = name;
+        this.delegate = delegate;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @return null if this JVM does not support virtual threads
+     */
+    @Nullable
+    public static VirtualThreadExecutor create(String name, int maxInFlight) {
+        ExecutorService delegate;
+        try {
+            delegate = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("No virtual threads available", e);
+            return null;
+        }
+        return new VirtualThreadExecutor(name, delegate, Math.max(1, maxInFlight));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        InstrumentedThreadPoolExecutor.TimedTask task = new InstrumentedThreadPoolExecutor.TimedTask(name, command);
+        if (!inFlight.tryAcquire()) {
+            Metrics.threadPoolRejectedTasks.labels(name).inc();
+            task.run();
+            return;
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -63,9 +63,13 @@ public class Blacklist {
 
     private final BlacklistService blacklistService; //implementation as a RestRepo includes a cache
 
+    //changes are persisted by this in batches, instead of a backend round trip for every hit of a ratelimit
+    private final BlacklistWriteBuffer writeBuffer;
+
 
     public Blacklist(BlacklistService blacklistService, Set<Long> userWhiteList, long rateLimitHitsBeforeBlacklist) {
         this.blacklistService = blacklistService;
+        this.writeBuffer = new BlacklistWriteBuffer(blacklistService);
         this.rateLimitHitsBeforeBlacklist = rateLimitHitsBeforeBlacklist;
         this.userWhiteList = Collections.unmodifiableSet(userWhiteList);
     }
@@ -82,7 +86,7 @@ public class Blacklist {
         //first of all, ppl that can never get blacklisted no matter what
         if (userWhiteList.contains(id)) return false;
 
-        BlacklistEntry blEntry = blacklistService.fetchBlacklistEntry(id);
+        BlacklistEntry blEntry = fetchEntry(id);
         if (blEntry.getLevel() < 0) return false; //blacklist entry exists, but id hasn't actually been blacklisted yet
 
 
@@ -102,11 +106,11 @@ public class Blacklist {
     public long hitRateLimit(long id) {
         //update blacklist entry of this id
         long blacklistingLength = 0;
-        BlacklistEntry blEntry = blacklistService.fetchBlacklistEntry(id);
+        BlacklistEntry blEntry = fetchEntry(id);
 
         //synchronize on the individual blacklist entries since we are about to change and save them
-        // we can use these to synchronize because they are backed by a cache, subsequent calls to fetch them
-        // will return the same object
+        // we can use these to synchronize because they are backed by the write buffer or a cache, subsequent calls to
+        // fetch them will return the same object
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
         synchronized (blEntry) {
             long now = System.currentTimeMillis();
@@ -127,9 +131,8 @@ public class Blacklist {
 
                 blacklistingLength = getBlacklistTimeLength(blEntry.getLevel());
             }
-            //persist it
-            //if this turns up to be a performance bottleneck, have an agent run that persists the blacklist occasionally
-            blacklistService.mergeBlacklistEntry(blEntry);
+            //persist it, right away if a blacklisting was issued
+            writeBuffer.changed(blEntry, blacklistingLength > 0);
             return blacklistingLength;
         }
     }
@@ -138,7 +141,15 @@ public class Blacklist {
      * completely resets a blacklist for an id
      */
     public void liftBlacklist(long id) {
-        blacklistService.deleteBlacklistEntry(id);
+        writeBuffer.delete(id);
+    }
+
+    /**
+     * @return the entry of the id, preferring an entry with changes that have not been flushed yet
+     */
+    private BlacklistEntry fetchEntry(long id) {
+        BlacklistEntry changed = writeBuffer.get(id);
+        return changed != null ? changed : blacklistService.fetchBlacklistEntry(id);
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.util.ratelimit;
+
+import fredboat.db.api.BlacklistService;
+import fredboat.db.entity.main.BlacklistEntry;
+import fredboat.feature.metrics.Metrics;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write behind buffer for changed blacklist entries. Changes to the same entry are coalesced until the next flush, which
+ * merges all changed entries in batches. Flushes happen in regular intervals, right away when a blacklisting has been
+ * issued, and on shutdown.
+ * <p>
+ * The buffered entries are the most recent state of an id, so they take precedence over whatever the blacklist service
+ * returns for that id. Entries stay buffered until their merge succeeded, so there is no moment in which neither the
+ * buffer nor the blacklist service has the most recent state. An entry that is changed while it is being flushed stays
+ * buffered and will be part of the next flush.
+ */
+public class BlacklistWriteBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(BlacklistWriteBuffer.class);
+
+    private static final long FLUSH_INTERVAL_MILLIS = 5000;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final BlacklistService blacklistService;
+    //each change gets its own holder, so a flush can tell whether an entry has been changed again since it took it
+    private final ConcurrentHashMap<Long, Change> changed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blacklist-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BlacklistWriteBuffer(BlacklistService blacklistService) {
+        this.blacklistService = blacklistService;
+        flusher.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "blacklist-flusher-shutdown-hook"));
+    }
+
+    /**
+     * @return the buffered entry of the id, if it has unflushed changes
+     */
+    @Nullable
+    public BlacklistEntry get(long id) {
+        Change change = changed.get(id);
+        return change != null ? change.entry : null;
+    }
+
+    /**
+     * Call this after changing the entry.
+     *
+     * @param urgent true to have the entry flushed right away instead of waiting for the next regular flush
+     */
+    public void changed(BlacklistEntry entry, boolean urgent) {
+        changed.put(entry.getId(), new Change(entry));
+        Metrics.blacklistWriteBufferEntries.set(changed.size());
+        if (urgent) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * Drops any unflushed changes of the id and deletes its entry. Synchronized with flushing, so a flush that is in
+     * progress can't resurrect the entry.
+     */
+    public synchronized void delete(long id) {
+        changed.remove(id);
+        Metrics.blacklistWriteBufferEntries.set(changed.size());
+        blacklistService.deleteBlacklistEntry(id);
+    }
+
+    /**
+     * Merges all changed entries. Entries are removed from the buffer only after their batch has been merged, and only
+     * if they have not been changed again in the meantime. Entries of failed batches stay buffered for the next flush.
+     */
+    public synchronized void flush() {
+        List<Change> pending = new ArrayList<>(changed.values());
+        for (int start = 0; start < pending.size(); start += MAX_BATCH_SIZE) {
+            List<Change> batch = pending.subList(start, Math.min(start + MAX_BATCH_SIZE, pending.size()));
+            List<BlacklistEntry> entries = new ArrayList<>(batch.size());
+            for (Change change : batch) {
+                entries.add(change.entry);
+            }
+
+            Histogram.Timer timer = Metrics.blacklistFlushDuration.startTimer();
+            try {
+                blacklistService.mergeBlacklistEntries(entries);
+                Metrics.blacklistEntriesFlushed.labels("success").inc(entries.size());
+            } catch (Exception e) {
+                Metrics.blacklistEntriesFlushed.labels("failed").inc(entries.size());
+                throw e;
+            } finally {
+                timer.observeDuration();
+            }
+
+            for (Change change : batch) {
+                changed.remove(change.entry.getId(), change);
+            }
+            Metrics.blacklistWriteBufferEntries.set(changed.size());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush {} changed blacklist entries, will retry", changed.size(), e);
+        }
+    }
+
+    private void shutdown() {
+        flusher.shutdown();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush {} changed blacklist entries on shutdown, they are lost", changed.size(), e);
+        }
+    }
+
+    private static class Change {
+        private final BlacklistEntry entry;
+
+        private Change(BlacklistEntry entry) {
+            this.entry = entry;
+        }
+    }
+}
@@ -24,42 +24,28 @@
 
 package fredboat.util.ratelimit;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import fredboat.messaging.internal.Context;
-import fredboat.util.rest.CacheUtil;
 import io.prometheus.client.guava.cache.CacheMetricsCollector;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Created by napster on 17.04.17.
  * <p>
- * This class uses an algorithm based on leaky bucket, but is optimized, mainly we work around having tons of threads for
- * each bucket filling/emptying it, instead saving timestamps. As a result this class works better for shorter time
- * periods, as the amount of timestamps to hold decreases.
- * some calculations can be found here: https://docs.google.com/spreadsheets/d/1Afdn25AsFD-v3WQGp56rfVwO1y2d105IQk3dtfTcKwA/edit#gid=0
+ * The bookkeeping of the requests is done by a {@link RateEngine}, either the {@link TimestampRateEngine} or the lock free
+ * {@link SlidingWindowRateEngine}.
  */
 public class Ratelimit {
 
-    private final static Logger log = LoggerFactory.getLogger(Ratelimit.class);
-
     private final ExecutorService executorService;
 
     public enum Scope {USER, GUILD}
 
-    private final LoadingCache<Long, Rate> rates;
-    private final long maxRequests;
-    private final long timeSpan;
+    private final RateEngine engine;
 
     //users that can never be limited
     private final Set<Long> userWhiteList;
@@ -92,22 +78,21 @@ public class Ratelimit {
      * @param milliseconds  time in milliseconds, in which maxRequests shall be allowed
      * @param clazz         the optional (=can be null) clazz of commands to be ratelimited by this ratelimiter
      * @param message       message to show to users that hit a ratelimit. accept a context which can be used for i18ning the message
+     * @param slidingWindow true to use the lock free {@link SlidingWindowRateEngine}, false to use the
+     *                      {@link TimestampRateEngine} (the only one that registers with the cache metrics)
      */
     public Ratelimit(String name, CacheMetricsCollector cacheMetrics, ExecutorService executorService,
                      Set<Long> userWhiteList, Scope scope, long maxRequests, long milliseconds, Class clazz,
-                     Function<Context, String> message) {
+                     Function<Context, String> message, boolean slidingWindow) {
         this.executorService = executorService;
-        rates = CacheBuilder.newBuilder()
-                .recordStats()
-                //we can completely forget the object after this period, the rates would be reset anyways
-                .expireAfterAccess(milliseconds, TimeUnit.MILLISECONDS)
-                .build(CacheLoader.from(Rate::new));
-        cacheMetrics.addCache(name + "Ratelimit", rates);
+        if (slidingWindow) {
+            engine = new SlidingWindowRateEngine(name, maxRequests, milliseconds);
+        } else {
+            engine = new TimestampRateEngine(name, cacheMetrics, maxRequests, milliseconds);
+        }
 
         this.userWhiteList = Collections.unmodifiableSet(userWhiteList);
         this.scope = scope;
-        this.maxRequests = maxRequests;
-        this.timeSpan = milliseconds;
         this.clazz = clazz;
         this.message = message;
     }
@@ -134,35 +119,9 @@ public class Ratelimit {
             id = context.getGuild().getIdLong();
         }
 
-        Rate rate = CacheUtil.getUncheckedUnwrapped(rates, id);
-        if (rate == null) {
-            log.warn("Shiver me timbers, cache calling new Rate({}) returned null", id);
-            return true; //not expected to happen, let it slip in a user friendly way
-        }
-
-        //synchronize on the individual rate objects since we are about to change and save them
-        // we can use these to synchronize because they are backed by a cache, subsequent calls to fetch them
-        // will return the same object
-        //noinspection SynchronizationOnLocalVariableOrMethodParameter
-        synchronized (rate) {
-            long now = System.currentTimeMillis();
-
-            //clear outdated timestamps
-            long maxTimeStampsToClear = (now - rate.lastUpdated) * maxRequests / timeSpan;
-            long cleared = 0;
-            while (rate.timeStamps.size() > 0 && rate.timeStamps.getLong(0) + timeSpan < now && cleared < maxTimeStampsToClear) {
-                rate.timeStamps.removeLong(0);
-                cleared++;
-            }
-
-            rate.lastUpdated = now;
-            //ALLOWED?
-            if (rate.timeStamps.size() < maxRequests) {
-                for (int i = 0; i < weight; i++)
-                    rate.timeStamps.add(now);
-                //everything is fine, get out of this method
-                return true;
-            }
+        if (engine.tryAcquire(id, weight)) {
+            //everything is fine, get out of this method
+            return true;
         }
 
         //reaching this point in the code means a rate limit was hit
@@ -192,29 +151,6 @@ public class Ratelimit {
      * completely resets a limit for an id (user or guild for example)
      */
     public synchronized void liftLimit(long id) {
-        rates.invalidate(id);
-    }
-
-    class Rate {
-        //to whom this belongs
-        final long id;
-
-        //last time this object was updated
-        //useful for keeping track of how many timeStamps should be removed to ensure the limit is enforced
-        long lastUpdated;
-
-        //collects the requests
-        LongArrayList timeStamps;
-
-        private Rate(long id) {
-            this.id = id;
-            this.lastUpdated = System.currentTimeMillis();
-            this.timeStamps = new LongArrayList();
-        }
-
-        @Override
-        public int hashCode() {
-            return Long.hashCode(id);
-        }
+        engine.reset(id);
     }
 }
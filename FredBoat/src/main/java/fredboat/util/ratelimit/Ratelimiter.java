@@ -78,6 +78,7 @@ public class Ratelimiter {
             autoBlacklist = null;
         }
 
+        boolean slidingWindow = appConfig.useSlidingWindowRatelimits();
         Function<Context, String> defaultUserMessage = context -> context.i18n("ratelimitedCommandsUser");
         Function<Context, String> defaultGuildMessage = context -> context.i18n("ratelimitedCommandsGuild");
         Function<Context, String> skipMessage = context -> context.i18n("ratelimitedCommandsUser") + "\n"
@@ -87,18 +88,18 @@ public class Ratelimiter {
 
         //sort these by harsher limits coming first
         ratelimits.add(new Ratelimit("userShardsComm", cacheMetrics, executor, whitelist, Ratelimit.Scope.USER,
-                2, 30000, ShardsCommand.class, defaultUserMessage));
+                2, 30000, ShardsCommand.class, defaultUserMessage, slidingWindow));
         ratelimits.add(new Ratelimit("userSkipComm", cacheMetrics, executor, whitelist, Ratelimit.Scope.USER,
-                5, 20000, SkipCommand.class, skipMessage));
+                5, 20000, SkipCommand.class, skipMessage, slidingWindow));
         ratelimits.add(new Ratelimit("userAllComms", cacheMetrics, executor, whitelist, Ratelimit.Scope.USER,
-                5, 10000, Command.class, defaultUserMessage));
+                5, 10000, Command.class, defaultUserMessage, slidingWindow));
 
         ratelimits.add(new Ratelimit("guildWeatherComm", cacheMetrics, executor, whitelist, Ratelimit.Scope.GUILD,
-                30, 180000, WeatherCommand.class, defaultGuildMessage));
+                30, 180000, WeatherCommand.class, defaultGuildMessage, slidingWindow));
         ratelimits.add(new Ratelimit("guildSongsAdded", cacheMetrics, executor, whitelist, Ratelimit.Scope.GUILD,
-                1000, 120000, PlaylistInfo.class, playlistMessage));
+                1000, 120000, PlaylistInfo.class, playlistMessage, slidingWindow));
         ratelimits.add(new Ratelimit("guildAllComms", cacheMetrics, executor, whitelist, Ratelimit.Scope.GUILD,
-                10, 10000, Command.class, defaultGuildMessage));
+                10, 10000, Command.class, defaultGuildMessage, slidingWindow));
     }
 
     /**
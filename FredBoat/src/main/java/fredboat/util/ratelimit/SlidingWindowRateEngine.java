@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.util.ratelimit;
+
+import fredboat.feature.metrics.Metrics;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock free sliding window counter. Time is cut into fixed windows of the length of the ratelimit; the requests of an
+ * id are estimated as the count of the current window plus the count of the previous window, weighted by how much of
+ * the previous window still overlaps with the sliding window ending now.
+ * <p>
+ * The counters live in a fixed size open addressing table of primitive longs, which is allocated once. Ids claim their
+ * slot with a CAS and counts are updated with CAS loops, so there is no locking and no allocation when checking a
+ * request. Each slot has two counters, one per parity of the window epoch, and each counter is stamped with the epoch
+ * it counts. Counters with an outdated stamp are treated as zero, so nothing needs to be cleared when a window passes,
+ * and slots whose counters are all outdated are taken over by other ids.
+ * <p>
+ * Slots are looked for along a probe sequence, taking over stale slots on the way. If all slots an id may use are
+ * taken by ids with requests in the current or previous window, the request is let through: a denied request counts as
+ * a ratelimit hit, which may get the user blacklisted, and a crowded table is no fault of the user. This is counted in
+ * {@link Metrics#ratelimitTableFull}.
+ * <p>
+ * Caveat: Like the {@link TimestampRateEngine}, this allows requests to overstep the ratelimit with single high weight
+ * requests.
+ */
+public class SlidingWindowRateEngine implements RateEngine {
+
+    static final int DEFAULT_CAPACITY = 1 << 14;
+    //how many slots are looked at before giving up on finding a slot for an id
+    private static final int MAX_PROBES = 64;
+    //ids are discord snowflakes, so zero is safe to be used as the marker of a free slot
+    private static final long FREE = 0;
+
+    private final String name;
+    private final long maxRequests;
+    private final long timeSpan;
+    private final LongSupplier clock;
+    private final int mask;
+    private final AtomicLongArray ids;
+    //indexed by the parity of the epoch of the windows. each counter holds the lower 32 bits of the epoch it counts in
+    // its upper half, and the count in its lower half
+    private final AtomicLongArray[] counters = new AtomicLongArray[2];
+
+    SlidingWindowRateEngine(String name, long maxRequests, long milliseconds) {
+        this(name, maxRequests, milliseconds, DEFAULT_CAPACITY, System::currentTimeMillis);
+    }
+
+    /**
+     * @param capacity amount of ids that can be tracked at the same time, needs to be a power of two
+     * @param clock    source of the current time in milliseconds
+     */
+    public SlidingWindowRateEngine(String name, long maxRequests, long milliseconds, int capacity, LongSupplier clock) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity needs to be a power of two, but is " + capacity);
+        }
+        this.name = name;
+        this.maxRequests = maxRequests;
+        this.timeSpan = milliseconds;
+        this.clock = clock;
+        this.mask = capacity - 1;
+        this.ids = new AtomicLongArray(capacity);
+        this.counters[0] = new AtomicLongArray(capacity);
+        this.counters[1] = new AtomicLongArray(capacity);
+    }
+
+    @Override
+    public boolean tryAcquire(long id, int weight) {
+        long now = clock.getAsLong();
+        long epoch = now / timeSpan;
+
+        int slot = claim(id, epoch);
+        if (slot < 0) {
+            Metrics.ratelimitTableFull.labels(name).inc();
+            return true;
+        }
+
+        double previousWeight = 1.0 - (double) (now - epoch * timeSpan) / timeSpan;
+        double previousRequests = count(counters[index(epoch - 1)].get(slot), epoch - 1) * previousWeight;
+
+        AtomicLongArray current = counters[index(epoch)];
+        while (true) {
+            long counter = current.get(slot);
+            long count = count(counter, epoch);
+            if (previousRequests + count >= maxRequests) {
+                return false;
+            }
+            if (current.compareAndSet(slot, counter, stamp(epoch, count + weight))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void reset(long id) {
+        int slot = find(id);
+        if (slot >= 0) {
+            counters[0].set(slot, 0);
+            counters[1].set(slot, 0);
+        }
+    }
+
+    /**
+     * @return the slot of the id, taking over a free or outdated one if the id has none yet, or -1 if there is none
+     */
+    private int claim(long id, long epoch) {
+        int slot = find(id);
+        if (slot >= 0) {
+            return slot;
+        }
+        slot = (int) HashCommon.mix(id) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long slotId = ids.get(slot);
+            if (slotId == FREE || isOutdated(slot, epoch)) {
+                //another thread might claim the same slot for the same id, which is just as fine
+                if (ids.compareAndSet(slot, slotId, id) || ids.get(slot) == id) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the slot of the id, or -1 if the id has no slot
+     */
+    private int find(long id) {
+        int slot = (int) HashCommon.mix(id) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long slotId = ids.get(slot);
+            if (slotId == id) {
+                return slot;
+            }
+            if (slotId == FREE) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    //neither the current nor the previous window has requests in this slot
+    private boolean isOutdated(int slot, long epoch) {
+        return count(counters[index(epoch)].get(slot), epoch) == 0
+                && count(counters[index(epoch - 1)].get(slot), epoch - 1) == 0;
+    }
+
+    private static int index(long epoch) {
+        return (int) (epoch & 1);
+    }
+
+    private static long stamp(long epoch, long count) {
+        return (epoch << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the count of the counter, if it is stamped with the provided epoch, zero otherwise
+     */
+    private static long count(long counter, long epoch) {
+        return (int) (counter >>> 32) == (int) epoch ? counter & 0xFFFFFFFFL : 0;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.util.ratelimit;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import fredboat.util.rest.CacheUtil;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This engine uses an algorithm based on leaky bucket, but is optimized, mainly we work around having tons of threads
+ * for each bucket filling/emptying it, instead saving timestamps. As a result this works better for shorter time
+ * periods, as the amount of timestamps to hold decreases.
+ * some calculations can be found here: https://docs.google.com/spreadsheets/d/1Afdn25AsFD-v3WQGp56rfVwO1y2d105IQk3dtfTcKwA/edit#gid=0
+ * <p>
+ * Caveat: This allows requests to overstep the ratelimit with single high weight requests.
+ * The clearing of timestamps ensures it will take longer for them to get available again though.
+ */
+class TimestampRateEngine implements RateEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(TimestampRateEngine.class);
+
+    private final LoadingCache<Long, Rate> rates;
+    private final long maxRequests;
+    private final long timeSpan;
+
+    TimestampRateEngine(String name, CacheMetricsCollector cacheMetrics, long maxRequests, long milliseconds) {
+        rates = CacheBuilder.newBuilder()
+                .recordStats()
+                //we can completely forget the object after this period, the rates would be reset anyways
+                .expireAfterAccess(milliseconds, TimeUnit.MILLISECONDS)
+                .build(CacheLoader.from(Rate::new));
+        cacheMetrics.addCache(name + "Ratelimit", rates);
+        this.maxRequests = maxRequests;
+        this.timeSpan = milliseconds;
+    }
+
+    @Override
+    public boolean tryAcquire(long id, int weight) {
+        Rate rate = CacheUtil.getUncheckedUnwrapped(rates, id);
+        if (rate == null) {
+            log.warn("Shiver me timbers, cache calling new Rate({}) returned null", id);
+            return true; //not expected to happen, let it slip in a user friendly way
+        }
+
+        //synchronize on the individual rate objects since we are about to change and save them
+        // we can use these to synchronize because they are backed by a cache, subsequent calls to fetch them
+        // will return the same object
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (rate) {
+            long now = System.currentTimeMillis();
+
+            //clear outdated timestamps
+            long maxTimeStampsToClear = (now - rate.lastUpdated) * maxRequests / timeSpan;
+            long cleared = 0;
+            while (rate.timeStamps.size() > 0 && rate.timeStamps.getLong(0) + timeSpan < now && cleared < maxTimeStampsToClear) {
+                rate.timeStamps.removeLong(0);
+                cleared++;
+            }
+
+            rate.lastUpdated = now;
+            //ALLOWED?
+            if (rate.timeStamps.size() < maxRequests) {
+                for (int i = 0; i < weight; i++)
+                    rate.timeStamps.add(now);
+                //everything is fine, get out of this method
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void reset(long id) {
+        rates.invalidate(id);
+    }
+
+    private static class Rate {
+        //to whom this belongs
+        final long id;
+
+        //last time this object was updated
+        //useful for keeping track of how many timeStamps should be removed to ensure the limit is enforced
+        long lastUpdated;
+
+        //collects the requests
+        LongArrayList timeStamps;
+
+        private Rate(long id) {
+            this.id = id;
+            this.lastUpdated = System.currentTimeMillis();
+            this.timeStamps = new LongArrayList();
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+}
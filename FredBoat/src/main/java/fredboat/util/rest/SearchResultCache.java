@@ -0,0 +1,240 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package fredboat.util.rest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import fredboat.definitions.SearchProvider;
+import fredboat.feature.metrics.Metrics;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * In process (L1) cache of search results, in front of the search results stored by the
+ * {@link fredboat.db.api.SearchResultService} (L2).
+ * <p>
+ * Search results are kept as the encoded lavaplayer tracks, which is a lot more compact than the decoded tracks, and
+ * saves going to the L2 and unpacking its {@link fredboat.db.entity.cache.SearchResultCodec} payloads, which are deflate
+ * compressed when they are large, on every hit. The cache is bounded by the total size of the encoded tracks.
+ * Searches that came up empty are cached too (negative caching), but only for a short time, so that repeated searches
+ * for garbage don't hit the search providers over and over again.
+ * <p>
+ * Keys are normalized, so that searches differing only in case or whitespace share their cached result.
+ */
+@Component
+public class SearchResultCache {
+
+    private static final long MAX_WEIGHT_BYTES = 32 * 1024 * 1024;
+    private static final long NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    //rough overhead of an entry in addition to its track bytes
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AudioPlayerManager audioPlayerManager;
+    private final Cache<Key, Entry> cache;
+
+    public SearchResultCache(@Qualifier("searchAudioPlayerManager") AudioPlayerManager audioPlayerManager,
+                             CacheMetricsCollector cacheMetrics) {
+        this.audioPlayerManager = audioPlayerManager;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(MAX_WEIGHT_BYTES)
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(TrackSearcher.DEFAULT_CACHE_MAX_AGE, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        cacheMetrics.addCache("searchResultL1", cache);
+    }
+
+    /**
+     * @param maxAgeMillis the maximum age of the cached search result; provide a negative value for eternal cache
+     * @return the cached search result, which is empty if the search came up empty recently, or null if there is no
+     * cached search result of the requested maximum age
+     */
+    @Nullable
+    public AudioPlaylist get(SearchProvider provider, String searchTerm, long maxAgeMillis) {
+        Key key = new Key(provider, searchTerm);
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            Metrics.searchCacheLookups.labels("l1", "miss").inc();
+            return null;
+        }
+
+        if (isExpired(entry, maxAgeMillis)) {
+            cache.invalidate(key);
+            Metrics.searchCacheLookups.labels("l1", "miss").inc();
+            return null;
+        }
+
+        if (entry.isNegative()) {
+            Metrics.searchCacheLookups.labels("l1", "negative").inc();
+            return emptyResult(searchTerm);
+        }
+
+        Histogram.Timer timer = Metrics.searchCacheDecodeDuration.labels("l1").startTimer();
+        try {
+            List<AudioTrack> tracks = new ArrayList<>(entry.tracks.length);
+            for (byte[] encoded : entry.tracks) {
+                AudioTrack track = decodeTrack(encoded);
+                if (track != null) {
+                    tracks.add(track);
+                }
+            }
+            Metrics.searchCacheLookups.labels("l1", "hit").inc();
+            return new BasicAudioPlaylist(entry.name, tracks, null, true);
+        } finally {
+            timer.observeDuration();
+        }
+    }
+
+    /**
+     * Same as {@link #get(SearchProvider, String, long)} returning non-null, but without decoding the result or
+     * recording any lookup metrics.
+     */
+    public boolean contains(SearchProvider provider, String searchTerm, long maxAgeMillis) {
+        Entry entry = cache.getIfPresent(new Key(provider, searchTerm));
+        return entry != null && !isExpired(entry, maxAgeMillis);
+    }
+
+    private static boolean isExpired(Entry entry, long maxAgeMillis) {
+        long age = System.currentTimeMillis() - entry.timestamp;
+        long ttl = entry.isNegative() ? NEGATIVE_TTL_MILLIS : maxAgeMillis;
+        return ttl >= 0 && age > ttl;
+    }
+
+    /**
+     * Cache a non-empty search result.
+     *
+     * @param timestamp time when the search result was created
+     */
+    public void put(SearchProvider provider, String searchTerm, AudioPlaylist searchResult, long timestamp) {
+        List<byte[]> tracks = new ArrayList<>(searchResult.getTracks().size());
+        for (AudioTrack track : searchResult.getTracks()) {
+            byte[] encoded = encodeTrack(track);
+            if (encoded != null) {
+                tracks.add(encoded);
+            }
+        }
+        if (tracks.isEmpty()) {
+            return; //not worth caching
+        }
+        cache.put(new Key(provider, searchTerm),
+                new Entry(searchResult.getName(), tracks.toArray(new byte[0][]), timestamp));
+    }
+
+    /**
+     * Remember that a search came up empty.
+     */
+    public void putEmpty(SearchProvider provider, String searchTerm) {
+        cache.put(new Key(provider, searchTerm), new Entry(null, new byte[0][], System.currentTimeMillis()));
+    }
+
+    private static AudioPlaylist emptyResult(String searchTerm) {
+        return new BasicAudioPlaylist("Search result for: " + searchTerm, new ArrayList<>(), null, true);
+    }
+
+    @Nullable
+    private byte[] encodeTrack(AudioTrack track) {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            audioPlayerManager.encodeTrack(new MessageOutput(baos), track);
+            return baos.toByteArray();
+        } catch (IOException ignored) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private AudioTrack decodeTrack(byte[] encoded) {
+        try {
+            return audioPlayerManager.decodeTrack(new MessageInput(new ByteArrayInputStream(encoded))).decodedTrack;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Key {
+        private final SearchProvider provider;
+        private final String searchTerm;
+
+        private Key(SearchProvider provider, String searchTerm) {
+            this.provider = provider;
+            this.searchTerm = WHITESPACE.matcher(searchTerm.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * provider.hashCode() + searchTerm.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return provider == other.provider && searchTerm.equals(other.searchTerm);
+        }
+    }
+
+    private static class Entry {
+        @Nullable
+        private final String name; //null for negative entries
+        private final byte[][] tracks;
+        private final long timestamp;
+
+        private Entry(@Nullable String name, byte[][] tracks, long timestamp) {
+            this.name = name;
+            this.tracks = tracks;
+            this.timestamp = timestamp;
+        }
+
+        private boolean isNegative() {
+            return tracks.length == 0;
+        }
+
+        private int weight() {
+            int weight = ENTRY_OVERHEAD_BYTES + (name == null ? 0 : name.length() * 2);
+            for (byte[] track : tracks) {
+                weight += track.length;
+            }
+            return weight;
+        }
+    }
+}
@@ -39,6 +39,7 @@ import fredboat.db.entity.cache.SearchResult;
 import fredboat.definitions.SearchProvider;
 import fredboat.feature.metrics.Metrics;
 import fredboat.feature.togglz.FeatureFlags;
+import io.prometheus.client.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -47,10 +48,15 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -71,15 +77,17 @@ public class TrackSearcher {
     private final AudioPlayerManager audioPlayerManager;
     private final YoutubeAPI youtubeAPI;
     private final SearchResultService searchResultService;
+    private final SearchResultCache searchResultCache;
     private final AppConfig appConfig;
     private final ExecutorService executor;
 
     public TrackSearcher(@Qualifier("searchAudioPlayerManager") AudioPlayerManager audioPlayerManager,
-                         YoutubeAPI youtubeAPI, SearchResultService searchResultService, AppConfig appConfig,
-                         ExecutorService executor) {
+                         YoutubeAPI youtubeAPI, SearchResultService searchResultService,
+                         SearchResultCache searchResultCache, AppConfig appConfig, ExecutorService executor) {
         this.audioPlayerManager = audioPlayerManager;
         this.youtubeAPI = youtubeAPI;
         this.searchResultService = searchResultService;
+        this.searchResultCache = searchResultCache;
         this.appConfig = appConfig;
         this.executor = executor;
     }
@@ -99,6 +107,15 @@ public class TrackSearcher {
      */
     public AudioPlaylist searchForTracks(String query, long cacheMaxAge, int timeoutMillis, List<SearchProvider> providers)
             throws SearchingException {
+        return searchForTracks(query, cacheMaxAge, timeoutMillis, providers, Collections.emptyMap());
+    }
+
+    /**
+     * Same as {@link #searchForTracks(String, long, int, List)}, but the remote searches of each provider are limited
+     * by the provided permits, if there are any for that provider. Lookups in the cache don't need a permit.
+     */
+    public AudioPlaylist searchForTracks(String query, long cacheMaxAge, int timeoutMillis, List<SearchProvider> providers,
+                                         Map<SearchProvider, Semaphore> permits) throws SearchingException {
         Metrics.searchRequests.inc();
 
         List<SearchProvider> provs = new ArrayList<>();
@@ -115,52 +132,84 @@ public class TrackSearcher {
         for (SearchProvider provider : provs) {
             //1. cache
             AudioPlaylist cacheResult = fromCache(provider, query, cacheMaxAge);
-            if (cacheResult != null && !cacheResult.getTracks().isEmpty()) {
+            if (cacheResult != null) {
+                if (cacheResult.getTracks().isEmpty()) {
+                    log.debug("Search {} {} came up empty recently, skipping it", provider, query);
+                    continue;
+                }
                 log.debug("Loaded search result {} {} from cache", provider, query);
                 Metrics.searchHits.labels("cache").inc();
                 return cacheResult;
             }
 
-            //2. lavaplayer todo break up this beautiful construction of ifs and exception handling in a better readable one?
-            if (provider != SearchProvider.YOUTUBE || System.currentTimeMillis() > youtubeCooldownUntil) {
+            //remember searches that came up empty without any errors
+            boolean cameUpEmpty = false;
+            boolean failed = false;
+
+            //2. + 3. remote searches, limited by the permits of the provider, if there are any
+            Semaphore permit = permits.get(provider);
+            if (permit != null) {
                 try {
-                    AudioPlaylist lavaplayerResult = new SearchResultHandler()
-                            .searchSync(audioPlayerManager, provider, query, timeoutMillis);
-                    if (!lavaplayerResult.getTracks().isEmpty()) {
-                        log.debug("Loaded search result {} {} from lavaplayer", provider, query);
-                        // got a search result? cache and return it
-                        executor.execute(() -> searchResultService
-                                .merge(new SearchResult(audioPlayerManager, provider, query, lavaplayerResult)));
-                        Metrics.searchHits.labels("lavaplayer-" + provider.name().toLowerCase()).inc();
-                        return lavaplayerResult;
-                    }
-                } catch (Http503Exception e) {
-                    if (provider == SearchProvider.YOUTUBE) {
-                        log.warn("Got a 503 from Youtube. Not hitting it with searches it for {} minutes", TimeUnit.MILLISECONDS.toMinutes(DEFAULT_YOUTUBE_COOLDOWN));
-                        youtubeCooldownUntil = System.currentTimeMillis() + DEFAULT_YOUTUBE_COOLDOWN;
-                    }
-                    searchingException = e;
-                } catch (SearchingException e) {
-                    searchingException = e;
+                    permit.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SearchingException(String.format("Interrupted while waiting to search provider %s for %s",
+                            provider, query));
                 }
             }
+            try {
+                //2. lavaplayer todo break up this beautiful construction of ifs and exception handling in a better readable one?
+                if (provider != SearchProvider.YOUTUBE || System.currentTimeMillis() > youtubeCooldownUntil) {
+                    try {
+                        AudioPlaylist lavaplayerResult = new SearchResultHandler()
+                                .searchSync(audioPlayerManager, provider, query, timeoutMillis);
+                        if (!lavaplayerResult.getTracks().isEmpty()) {
+                            log.debug("Loaded search result {} {} from lavaplayer", provider, query);
+                            // got a search result? cache and return it
+                            executor.execute(() -> toCache(provider, query, lavaplayerResult));
+                            Metrics.searchHits.labels("lavaplayer-" + provider.name().toLowerCase()).inc();
+                            return lavaplayerResult;
+                        }
+                        cameUpEmpty = true;
+                    } catch (Http503Exception e) {
+                        if (provider == SearchProvider.YOUTUBE) {
+                            log.warn("Got a 503 from Youtube. Not hitting it with searches it for {} minutes", TimeUnit.MILLISECONDS.toMinutes(DEFAULT_YOUTUBE_COOLDOWN));
+                            youtubeCooldownUntil = System.currentTimeMillis() + DEFAULT_YOUTUBE_COOLDOWN;
+                        }
+                        searchingException = e;
+                        failed = true;
+                    } catch (SearchingException e) {
+                        searchingException = e;
+                        failed = true;
+                    }
+                }
 
-            //3. optional: youtube api
-            if (provider == SearchProvider.YOUTUBE
-                    && (appConfig.isPatronDistribution() || appConfig.isDevDistribution())) {
-                try {
-                    AudioPlaylist youtubeApiResult = youtubeAPI.search(query, MAX_RESULTS, audioPlayerManager.source(YoutubeAudioSourceManager.class));
-                    if (!youtubeApiResult.getTracks().isEmpty()) {
-                        log.debug("Loaded search result {} {} from Youtube API", provider, query);
-                        // got a search result? cache and return it
-                        executor.execute(() -> searchResultService
-                                .merge(new SearchResult(audioPlayerManager, provider, query, youtubeApiResult)));
-                        Metrics.searchHits.labels("youtube-api").inc();
-                        return youtubeApiResult;
+                //3. optional: youtube api
+                if (provider == SearchProvider.YOUTUBE
+                        && (appConfig.isPatronDistribution() || appConfig.isDevDistribution())) {
+                    try {
+                        AudioPlaylist youtubeApiResult = youtubeAPI.search(query, MAX_RESULTS, audioPlayerManager.source(YoutubeAudioSourceManager.class));
+                        if (!youtubeApiResult.getTracks().isEmpty()) {
+                            log.debug("Loaded search result {} {} from Youtube API", provider, query);
+                            // got a search result? cache and return it
+                            executor.execute(() -> toCache(provider, query, youtubeApiResult));
+                            Metrics.searchHits.labels("youtube-api").inc();
+                            return youtubeApiResult;
+                        }
+                        cameUpEmpty = true;
+                    } catch (SearchingException e) {
+                        searchingException = e;
+                        failed = true;
                     }
-                } catch (SearchingException e) {
-                    searchingException = e;
                 }
+            } finally {
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+
+            if (cameUpEmpty && !failed) {
+                searchResultCache.putEmpty(provider, query);
             }
         }
 
@@ -175,21 +224,135 @@ public class TrackSearcher {
     }
 
     /**
+     * Same as {@link #searchForTracks(String, long, int, List)}, but only looks at the local cache, so it is always fast.
+     *
+     * @return the result of the search, or null if it can't be answered by the local cache alone
+     */
+    @Nullable
+    public AudioPlaylist searchLocalCache(String query, long cacheMaxAge, List<SearchProvider> providers) {
+        for (SearchProvider provider : providers) {
+            if (!searchResultCache.contains(provider, query, cacheMaxAge)) {
+                return null;
+            }
+            AudioPlaylist cacheResult = searchResultCache.get(provider, query, cacheMaxAge);
+            if (cacheResult == null) { //expired just now
+                return null;
+            }
+            if (!cacheResult.getTracks().isEmpty()) {
+                Metrics.searchRequests.inc();
+                Metrics.searchHits.labels("cache").inc();
+                return cacheResult;
+            }
+        }
+        //all of the providers came up empty recently
+        Metrics.searchRequests.inc();
+        Metrics.searchHits.labels("empty").inc();
+        return new BasicAudioPlaylist("Search result for: " + query, Collections.emptyList(), null, true);
+    }
+
+    /**
+     * Load the search results of many queries that are not in the local cache from the database with a single request,
+     * and put them into the local cache. Useful before searching lots of queries at once, like when importing a
+     * playlist.
+     */
+    public void prefetch(Collection<String> queries, long cacheMaxAge, List<SearchProvider> providers) {
+        Set<SearchResult.SearchResultId> ids = new LinkedHashSet<>();
+        for (SearchProvider provider : providers) {
+            for (String query : queries) {
+                if (!searchResultCache.contains(provider, query, cacheMaxAge)) {
+                    ids.add(new SearchResult.SearchResultId(provider, query));
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<SearchResult> searchResults;
+        try {
+            searchResults = searchResultService.getSearchResults(ids, cacheMaxAge);
+        } catch (DatabaseNotReadyException ignored) {
+            log.warn("Could not prefetch {} cached search results from database.", ids.size());
+            return;
+        }
+
+        int hits = 0;
+        for (SearchResult searchResult : searchResults) {
+            AudioPlaylist playlist = decode(searchResult);
+            if (playlist != null) {
+                searchResultCache.put(searchResult.getProvider(), searchResult.getSearchTerm(), playlist,
+                        searchResult.getTimestamp());
+                hits++;
+            }
+        }
+        Metrics.searchCacheLookups.labels("l2", "hit").inc(hits);
+        Metrics.searchCacheLookups.labels("l2", "miss").inc(ids.size() - hits);
+        log.debug("Prefetched {} of {} search results", hits, ids.size());
+    }
+
+    /**
+     * Looks up the search result in the local cache first, then in the database.
+     *
      * @param provider   the search provider that shall be used for this search
      * @param searchTerm the searchTerm to search for
+     * @return the cached search result, which is empty if the search came up empty recently, or null if there is no
+     * cached search result
      */
     @Nullable
     private AudioPlaylist fromCache(SearchProvider provider, String searchTerm, long cacheMaxAge) {
+        AudioPlaylist localResult = searchResultCache.get(provider, searchTerm, cacheMaxAge);
+        if (localResult != null) {
+            return localResult;
+        }
+
         try {
             SearchResult.SearchResultId id = new SearchResult.SearchResultId(provider, searchTerm);
             SearchResult searchResult = searchResultService.getSearchResult(id, cacheMaxAge);
-            return searchResult != null ? searchResult.getSearchResult(audioPlayerManager) : null;
+            if (searchResult == null) {
+                Metrics.searchCacheLookups.labels("l2", "miss").inc();
+                return null;
+            }
+
+            AudioPlaylist playlist = decode(searchResult);
+            if (playlist == null) {
+                Metrics.searchCacheLookups.labels("l2", "miss").inc();
+                return null;
+            }
+            Metrics.searchCacheLookups.labels("l2", "hit").inc();
+            searchResultCache.put(provider, searchTerm, playlist, searchResult.getTimestamp());
+            return playlist;
         } catch (DatabaseNotReadyException ignored) {
             log.warn("Could not retrieve cached search result from database.");
             return null;
         }
     }
 
+    /**
+     * @return the decoded search result, or null if it could not be decoded
+     */
+    @Nullable
+    private AudioPlaylist decode(SearchResult searchResult) {
+        AudioPlaylist playlist;
+        Histogram.Timer timer = Metrics.searchCacheDecodeDuration.labels("l2").startTimer();
+        try {
+            playlist = searchResult.getSearchResult(audioPlayerManager);
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not decode cached search result {}", searchResult.getId(), e);
+            return null;
+        } finally {
+            timer.observeDuration();
+        }
+        if (playlist.getTracks().isEmpty()) { //not a negative result, the tracks could just not be decoded
+            return null;
+        }
+        return playlist;
+    }
+
+    private void toCache(SearchProvider provider, String searchTerm, AudioPlaylist searchResult) {
+        searchResultCache.put(provider, searchTerm, searchResult, System.currentTimeMillis());
+        searchResultService.merge(new SearchResult(audioPlayerManager, provider, searchTerm, searchResult));
+    }
+
     public static class SearchingException extends Exception {
         private static final long serialVersionUID = -1020150337258395420L;
 
@@ -25,12 +25,16 @@
 
 package fredboat.util.rest;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
 import fredboat.config.property.Credentials;
 import fredboat.main.BotController;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -40,7 +44,12 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class YoutubeAPI {
@@ -51,10 +60,20 @@ public class YoutubeAPI {
     public static final String YOUTUBE_VIDEO_VERBOSE = "https://www.googleapis.com/youtube/v3/videos?part=contentDetails,snippet";
     public static final String YOUTUBE_SEARCH = "https://www.googleapis.com/youtube/v3/search?part=snippet";
     public static final String YOUTUBE_CHANNEL = "https://www.googleapis.com/youtube/v3/channels?part=snippet&fields=items(snippet/thumbnails)";
-    private final Credentials credentials;
+    //the videos endpoint accepts at most this many comma separated ids
+    private static final int MAX_IDS_PER_REQUEST = 50;
 
-    public YoutubeAPI(Credentials credentials) {
+    private final Credentials credentials;
+    //verbose video details by video id
+    private final Cache<String, YoutubeVideo> videos = CacheBuilder.newBuilder()
+            .recordStats()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .maximumSize(10000)
+            .build();
+
+    public YoutubeAPI(Credentials credentials, CacheMetricsCollector cacheMetrics) {
         this.credentials = credentials;
+        cacheMetrics.addCache("youtubeVideos", videos);
     }
 
     private YoutubeVideo getVideoFromID(String id) {
@@ -80,44 +99,98 @@ public class YoutubeAPI {
         }
     }
 
+    /**
+     * @param verbose whether all fields of the video are needed, or just the id, name and duration. Cached videos are
+     *                always verbose.
+     */
     public YoutubeVideo getVideoFromID(String id, boolean verbose) {
-        if(verbose){
-            String gkey = credentials.getRandomGoogleKey();
-            Http.SimpleRequest request = BotController.HTTP.get(YOUTUBE_VIDEO_VERBOSE, Http.Params.of(
-                    "id", id,
-                    "key", gkey
-            ));
-
-            JSONObject data = null;
-            try {
-                data = request.asJson();
-                YoutubeVideo vid = new YoutubeVideo(credentials);
-                vid.id = data.getJSONArray("items").getJSONObject(0).getString("id");
-                vid.name = data.getJSONArray("items").getJSONObject(0).getJSONObject("snippet").getString("title");
-                vid.duration = data.getJSONArray("items").getJSONObject(0).getJSONObject("contentDetails").getString("duration");
-                vid.description = data.getJSONArray("items").getJSONObject(0).getJSONObject("snippet").getString("description");
-                vid.channelId = data.getJSONArray("items").getJSONObject(0).getJSONObject("snippet").getString("channelId");
-                vid.channelTitle = data.getJSONArray("items").getJSONObject(0).getJSONObject("snippet").getString("channelTitle");
-                vid.isStream = !data.getJSONArray("items").getJSONObject(0).getJSONObject("snippet").getString("liveBroadcastContent").equals("none");
-
-                return vid;
-            } catch (JSONException ex) {
-                log.error(data != null ? data.toString() : null);
-
-                log.error("API key used ends with: " + gkey.substring(20));
-
-                throw ex;
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
+        YoutubeVideo cached = videos.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        if (verbose) {
+            List<YoutubeVideo> result = getVideosFromIds(Collections.singletonList(id));
+            if (result.isEmpty()) {
+                throw new JSONException("No youtube video found for id " + id);
             }
+            return result.get(0);
         } else {
             return getVideoFromID(id);
         }
     }
 
+    /**
+     * Look up the verbose details of several videos with as few requests as possible. Videos that are cached already
+     * are not requested again.
+     *
+     * @return the videos in the order of the requested ids. Videos that don't exist (anymore) are left out.
+     */
+    public List<YoutubeVideo> getVideosFromIds(Collection<String> ids) {
+        Map<String, YoutubeVideo> found = new HashMap<>(videos.getAllPresent(ids));
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            if (!found.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+
+        for (List<String> batch : Lists.partition(missing, MAX_IDS_PER_REQUEST)) {
+            for (YoutubeVideo vid : fetchVerbose(batch)) {
+                videos.put(vid.id, vid);
+                found.put(vid.id, vid);
+            }
+        }
+
+        List<YoutubeVideo> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            YoutubeVideo vid = found.get(id);
+            if (vid != null) {
+                result.add(vid);
+            }
+        }
+        return result;
+    }
+
+    private List<YoutubeVideo> fetchVerbose(List<String> ids) {
+        String gkey = credentials.getRandomGoogleKey();
+        Http.SimpleRequest request = BotController.HTTP.get(YOUTUBE_VIDEO_VERBOSE, Http.Params.of(
+                "id", String.join(",", ids),
+                "key", gkey
+        ));
+
+        JSONObject data = null;
+        try {
+            data = request.asJson();
+            JSONArray items = data.getJSONArray("items");
+            List<YoutubeVideo> result = new ArrayList<>(items.length());
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.getJSONObject(i);
+                JSONObject snippet = item.getJSONObject("snippet");
+                YoutubeVideo vid = new YoutubeVideo(credentials);
+                vid.id = item.getString("id");
+                vid.name = snippet.getString("title");
+                vid.duration = item.getJSONObject("contentDetails").getString("duration");
+                vid.description = snippet.getString("description");
+                vid.channelId = snippet.getString("channelId");
+                vid.channelTitle = snippet.getString("channelTitle");
+                vid.isStream = !snippet.getString("liveBroadcastContent").equals("none");
+                result.add(vid);
+            }
+            return result;
+        } catch (JSONException ex) {
+            log.error(data != null ? data.toString() : null);
+
+            log.error("API key used ends with: " + gkey.substring(20));
+
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * @param query         Search Youtube for this query
-     * @param maxResults    Keep this as small as necessary, each of the videos needs to be looked up for more detailed info
+     * @param maxResults    Keep this as small as necessary, the videos need to be looked up for more detailed info
      * @param sourceManager The source manager may be used by the tracks to look further information up
      * @return A playlist representing the search results; null if there was an exception
      */
@@ -141,7 +214,7 @@ public class YoutubeAPI {
         }
 
         //The search contains all values we need, except for the duration :feelsbadman:
-        //so we need to do another query for each video.
+        //so we need to do another query for the videos.
         List<String> ids = new ArrayList<>(maxResults);
         try {
             JSONArray items = data.getJSONArray("items");
@@ -155,14 +228,15 @@ public class YoutubeAPI {
             throw new TrackSearcher.SearchingException(message, e);
         }
 
-        List<AudioTrack> tracks = new ArrayList<>();
-        for (String id : ids) {
-            try {
-                YoutubeVideo vid = getVideoFromID(id, true);
-                tracks.add(sourceManager.buildTrackObject(id, vid.name, vid.channelTitle, vid.isStream, vid.getDurationInMillis()));
-            } catch (RuntimeException e) {
-                throw new TrackSearcher.SearchingException("Could not look up details for youtube video with id " + id, e);
-            }
+        List<YoutubeVideo> results;
+        try {
+            results = getVideosFromIds(ids);
+        } catch (RuntimeException e) {
+            throw new TrackSearcher.SearchingException("Could not look up details for youtube videos with ids " + ids, e);
+        }
+        List<AudioTrack> tracks = new ArrayList<>(results.size());
+        for (YoutubeVideo vid : results) {
+            tracks.add(sourceManager.buildTrackObject(vid.id, vid.name, vid.channelTitle, vid.isStream, vid.getDurationInMillis()));
         }
         return new BasicAudioPlaylist("Search results for: " + query, tracks, null, true);
     }
@@ -112,6 +112,61 @@ public class MockConfig implements AppConfig, AudioSourcesConfig, Credentials, E
         return -1;
     }
 
+    @Override
+    public int getGuildLoadingConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public int getGlobalLoadingConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public boolean useSlidingWindowRatelimits() {
+        return true;
+    }
+
+    @Override
+    public int getPlaylistSearchConcurrency() {
+        return 1;
+    }
+
+    @Override
+    public int getExecutorThreads() {
+        return 4;
+    }
+
+    @Override
+    public int getExecutorQueueSize() {
+        return 100;
+    }
+
+    @Override
+    public boolean useVirtualThreads() {
+        return false;
+    }
+
+    @Override
+    public boolean useAsyncCommands() {
+        return false;
+    }
+
+    @Override
+    public long getMetricsSnapshotMillis() {
+        return 0;
+    }
+
+    @Override
+    public int getStatsSnapshotSeconds() {
+        return 10;
+    }
+
+    @Override
+    public boolean useExactUserCount() {
+        return false;
+    }
+
     @Override
     public boolean isYouTubeEnabled() {
         return false;
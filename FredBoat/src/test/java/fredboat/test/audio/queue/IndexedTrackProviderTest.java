@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package fredboat.test.audio.queue;
+
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import fredboat.audio.queue.AudioTrackContext;
+import fredboat.audio.queue.IndexedTrackProvider;
+import fredboat.audio.queue.RepeatMode;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+class IndexedTrackProviderTest extends BaseTest {
+
+    private static final long GUILD_ID = 174820236481134592L;
+    private static final long USER_ID = 81011298891993088L;
+
+    @Test
+    void regularOrder() {
+        IndexedTrackProvider provider = new IndexedTrackProvider();
+        List<AudioTrackContext> tracks = tracks(50);
+        provider.addAll(tracks);
+
+        Assertions.assertEquals(50, provider.size());
+        Assertions.assertIterableEquals(tracks, provider.getAsList());
+        Assertions.assertIterableEquals(tracks, provider.getAsListOrdered());
+        Assertions.assertSame(tracks.get(17), provider.getTrack(17));
+        Assertions.assertIterableEquals(tracks.subList(10, 20), provider.getTracksInRange(20, 10));
+        Assertions.assertIterableEquals(tracks.subList(45, 50), provider.getTracksInRange(45, 100));
+
+        for (AudioTrackContext expected : tracks) {
+            Assertions.assertSame(expected, provider.peek());
+            Assertions.assertSame(expected, provider.provideAudioTrack());
+        }
+        Assertions.assertTrue(provider.isEmpty());
+        Assertions.assertNull(provider.provideAudioTrack());
+    }
+
+    @Test
+    void shuffledOrder() {
+        IndexedTrackProvider provider = new IndexedTrackProvider();
+        List<AudioTrackContext> tracks = tracks(50);
+        provider.addAll(tracks);
+        provider.setShuffle(true);
+
+        List<AudioTrackContext> shuffled = new ArrayList<>(tracks);
+        shuffled.sort(Comparator.naturalOrder());
+        Assertions.assertIterableEquals(shuffled, provider.getAsListOrdered());
+        Assertions.assertIterableEquals(tracks, provider.getAsList());
+
+        provider.reshuffle();
+        shuffled.sort(Comparator.naturalOrder());
+        Assertions.assertIterableEquals(shuffled, provider.getAsListOrdered());
+        Assertions.assertSame(shuffled.get(0), provider.provideAudioTrack());
+        Assertions.assertSame(shuffled.get(1), provider.getTrack(0));
+    }
+
+    @Test
+    void removeById() {
+        IndexedTrackProvider provider = new IndexedTrackProvider();
+        List<AudioTrackContext> tracks = tracks(10);
+        provider.addAll(tracks);
+
+        provider.removeAllById(Arrays.asList(tracks.get(3).getTrackId(), tracks.get(7).getTrackId(), -1L));
+        Assertions.assertEquals(8, provider.size());
+        Assertions.assertFalse(provider.getAsList().contains(tracks.get(3)));
+        Assertions.assertFalse(provider.getAsList().contains(tracks.get(7)));
+        Assertions.assertTrue(provider.remove(tracks.get(0)));
+        Assertions.assertFalse(provider.remove(tracks.get(0)));
+        Assertions.assertSame(tracks.get(1), provider.peek());
+    }
+
+    @Test
+    void repeatAllShuffled() {
+        IndexedTrackProvider provider = new IndexedTrackProvider();
+        provider.addAll(tracks(3));
+        provider.setShuffle(true);
+        provider.setRepeatMode(RepeatMode.ALL);
+
+        AudioTrackContext first = provider.provideAudioTrack();
+        Assertions.assertNotNull(first);
+        provider.provideAudioTrack();
+        Assertions.assertEquals(2, provider.size());
+        //the clone of the first track goes to the back of the shuffled queue
+        AudioTrackContext last = provider.getTrack(1);
+        Assertions.assertSame(first.getTrack().getInfo(), last.getTrack().getInfo());
+        Assertions.assertNotEquals(first.getTrackId(), last.getTrackId());
+
+        Assertions.assertTrue(provider.isUserTrackOwner(USER_ID, Collections.singletonList(last.getTrackId())));
+        Assertions.assertFalse(provider.isUserTrackOwner(USER_ID + 1, Collections.singletonList(last.getTrackId())));
+    }
+
+    @Test
+    void aggregates() {
+        IndexedTrackProvider provider = new IndexedTrackProvider();
+        List<AudioTrackContext> tracks = tracks(10);
+        AudioTrackInfo streamInfo = new AudioTrackInfo("Stream", "Test", Long.MAX_VALUE, "stream", true, "stream");
+        AudioTrackContext stream = new TestTrackContext(new YoutubeAudioTrack(streamInfo, null), USER_ID + 1);
+        provider.addAll(tracks);
+        provider.add(stream);
+
+        Assertions.assertEquals(10_000, provider.getDurationMillis());
+        Assertions.assertEquals(1, provider.streamsCount());
+        Assertions.assertEquals(10, provider.userTracksCount(USER_ID));
+        Assertions.assertEquals(1, provider.userTracksCount(USER_ID + 1));
+        Assertions.assertFalse(provider.isUserTrackOwner(USER_ID, Collections.singletonList(stream.getTrackId())));
+
+        //adding the same context again must not count it twice
+        provider.add(tracks.get(0));
+        provider.remove(stream);
+        provider.provideAudioTrack();
+        Assertions.assertEquals(9_000, provider.getDurationMillis());
+        Assertions.assertEquals(0, provider.streamsCount());
+        Assertions.assertEquals(9, provider.userTracksCount(USER_ID));
+        Assertions.assertEquals(0, provider.userTracksCount(USER_ID + 1));
+        Assertions.assertTrue(provider.isUserTrackOwner(USER_ID, Collections.singletonList(tracks.get(5).getTrackId())));
+
+        provider.clear();
+        Assertions.assertEquals(0, provider.getDurationMillis());
+        Assertions.assertEquals(0, provider.userTracksCount(USER_ID));
+    }
+
+    private static List<AudioTrackContext> tracks(int amount) {
+        List<AudioTrackContext> result = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            AudioTrackInfo info = new AudioTrackInfo("Track " + i, "Test", 1000, "id" + i, false, "id" + i);
+            result.add(new TestTrackContext(new YoutubeAudioTrack(info, null), USER_ID));
+        }
+        return result;
+    }
+
+    private static class TestTrackContext extends AudioTrackContext {
+        private TestTrackContext(YoutubeAudioTrack track, long userId) {
+            super(null, track, GUILD_ID, userId);
+        }
+
+        @Override
+        public AudioTrackContext makeClone() {
+            return new TestTrackContext((YoutubeAudioTrack) track.makeClone(), getUserId());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.audio.queue;
+
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import fredboat.audio.queue.AudioTrackContext;
+import fredboat.audio.queue.IndexedTrackProvider;
+import fredboat.audio.queue.StreamingPlaylistFeed;
+import fredboat.audio.source.StreamingAudioPlaylist;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+class StreamingPlaylistFeedTest extends BaseTest {
+
+    private static final int ENTRIES = 6;
+
+    private List<CompletableFuture<List<AudioTrack>>> entries;
+    private StreamingAudioPlaylist playlist;
+    private IndexedTrackProvider trackProvider;
+    private StreamingPlaylistFeed feed;
+    private List<Integer> chunksAdded;
+
+    @BeforeEach
+    void setUp() {
+        entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            entries.add(new CompletableFuture<>());
+        }
+        playlist = new StreamingAudioPlaylist("test", entries, new AtomicBoolean(false));
+        trackProvider = new IndexedTrackProvider();
+        feed = new StreamingPlaylistFeed(playlist, trackProvider, at -> new AudioTrackContext(null, at, 1L, 2L));
+        chunksAdded = new ArrayList<>();
+    }
+
+    @Test
+    void addsChunksInPlaylistOrder() {
+        resolve(0);
+        resolve(1);
+        //the chunks are added right on the resolving threads
+        CompletableFuture<Integer> done = feed.start(Runnable::run, chunksAdded::add);
+        Assertions.assertEquals(Collections.singletonList(2), chunksAdded);
+        Assertions.assertEquals(titles(0, 1), queuedTitles());
+
+        //entries that resolve out of order wait for the ones before them
+        resolve(3);
+        Assertions.assertEquals(titles(0, 1), queuedTitles());
+        resolve(2);
+        Assertions.assertEquals(titles(0, 1, 2, 3), queuedTitles());
+        Assertions.assertEquals(2, chunksAdded.size());
+
+        //entries that can't be found are skipped
+        entries.get(4).completeExceptionally(new IllegalStateException("not found"));
+        Assertions.assertFalse(done.isDone());
+        resolve(5);
+        Assertions.assertEquals(titles(0, 1, 2, 3, 5), queuedTitles());
+        Assertions.assertTrue(done.isDone());
+        Assertions.assertEquals(5, (int) done.join());
+    }
+
+    @Test
+    void nothingIsAddedAfterCancel() {
+        CompletableFuture<Integer> done = feed.start(Runnable::run, chunksAdded::add);
+        resolve(0);
+        Assertions.assertEquals(titles(0), queuedTitles());
+
+        //resolved, but held back by the unresolved entry before it
+        resolve(2);
+        feed.cancel();
+        Assertions.assertTrue(playlist.isCancelled());
+        Assertions.assertTrue(entries.get(1).isCancelled());
+        Assertions.assertTrue(done.isDone());
+        Assertions.assertEquals(1, (int) done.join());
+
+        resolve(1);
+        resolve(3);
+        Assertions.assertEquals(titles(0), queuedTitles());
+        Assertions.assertEquals(Collections.singletonList(1), chunksAdded);
+    }
+
+    @Test
+    void cancelBeforeStart() {
+        resolve(0);
+        feed.cancel();
+        CompletableFuture<Integer> done = feed.start(Runnable::run, chunksAdded::add);
+        Assertions.assertTrue(done.isDone());
+        Assertions.assertEquals(0, (int) done.join());
+        Assertions.assertTrue(trackProvider.isEmpty());
+        Assertions.assertTrue(chunksAdded.isEmpty());
+    }
+
+    private void resolve(int entry) {
+        AudioTrackInfo info = new AudioTrackInfo(title(entry), "Test", 1000, "id" + entry, false, "id" + entry);
+        entries.get(entry).complete(Collections.singletonList(new YoutubeAudioTrack(info, null)));
+    }
+
+    private List<String> queuedTitles() {
+        return trackProvider.getAsList().stream()
+                .map(atc -> atc.getTrack().getInfo().title)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> titles(int... entries) {
+        List<String> result = new ArrayList<>();
+        for (int entry : entries) {
+            result.add(title(entry));
+        }
+        return result;
+    }
+
+    private static String title(int entry) {
+        return "Track " + entry;
+    }
+}
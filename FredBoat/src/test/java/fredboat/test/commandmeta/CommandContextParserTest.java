@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.commandmeta;
+
+import fredboat.commandmeta.CommandContextParser;
+import fredboat.commandmeta.CommandContextParser.Invocation;
+import fredboat.commandmeta.CommandRegistry;
+import fredboat.commandmeta.abs.Command;
+import fredboat.commandmeta.abs.CommandContext;
+import fredboat.definitions.Module;
+import fredboat.messaging.internal.Context;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+
+class CommandContextParserTest extends BaseTest {
+
+    private static final long SELF_ID = 184405311681986560L;
+    private static final String DEFAULT_PREFIX = ";;";
+
+    private static Command play;
+    private static Command help;
+    private static Command prefix;
+
+    @BeforeAll
+    static void registerCommands() {
+        play = new TestCommand("play", "p");
+        help = new TestCommand("help", "info");
+        prefix = new TestCommand("prefix", "pre");
+        new CommandRegistry(Module.MUSIC).registerCommand(play);
+        new CommandRegistry(Module.INFO).registerCommand(help);
+        new CommandRegistry(Module.CONFIG).registerCommand(prefix);
+        CommandRegistry.buildTriggerIndex();
+    }
+
+    @Test
+    void defaultPrefix() {
+        Invocation invocation = parse(";;play never gonna give you up");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertFalse(invocation.isMention);
+        Assertions.assertSame(play, invocation.command);
+        Assertions.assertEquals("play", invocation.trigger);
+        Assertions.assertArrayEquals(new String[]{"never", "gonna", "give", "you", "up"}, invocation.args);
+        Assertions.assertEquals("never gonna give you up", invocation.rawArgs);
+    }
+
+    @Test
+    void triggerIsCaseInsensitive() {
+        Invocation invocation = parse(";;P song");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertSame(play, invocation.command);
+        Assertions.assertEquals("P", invocation.trigger);
+    }
+
+    @Test
+    void mentionPrefix() {
+        for (String mention : new String[]{"<@" + SELF_ID + ">", "<@!" + SELF_ID + ">"}) {
+            Invocation invocation = parse(mention + " play song");
+            Assertions.assertNotNull(invocation, mention);
+            Assertions.assertTrue(invocation.isMention);
+            Assertions.assertSame(play, invocation.command);
+            Assertions.assertArrayEquals(new String[]{"song"}, invocation.args);
+        }
+        //mentions of other users, broken and oversized mentions are no prefix
+        Assertions.assertNull(parse("<@81011298891993088> play song"));
+        Assertions.assertNull(parse("<@" + SELF_ID + " play song"));
+        Assertions.assertNull(parse("<@> play song"));
+        Assertions.assertNull(parse("<@12345678901234567890123> play song"));
+    }
+
+    @Test
+    void mentionOnlyTriggersThePrefixCommand() {
+        Invocation invocation = parse("<@" + SELF_ID + ">   ");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertTrue(invocation.isMention);
+        Assertions.assertSame(prefix, invocation.command);
+        Assertions.assertEquals(0, invocation.args.length);
+        Assertions.assertEquals("", invocation.rawArgs);
+    }
+
+    @Test
+    void customPrefix() {
+        Invocation invocation = CommandContextParser.parse("!play song", SELF_ID, "!", DEFAULT_PREFIX);
+        Assertions.assertNotNull(invocation);
+        Assertions.assertSame(play, invocation.command);
+
+        //the default prefix only works for the help and prefix commands when a custom prefix is set
+        Assertions.assertNull(CommandContextParser.parse(";;play song", SELF_ID, "!", DEFAULT_PREFIX));
+        invocation = CommandContextParser.parse(";;help", SELF_ID, "!", DEFAULT_PREFIX);
+        Assertions.assertNotNull(invocation);
+        Assertions.assertSame(help, invocation.command);
+        invocation = CommandContextParser.parse(";;prefix", SELF_ID, "!", DEFAULT_PREFIX);
+        Assertions.assertNotNull(invocation);
+        Assertions.assertSame(prefix, invocation.command);
+    }
+
+    @Test
+    void whitespace() {
+        //line breaks, tabs, repeated and unicode spaces (no-break, ideographic) separate arguments too
+        Invocation invocation = parse(";;  play a\t\tb\u00a0\u3000 c\nd  ");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertSame(play, invocation.command);
+        Assertions.assertArrayEquals(new String[]{"a", "b", "c", "d"}, invocation.args);
+        Assertions.assertEquals("a\t\tb\u00a0\u3000 c\nd", invocation.rawArgs);
+
+        invocation = parse(";;play ¯\\_(ツ)_/¯ 日本語");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertArrayEquals(new String[]{"¯\\_(ツ)_/¯", "日本語"}, invocation.args);
+    }
+
+    @Test
+    void emptyArgs() {
+        Invocation invocation = parse(";;play");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertEquals(0, invocation.args.length);
+        Assertions.assertEquals("", invocation.rawArgs);
+
+        invocation = parse(";;play   ");
+        Assertions.assertNotNull(invocation);
+        Assertions.assertEquals(0, invocation.args.length);
+        Assertions.assertEquals("", invocation.rawArgs);
+    }
+
+    @Test
+    void noCommand() {
+        Assertions.assertNull(parse(";;"));
+        Assertions.assertNull(parse(";;   "));
+        Assertions.assertNull(parse(";;unknown command"));
+        Assertions.assertNull(parse("play song"));
+        Assertions.assertNull(parse(""));
+    }
+
+    private static Invocation parse(String raw) {
+        return CommandContextParser.parse(raw, SELF_ID, DEFAULT_PREFIX, DEFAULT_PREFIX);
+    }
+
+    private static class TestCommand extends Command {
+        private TestCommand(String name, String... aliases) {
+            super(name, aliases);
+        }
+
+        @Override
+        public void onInvoke(@Nonnull CommandContext context) {
+        }
+
+        @Nonnull
+        @Override
+        public String help(@Nonnull Context context) {
+            return "";
+        }
+    }
+}
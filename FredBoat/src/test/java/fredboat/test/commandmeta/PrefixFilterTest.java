@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.commandmeta;
+
+import fredboat.commandmeta.PrefixFilter;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class PrefixFilterTest extends BaseTest {
+
+    private static final String DEFAULT_PREFIX = ";;";
+    private static final long GUILD = 174820236481134592L;
+
+    private final PrefixFilter filter = new PrefixFilter();
+
+    @Test
+    void unknownGuildsAreNeverRejected() {
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "hello there", DEFAULT_PREFIX));
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "!play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "", DEFAULT_PREFIX), "Empty messages are never commands");
+    }
+
+    @Test
+    void defaultPrefix() {
+        filter.put(GUILD, Optional.empty(), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, ";;play never gonna give you up", DEFAULT_PREFIX));
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "<@184405253028970496> play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "hello there", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "!play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void customPrefix() {
+        filter.put(GUILD, Optional.of("!"), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "!play", DEFAULT_PREFIX));
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, ";;prefix", DEFAULT_PREFIX),
+                "The default prefix is always accepted for the help and prefix commands");
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "<@184405253028970496> prefix", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void multiCharacterAndUnicodePrefixes() {
+        filter.put(GUILD, Optional.of("fb!"), DEFAULT_PREFIX);
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "fb!play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "play", DEFAULT_PREFIX));
+
+        //a musical note, which is a surrogate pair
+        filter.put(GUILD, Optional.of("\ud83c\udfb5"), DEFAULT_PREFIX);
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "\ud83c\udfb5play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "fb!play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void emptyPrefixAcceptsAnything() {
+        filter.put(GUILD, Optional.of(""), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "play", DEFAULT_PREFIX));
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "?anything", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void removedGuildIsUnknownAgain() {
+        filter.put(GUILD, Optional.of("!"), DEFAULT_PREFIX);
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+
+        filter.remove(GUILD);
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void finishedLoadPutsItsPrefix() {
+        long load = filter.beginLoad(GUILD);
+        filter.finishLoad(GUILD, load, Optional.of("!"), DEFAULT_PREFIX);
+
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void loadCancelledByARemovalDoesNotPutItsPrefix() {
+        filter.put(GUILD, Optional.of("!"), DEFAULT_PREFIX);
+        long load = filter.beginLoad(GUILD);
+        //the prefix is changed to ? while the old one is being loaded
+        filter.remove(GUILD);
+        filter.finishLoad(GUILD, load, Optional.of("!"), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX), "The outdated prefix is not put back");
+    }
+
+    @Test
+    void onlyTheLatestLoadPutsItsPrefix() {
+        long outdated = filter.beginLoad(GUILD);
+        long latest = filter.beginLoad(GUILD);
+        filter.finishLoad(GUILD, latest, Optional.of("?"), DEFAULT_PREFIX);
+        filter.finishLoad(GUILD, outdated, Optional.of("!"), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+        Assertions.assertFalse(filter.mayBeCommand(GUILD, "!play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void abortedLoadLeavesTheGuildUnknown() {
+        long load = filter.beginLoad(GUILD);
+        filter.abortLoad(GUILD, load);
+        filter.finishLoad(GUILD, load, Optional.of("!"), DEFAULT_PREFIX);
+
+        Assertions.assertTrue(filter.mayBeCommand(GUILD, "?play", DEFAULT_PREFIX));
+    }
+
+    @Test
+    void guildsDoNotShareTheirPrefixes() {
+        for (int i = 0; i < 1000; i++) {
+            filter.put(GUILD + i, Optional.of(String.valueOf((char) ('a' + i % 26))), DEFAULT_PREFIX);
+        }
+        for (int i = 0; i < 1000; i++) {
+            char prefix = (char) ('a' + i % 26);
+            char other = (char) ('a' + (i + 1) % 26);
+            Assertions.assertTrue(filter.mayBeCommand(GUILD + i, prefix + "play", DEFAULT_PREFIX));
+            Assertions.assertFalse(filter.mayBeCommand(GUILD + i, other + "play", DEFAULT_PREFIX));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.db;
+
+import fredboat.db.repositories.impl.rest.BackendException;
+import fredboat.db.repositories.impl.rest.FetchBatcher;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+class FetchBatcherTest extends BaseTest {
+
+    //runs the bulk fetches on the thread that hands over the batch
+    private static final Executor DIRECT = Runnable::run;
+    //long enough to never be reached, so only full batches are dispatched
+    private static final long NEVER = 60_000;
+
+    private final List<List<Long>> requests = new ArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdownTimer() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void fullBatchIsFetchedAtOnce() {
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(recording(this::names), DIRECT, timer, NEVER, 3);
+        CompletableFuture<String> first = batcher.fetchAsync(1L);
+        CompletableFuture<String> second = batcher.fetchAsync(2L);
+        Assertions.assertSame(first, batcher.fetchAsync(1L), "Fetches of the same id are collapsed");
+        Assertions.assertTrue(requests.isEmpty());
+
+        CompletableFuture<String> third = batcher.fetchAsync(3L);
+        Assertions.assertEquals(List.of(List.of(1L, 2L, 3L)), requests);
+        Assertions.assertEquals("1", first.join());
+        Assertions.assertEquals("2", second.join());
+        Assertions.assertEquals("3", third.join());
+    }
+
+    @Test
+    void batchIsFetchedAfterItsDelay() {
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(recording(this::names), DIRECT, timer, 10, 100);
+        Assertions.assertEquals("42", batcher.fetch(42L));
+        Assertions.assertEquals(List.of(List.of(42L)), requests);
+    }
+
+    @Test
+    void entitiesAreHandedToTheirFetches() {
+        //the backend knows only even ids
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(ids -> {
+            Map<Long, String> result = names(ids);
+            result.keySet().removeIf(id -> id % 2 != 0);
+            return result;
+        }, DIRECT, timer, NEVER, 2);
+        CompletableFuture<String> missing = batcher.fetchAsync(1L);
+        CompletableFuture<String> found = batcher.fetchAsync(2L);
+
+        Assertions.assertEquals("2", found.join());
+        CompletionException thrown = Assertions.assertThrows(CompletionException.class, missing::join);
+        Assertions.assertTrue(thrown.getCause() instanceof BackendException);
+    }
+
+    @Test
+    void failureIsPassedToAllFetches() {
+        RuntimeException failure = new IllegalStateException("backend is down");
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(recording(ids -> {
+            if (requests.size() == 1) {
+                throw failure;
+            }
+            return names(ids);
+        }), DIRECT, timer, NEVER, 2);
+        CompletableFuture<String> first = batcher.fetchAsync(1L);
+        CompletableFuture<String> second = batcher.fetchAsync(2L);
+
+        Assertions.assertSame(failure, Assertions.assertThrows(CompletionException.class, first::join).getCause());
+        Assertions.assertSame(failure, Assertions.assertThrows(CompletionException.class, second::join).getCause());
+
+        //failed ids are not stuck in flight
+        CompletableFuture<String> retry = batcher.fetchAsync(1L);
+        batcher.fetchAsync(3L);
+        Assertions.assertEquals("1", retry.join());
+    }
+
+    @Test
+    void errorsCompleteAllFetches() {
+        Error failure = new AssertionError("out of something");
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(ids -> {
+            throw failure;
+        }, DIRECT, timer, NEVER, 2);
+        CompletableFuture<String> first = batcher.fetchAsync(1L);
+
+        Assertions.assertSame(failure, Assertions.assertThrows(Error.class, () -> batcher.fetchAsync(2L)));
+        Assertions.assertSame(failure, Assertions.assertThrows(CompletionException.class, first::join).getCause());
+    }
+
+    @Test
+    void rejectedBatchFailsItsFetches() {
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(this::names, runnable -> {
+            throw new RejectedExecutionException("shutting down");
+        }, timer, NEVER, 1);
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> batcher.fetch(1L));
+    }
+
+    @Test
+    void batchIsFetchedRightAwayWhenTheTimerIsShutDown() {
+        timer.shutdown();
+        FetchBatcher<Long, String> batcher = new FetchBatcher<>(recording(this::names), DIRECT, timer, NEVER, 100);
+        Assertions.assertEquals("42", batcher.fetch(42L));
+        Assertions.assertEquals(List.of(List.of(42L)), requests);
+    }
+
+    private Function<Collection<Long>, Map<Long, String>> recording(Function<Collection<Long>, Map<Long, String>> bulkFetch) {
+        return ids -> {
+            requests.add(new ArrayList<>(ids));
+            return bulkFetch.apply(ids);
+        };
+    }
+
+    private Map<Long, String> names(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        for (Long id : ids) {
+            result.put(id, Long.toString(id));
+        }
+        return result;
+    }
+}
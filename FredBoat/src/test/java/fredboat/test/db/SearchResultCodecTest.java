@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.db;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import fredboat.db.entity.cache.SearchResult;
+import fredboat.db.entity.cache.SearchResultCodec;
+import fredboat.test.BaseTest;
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class SearchResultCodecTest extends BaseTest {
+
+    private AudioPlayerManager playerManager;
+    private YoutubeAudioSourceManager youtube;
+
+    @BeforeEach
+    void setUp() {
+        playerManager = new DefaultAudioPlayerManager();
+        youtube = new YoutubeAudioSourceManager();
+        playerManager.registerSourceManager(youtube);
+    }
+
+    @AfterEach
+    void tearDown() {
+        playerManager.shutdown();
+    }
+
+    @Test
+    void uncompressedRoundTrip() {
+        AudioPlaylist original = playlist(3, "Search results for: never gonna give you up", true);
+        byte[] payload = SearchResultCodec.encode(serializable(original), false);
+
+        Assertions.assertTrue(SearchResultCodec.isCurrentFormat(payload));
+        Assertions.assertEquals(0, payload[1], "Payload is not compressed");
+        assertSamePlaylist(original, decode(payload));
+    }
+
+    @Test
+    void compressedRoundTrip() {
+        AudioPlaylist original = playlist(25, "Search results for: never gonna give you up", true);
+        byte[] uncompressed = SearchResultCodec.encode(serializable(original), false);
+        byte[] payload = SearchResultCodec.encode(serializable(original), true);
+
+        Assertions.assertNotEquals(0, payload[1], "Payload is compressed");
+        Assertions.assertTrue(payload.length < uncompressed.length);
+        assertSamePlaylist(original, decode(payload));
+    }
+
+    @Test
+    void roundTripWithoutNameAndWithSelectedTrack() {
+        List<AudioTrack> tracks = playlist(2, null, false).getTracks();
+        AudioPlaylist original = new BasicAudioPlaylist(null, tracks, tracks.get(1), false);
+
+        assertSamePlaylist(original, decode(SearchResultCodec.encode(serializable(original), true)));
+    }
+
+    @Test
+    void legacyJavaSerializationIsDecoded() {
+        AudioPlaylist original = playlist(5, "Search results for: rick astley", true);
+        byte[] legacy = SerializationUtils.serialize(serializable(original));
+
+        Assertions.assertFalse(SearchResultCodec.isCurrentFormat(legacy));
+        assertSamePlaylist(original, decode(legacy));
+
+        byte[] reencoded = SearchResultCodec.reencode(legacy);
+        Assertions.assertTrue(SearchResultCodec.isCurrentFormat(reencoded));
+        assertSamePlaylist(original, decode(reencoded));
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        for (boolean compress : new boolean[]{false, true}) {
+            byte[] payload = SearchResultCodec.encode(serializable(playlist(25, "truncated", true)), compress);
+            for (int length : new int[]{0, 1, 2, 10, payload.length / 2, payload.length - 1}) {
+                byte[] truncated = Arrays.copyOf(payload, length);
+                Assertions.assertThrows(IllegalArgumentException.class, () -> SearchResultCodec.decode(truncated),
+                        "Payload truncated to " + length + " bytes is rejected");
+            }
+        }
+
+        byte[] legacy = SerializationUtils.serialize(serializable(playlist(5, "truncated", true)));
+        byte[] truncatedLegacy = Arrays.copyOf(legacy, legacy.length / 2);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SearchResultCodec.decode(truncatedLegacy));
+    }
+
+    @Test
+    void corruptPayloadIsRejected() {
+        byte[] payload = SearchResultCodec.encode(serializable(playlist(3, "corrupt", true)), false);
+
+        byte[] unknownVersion = payload.clone();
+        unknownVersion[0] = (byte) (SearchResultCodec.VERSION + 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SearchResultCodec.decode(unknownVersion));
+
+        byte[] compressedFlag = payload.clone();
+        compressedFlag[1] = 1;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SearchResultCodec.decode(compressedFlag));
+
+        //length prefix of the playlist name, right after the version, flags and search result flag
+        byte[] hugeLength = payload.clone();
+        hugeLength[3] = 0x7F;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SearchResultCodec.decode(hugeLength));
+    }
+
+    private AudioPlaylist playlist(int size, String name, boolean isSearchResult) {
+        List<AudioTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String identifier = String.format("dQw4w9WgX%02d", i);
+            AudioTrackInfo info = new AudioTrackInfo("Rick Astley - Never Gonna Give You Up (Video) " + i,
+                    "RickAstleyVEVO", 213_000, identifier, false, "https://www.youtube.com/watch?v=" + identifier);
+            tracks.add(new YoutubeAudioTrack(info, youtube));
+        }
+        return new BasicAudioPlaylist(name, tracks, null, isSearchResult);
+    }
+
+    private SearchResult.SerializableAudioPlaylist serializable(AudioPlaylist playlist) {
+        return new SearchResult.SerializableAudioPlaylist(playerManager, playlist);
+    }
+
+    private AudioPlaylist decode(byte[] payload) {
+        return SearchResultCodec.decode(payload).decode(playerManager);
+    }
+
+    private static void assertSamePlaylist(AudioPlaylist expected, AudioPlaylist actual) {
+        Assertions.assertEquals(expected.getName(), actual.getName());
+        Assertions.assertEquals(expected.isSearchResult(), actual.isSearchResult());
+        Assertions.assertEquals(identifiers(expected.getTracks()), identifiers(actual.getTracks()));
+        if (expected.getSelectedTrack() == null) {
+            Assertions.assertNull(actual.getSelectedTrack());
+        } else {
+            Assertions.assertNotNull(actual.getSelectedTrack());
+            Assertions.assertEquals(expected.getSelectedTrack().getIdentifier(), actual.getSelectedTrack().getIdentifier());
+        }
+    }
+
+    private static List<String> identifiers(List<AudioTrack> tracks) {
+        List<String> identifiers = new ArrayList<>();
+        for (AudioTrack track : tracks) {
+            identifiers.add(track.getIdentifier() + " " + track.getInfo().title);
+        }
+        return identifiers;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.event;
+
+import fredboat.event.MusicPersistenceSnapshot;
+import fredboat.test.BaseTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+class MusicPersistenceSnapshotTest extends BaseTest {
+
+    private static final long FIRST_GUILD = 174820236481134592L;
+    private static final long SECOND_GUILD = 174820236481134593L;
+    private static final long THIRD_GUILD = 174820236481134594L;
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("fredboat-persistence-test");
+        file = directory.resolve("players.snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void writtenRecordsAreRead() throws IOException {
+        try (MusicPersistenceSnapshot.Writer writer = new MusicPersistenceSnapshot.Writer(file)) {
+            writer.append(FIRST_GUILD, payload("first"));
+            writer.append(SECOND_GUILD, new byte[0]);
+            writer.append(THIRD_GUILD, payload("third"));
+        }
+
+        try (MusicPersistenceSnapshot snapshot = MusicPersistenceSnapshot.open(file)) {
+            Set<Long> expected = new HashSet<>();
+            expected.add(FIRST_GUILD);
+            expected.add(SECOND_GUILD);
+            expected.add(THIRD_GUILD);
+            Assertions.assertEquals(expected, new HashSet<>(snapshot.guildIds()));
+
+            Assertions.assertArrayEquals(payload("third"), snapshot.take(THIRD_GUILD));
+            Assertions.assertArrayEquals(new byte[0], snapshot.take(SECOND_GUILD));
+            Assertions.assertNull(snapshot.take(THIRD_GUILD), "Records can be taken only once");
+            Assertions.assertFalse(snapshot.isDrained());
+
+            Assertions.assertArrayEquals(payload("first"), snapshot.take(FIRST_GUILD));
+            Assertions.assertTrue(snapshot.isDrained());
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws IOException {
+        writeHeader(MusicPersistenceSnapshot.MAGIC, (byte) (MusicPersistenceSnapshot.VERSION + 1));
+        Assertions.assertThrows(IOException.class, () -> MusicPersistenceSnapshot.open(file));
+
+        writeHeader(0xCAFEBABE, MusicPersistenceSnapshot.VERSION);
+        Assertions.assertThrows(IOException.class, () -> MusicPersistenceSnapshot.open(file));
+    }
+
+    @Test
+    void truncatedRecordIsIgnored() throws IOException {
+        try (MusicPersistenceSnapshot.Writer writer = new MusicPersistenceSnapshot.Writer(file)) {
+            writer.append(FIRST_GUILD, payload("first"));
+            writer.append(SECOND_GUILD, payload("second"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (MusicPersistenceSnapshot snapshot = MusicPersistenceSnapshot.open(file)) {
+            Assertions.assertEquals(1, snapshot.guildIds().size());
+            Assertions.assertArrayEquals(payload("first"), snapshot.take(FIRST_GUILD));
+            Assertions.assertNull(snapshot.take(SECOND_GUILD));
+            Assertions.assertTrue(snapshot.isDrained());
+        }
+    }
+
+    @Test
+    void truncatedHeaderIsRejected() throws IOException {
+        Files.write(file, new byte[]{0x46, 0x42});
+        Assertions.assertThrows(IOException.class, () -> MusicPersistenceSnapshot.open(file));
+    }
+
+    private void writeHeader(int magic, byte version) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Byte.BYTES);
+        header.putInt(magic).put(version);
+        Files.write(file, header.array());
+    }
+
+    private static byte[] payload(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
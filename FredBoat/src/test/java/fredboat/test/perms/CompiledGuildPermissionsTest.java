@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.perms;
+
+import fredboat.definitions.PermissionLevel;
+import fredboat.perms.CompiledGuildPermissions;
+import fredboat.test.BaseTest;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.impl.GuildImpl;
+import net.dv8tion.jda.core.entities.impl.RoleImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class CompiledGuildPermissionsTest extends BaseTest {
+
+    private static final long GUILD_ID = 174820236481134592L;
+    private static final long USER_ID = 81011298891993088L;
+    private static final GuildImpl GUILD = new GuildImpl(null, GUILD_ID);
+
+    @Test
+    void highestLevelWins() {
+        CompiledGuildPermissions perms = CompiledGuildPermissions.compile(GUILD_ID,
+                Arrays.asList("2", "", "not a snowflake"),
+                Arrays.asList("1", "2", Long.toString(USER_ID)),
+                Collections.singletonList(Long.toString(GUILD_ID)));
+
+        //everyone has the public role
+        Assertions.assertEquals(PermissionLevel.USER, perms.getLevel(USER_ID + 1, Collections.emptyList()));
+        Assertions.assertEquals(PermissionLevel.DJ, perms.getLevel(USER_ID, Collections.emptyList()));
+        Assertions.assertEquals(PermissionLevel.DJ, perms.getLevel(USER_ID + 1, roles(3, 1)));
+        Assertions.assertEquals(PermissionLevel.ADMIN, perms.getLevel(USER_ID, roles(1, 2)));
+    }
+
+    @Test
+    void noPublicRole() {
+        CompiledGuildPermissions perms = CompiledGuildPermissions.compile(GUILD_ID,
+                Collections.emptyList(), Collections.emptyList(), Collections.singletonList("1"));
+
+        Assertions.assertEquals(PermissionLevel.BASE, perms.getLevel(USER_ID, roles(2)));
+        Assertions.assertEquals(PermissionLevel.USER, perms.getLevel(USER_ID, roles(2, 1)));
+    }
+
+    private static List<Role> roles(long... ids) {
+        Role[] roles = new Role[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            roles[i] = new RoleImpl(ids[i], GUILD);
+        }
+        return Arrays.asList(roles);
+    }
+}
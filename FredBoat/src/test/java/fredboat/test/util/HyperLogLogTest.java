@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util;
+
+import fredboat.test.BaseTest;
+import fredboat.util.HyperLogLog;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest extends BaseTest {
+
+    //ids of users created in quick succession differ only in their lower bits
+    private static final long FIRST_ID = 81011298891993088L;
+
+    @Test
+    void smallCountsAreExact() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        Assertions.assertEquals(0, sketch.cardinality());
+        for (int i = 0; i < 100; i++) {
+            sketch.add(FIRST_ID + i);
+            sketch.add(FIRST_ID + i);
+        }
+        Assertions.assertEquals(100, sketch.cardinality());
+    }
+
+    @Test
+    void largeCountsAreClose() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 500_000; i++) {
+            sketch.add(FIRST_ID + ((long) i << 22));
+        }
+        Assertions.assertEquals(500_000, sketch.cardinality(), 500_000 * 0.03);
+    }
+
+    @Test
+    void mergeCountsTheUnion() {
+        HyperLogLog first = new HyperLogLog(14);
+        HyperLogLog second = new HyperLogLog(14);
+        for (int i = 0; i < 60_000; i++) {
+            first.add(FIRST_ID + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add(FIRST_ID + i);
+        }
+
+        HyperLogLog union = new HyperLogLog(14);
+        union.merge(first);
+        union.merge(second);
+        Assertions.assertEquals(100_000, union.cardinality(), 100_000 * 0.03);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> union.merge(new HyperLogLog(12)));
+    }
+}
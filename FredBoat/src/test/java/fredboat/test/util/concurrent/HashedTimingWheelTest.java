@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util.concurrent;
+
+import fredboat.test.BaseTest;
+import fredboat.util.concurrent.HashedTimingWheel;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HashedTimingWheelTest extends BaseTest {
+
+    @Test
+    void expiresOnTime() {
+        HashedTimingWheel wheel = new HashedTimingWheel(10, 8, 0);
+        wheel.schedule(1, 25);
+        wheel.schedule(2, 30);
+        wheel.schedule(3, 1000); //several turns of the wheel out
+
+        Assertions.assertTrue(wheel.advance(20).isEmpty());
+        Assertions.assertEquals(new LongArrayList(new long[]{1, 2}), sorted(wheel.advance(30)));
+        Assertions.assertTrue(wheel.advance(990).isEmpty());
+        Assertions.assertEquals(new LongArrayList(new long[]{3}), wheel.advance(1000));
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduleAndCancel() {
+        HashedTimingWheel wheel = new HashedTimingWheel(10, 8, 0);
+        wheel.schedule(1, 20);
+        wheel.schedule(1, 500);
+        wheel.schedule(2, 20);
+        Assertions.assertTrue(wheel.cancel(2));
+        Assertions.assertFalse(wheel.cancel(2));
+
+        Assertions.assertTrue(wheel.advance(100).isEmpty());
+        Assertions.assertTrue(wheel.isScheduled(1));
+        //a deadline in the past expires right away
+        wheel.schedule(2, 0);
+        Assertions.assertEquals(new LongArrayList(new long[]{2}), wheel.advance(100));
+        //advancing late still finds everything that is due
+        Assertions.assertEquals(new LongArrayList(new long[]{1}), wheel.advance(10_000));
+    }
+
+    private static LongArrayList sorted(it.unimi.dsi.fastutil.longs.LongList list) {
+        LongArrayList result = new LongArrayList(list);
+        result.sort(null);
+        return result;
+    }
+}
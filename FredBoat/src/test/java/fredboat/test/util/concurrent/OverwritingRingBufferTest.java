@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util.concurrent;
+
+import fredboat.test.BaseTest;
+import fredboat.util.concurrent.OverwritingRingBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+class OverwritingRingBufferTest extends BaseTest {
+
+    @Test
+    void drainsInOrder() {
+        OverwritingRingBuffer<Integer> buffer = new OverwritingRingBuffer<>(10);
+        Assertions.assertEquals(16, buffer.capacity());
+
+        List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+        Assertions.assertEquals(0, buffer.drain(drained::add));
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+
+        drained.clear();
+        Assertions.assertEquals(0, buffer.drain(drained::add));
+        Assertions.assertTrue(drained.isEmpty());
+    }
+
+    @Test
+    void overwritesOldest() {
+        OverwritingRingBuffer<Integer> buffer = new OverwritingRingBuffer<>(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        Assertions.assertEquals(6, buffer.drain(drained::add));
+        Assertions.assertEquals(Arrays.asList(6, 7, 8, 9), drained);
+    }
+
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int perProducer = 10_000;
+        OverwritingRingBuffer<Integer> buffer = new OverwritingRingBuffer<>(1024);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.offer(i);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        int[] drained = new int[1];
+        int dropped = 0;
+        while (done.getCount() > 0) {
+            dropped += buffer.drain(i -> drained[0]++);
+        }
+        dropped += buffer.drain(i -> drained[0]++);
+        Assertions.assertEquals(producers * perProducer, drained[0] + dropped);
+    }
+}
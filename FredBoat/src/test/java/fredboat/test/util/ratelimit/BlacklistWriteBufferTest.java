@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util.ratelimit;
+
+import fredboat.db.api.BlacklistService;
+import fredboat.db.entity.main.BlacklistEntry;
+import fredboat.test.BaseTest;
+import fredboat.util.ratelimit.BlacklistWriteBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class BlacklistWriteBufferTest extends BaseTest {
+
+    private static final long USER = 81011298891993088L;
+    private static final long OTHER_USER = 81011298891993089L;
+
+    private final RecordingBlacklistService service = new RecordingBlacklistService();
+    private final BlacklistWriteBuffer buffer = new BlacklistWriteBuffer(service);
+
+    @Test
+    void changesAreCoalescedUntilFlushed() {
+        BlacklistEntry first = entry(USER);
+        BlacklistEntry second = entry(USER);
+        BlacklistEntry other = entry(OTHER_USER);
+        buffer.changed(first, false);
+        buffer.changed(other, false);
+        buffer.changed(second, false);
+
+        Assertions.assertSame(second, buffer.get(USER), "The latest change of an id is buffered");
+        Assertions.assertTrue(service.merged.isEmpty(), "Nothing is written before a flush");
+
+        buffer.flush();
+        Assertions.assertEquals(1, service.merged.size(), "All changes are merged in a single batch");
+        Set<BlacklistEntry> expected = new HashSet<>();
+        expected.add(second);
+        expected.add(other);
+        Assertions.assertEquals(expected, new HashSet<>(service.merged.get(0)));
+        Assertions.assertNull(buffer.get(USER));
+
+        buffer.flush();
+        Assertions.assertEquals(1, service.merged.size(), "Flushed changes are not written again");
+    }
+
+    @Test
+    void urgentChangesAreFlushedRightAway() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        service.onMerge = flushed::countDown;
+        buffer.changed(entry(USER), true);
+
+        Assertions.assertTrue(flushed.await(1, TimeUnit.SECONDS), "Urgent change was flushed");
+    }
+
+    @Test
+    void failedFlushKeepsTheChanges() {
+        BlacklistEntry entry = entry(USER);
+        buffer.changed(entry, false);
+        service.onMerge = () -> {
+            throw new RuntimeException("backend is down");
+        };
+
+        Assertions.assertThrows(RuntimeException.class, buffer::flush);
+        Assertions.assertSame(entry, buffer.get(USER), "Failed changes stay buffered");
+
+        service.onMerge = () -> {
+        };
+        buffer.flush();
+        Assertions.assertEquals(2, service.merged.size());
+        Assertions.assertNull(buffer.get(USER));
+    }
+
+    @Test
+    void changesStayVisibleWhileBeingMerged() {
+        BlacklistEntry entry = entry(USER);
+        buffer.changed(entry, false);
+        List<BlacklistEntry> seenDuringMerge = new ArrayList<>();
+        service.onMerge = () -> seenDuringMerge.add(buffer.get(USER));
+
+        buffer.flush();
+        Assertions.assertEquals(List.of(entry), seenDuringMerge, "Readers don't fall back to the stale stored entry");
+        Assertions.assertNull(buffer.get(USER));
+    }
+
+    @Test
+    void changesDuringMergeAreKeptForTheNextFlush() {
+        BlacklistEntry entry = entry(USER);
+        buffer.changed(entry, false);
+        //the blacklist changes its entries in place, so the same entry is reported changed again
+        service.onMerge = () -> buffer.changed(entry, false);
+
+        buffer.flush();
+        Assertions.assertSame(entry, buffer.get(USER), "The newer change is not dropped by the older merge");
+
+        service.onMerge = () -> {
+        };
+        buffer.flush();
+        Assertions.assertEquals(2, service.merged.size());
+        Assertions.assertNull(buffer.get(USER));
+    }
+
+    @Test
+    void deleteDropsBufferedChanges() {
+        buffer.changed(entry(USER), false);
+        buffer.delete(USER);
+
+        Assertions.assertNull(buffer.get(USER));
+        Assertions.assertEquals(1, service.deleted.size());
+        buffer.flush();
+        Assertions.assertTrue(service.merged.isEmpty(), "A deleted entry is not resurrected by a flush");
+    }
+
+    private static BlacklistEntry entry(long id) {
+        BlacklistEntry entry = Mockito.mock(BlacklistEntry.class);
+        Mockito.when(entry.getId()).thenReturn(id);
+        return entry;
+    }
+
+    private static class RecordingBlacklistService implements BlacklistService {
+
+        private final List<List<BlacklistEntry>> merged = new ArrayList<>();
+        private final List<Long> deleted = new ArrayList<>();
+        private volatile Runnable onMerge = () -> {
+        };
+
+        @Override
+        public BlacklistEntry fetchBlacklistEntry(long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BlacklistEntry mergeBlacklistEntry(BlacklistEntry entry) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized List<BlacklistEntry> mergeBlacklistEntries(Collection<BlacklistEntry> entries) {
+            merged.add(new ArrayList<>(entries));
+            onMerge.run();
+            return new ArrayList<>(entries);
+        }
+
+        @Override
+        public synchronized void deleteBlacklistEntry(long id) {
+            deleted.add(id);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util.ratelimit;
+
+import fredboat.feature.metrics.Metrics;
+import fredboat.test.BaseTest;
+import fredboat.util.ratelimit.SlidingWindowRateEngine;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class SlidingWindowRateEngineTest extends BaseTest {
+
+    private static final long ID = 81011298891993088L;
+    private static final long WINDOW = 1000;
+    //how many slots the engine looks at for an id
+    private static final int MAX_PROBES = 64;
+
+    private final AtomicLong clock = new AtomicLong(10 * WINDOW);
+
+    @Test
+    void limitIsEnforced() {
+        SlidingWindowRateEngine engine = engine("limitIsEnforced", 16);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID, 1));
+        }
+        Assertions.assertFalse(engine.tryAcquire(ID, 1));
+        Assertions.assertTrue(engine.tryAcquire(ID + 1, 1), "Other ids are not limited");
+
+        engine.reset(ID);
+        Assertions.assertTrue(engine.tryAcquire(ID, 1));
+    }
+
+    @Test
+    void previousWindowSlidesOut() {
+        SlidingWindowRateEngine engine = engine("previousWindowSlidesOut", 16);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID, 1));
+        }
+
+        //at the start of the next window, the full previous window still counts
+        clock.addAndGet(WINDOW);
+        Assertions.assertFalse(engine.tryAcquire(ID, 1));
+
+        //at 60% into the next window, 40% of the previous 5 requests still count
+        clock.addAndGet(WINDOW * 6 / 10);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID, 1));
+        }
+        Assertions.assertFalse(engine.tryAcquire(ID, 1));
+
+        //two windows later, nothing counts anymore
+        clock.addAndGet(2 * WINDOW);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID, 1));
+        }
+        Assertions.assertFalse(engine.tryAcquire(ID, 1));
+    }
+
+    @Test
+    void fullTableLetsRequestsThrough() {
+        String name = "fullTableLetsRequestsThrough";
+        SlidingWindowRateEngine engine = engine(name, 16);
+        for (int i = 0; i < 16; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID + i, 1));
+        }
+
+        //a denied request would count as a ratelimit hit towards the blacklist
+        double before = Metrics.ratelimitTableFull.labels(name).get();
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID + 16, 1), "Requests without a slot are let through");
+        }
+        Assertions.assertEquals(before + 10, Metrics.ratelimitTableFull.labels(name).get());
+
+        //the slots of the other ids have expired and are taken over, so the id is limited again
+        clock.addAndGet(2 * WINDOW);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(engine.tryAcquire(ID + 16, 1));
+        }
+        Assertions.assertFalse(engine.tryAcquire(ID + 16, 1));
+    }
+
+    @Test
+    void fullProbeWindowLetsNewIdsThrough() {
+        String name = "fullProbeWindowLetsNewIdsThrough";
+        int capacity = 1024;
+        SlidingWindowRateEngine engine = engine(name, capacity);
+        //ids that all hash to the same slot, so they crowd a single probe window of the otherwise empty table
+        long[] colliding = new long[MAX_PROBES + 1];
+        long candidate = ID;
+        for (int found = 0; found < colliding.length; candidate++) {
+            if ((HashCommon.mix(candidate) & (capacity - 1)) == 0) {
+                colliding[found++] = candidate;
+            }
+        }
+        for (int i = 0; i < MAX_PROBES; i++) {
+            for (int request = 0; request < 5; request++) {
+                Assertions.assertTrue(engine.tryAcquire(colliding[i], 1));
+            }
+            Assertions.assertFalse(engine.tryAcquire(colliding[i], 1), "Ids with a slot are limited");
+        }
+
+        double before = Metrics.ratelimitTableFull.labels(name).get();
+        long newId = colliding[MAX_PROBES];
+        Assertions.assertTrue(engine.tryAcquire(newId, 1), "A new id is not denied for a crowded probe window");
+        Assertions.assertEquals(before + 1, Metrics.ratelimitTableFull.labels(name).get());
+        Assertions.assertTrue(engine.tryAcquire(ID - 1, 1), "Ids hashing elsewhere are unaffected");
+    }
+
+    private SlidingWindowRateEngine engine(String name, int capacity) {
+        return new SlidingWindowRateEngine(name, 5, WINDOW, capacity, clock::get);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2018 Frederik Ar. Mikkelsen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package fredboat.test.util.rest;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import fredboat.definitions.SearchProvider;
+import fredboat.test.BaseTest;
+import fredboat.util.rest.SearchResultCache;
+import io.prometheus.client.guava.cache.CacheMetricsCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+class SearchResultCacheTest extends BaseTest {
+
+    private static final String TERM = "never gonna give you up";
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private AudioPlayerManager playerManager;
+    private YoutubeAudioSourceManager youtube;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        playerManager = new DefaultAudioPlayerManager();
+        youtube = new YoutubeAudioSourceManager();
+        playerManager.registerSourceManager(youtube);
+        cache = new SearchResultCache(playerManager, new CacheMetricsCollector());
+    }
+
+    @AfterEach
+    void tearDown() {
+        playerManager.shutdown();
+    }
+
+    @Test
+    void missWhenNothingIsCached() {
+        Assertions.assertNull(cache.get(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+        Assertions.assertFalse(cache.contains(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+    }
+
+    @Test
+    void hitReturnsTheCachedTracks() {
+        cache.put(SearchProvider.YOUTUBE, TERM, searchResult(3), System.currentTimeMillis());
+
+        AudioPlaylist cached = cache.get(SearchProvider.YOUTUBE, TERM, MAX_AGE);
+        Assertions.assertNotNull(cached);
+        Assertions.assertEquals("Search results for: " + TERM, cached.getName());
+        Assertions.assertTrue(cached.isSearchResult());
+        Assertions.assertEquals(identifiers(searchResult(3).getTracks()), identifiers(cached.getTracks()));
+        Assertions.assertTrue(cache.contains(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+    }
+
+    @Test
+    void searchTermsAreNormalized() {
+        cache.put(SearchProvider.YOUTUBE, TERM, searchResult(1), System.currentTimeMillis());
+
+        Assertions.assertNotNull(cache.get(SearchProvider.YOUTUBE, "  Never  Gonna\tgive you UP ", MAX_AGE));
+        Assertions.assertNull(cache.get(SearchProvider.SOUNDCLOUD, TERM, MAX_AGE), "Providers don't share results");
+    }
+
+    @Test
+    void expiredResultIsAMiss() {
+        long twoHoursAgo = System.currentTimeMillis() - 2 * MAX_AGE;
+        cache.put(SearchProvider.YOUTUBE, TERM, searchResult(2), twoHoursAgo);
+
+        Assertions.assertFalse(cache.contains(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+        Assertions.assertNotNull(cache.get(SearchProvider.YOUTUBE, TERM, 4 * MAX_AGE), "Young enough for a longer max age");
+        Assertions.assertNotNull(cache.get(SearchProvider.YOUTUBE, TERM, -1), "Negative max age accepts any age");
+
+        Assertions.assertNull(cache.get(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+        Assertions.assertNull(cache.get(SearchProvider.YOUTUBE, TERM, -1), "Expired results are evicted");
+    }
+
+    @Test
+    void emptySearchIsCachedAsEmptyResult() {
+        cache.putEmpty(SearchProvider.YOUTUBE, TERM);
+
+        AudioPlaylist cached = cache.get(SearchProvider.YOUTUBE, TERM, MAX_AGE);
+        Assertions.assertNotNull(cached);
+        Assertions.assertTrue(cached.getTracks().isEmpty());
+    }
+
+    @Test
+    void resultWithoutTracksIsNotCached() {
+        cache.put(SearchProvider.YOUTUBE, TERM, new BasicAudioPlaylist("empty", new ArrayList<>(), null, true),
+                System.currentTimeMillis());
+
+        Assertions.assertNull(cache.get(SearchProvider.YOUTUBE, TERM, MAX_AGE));
+    }
+
+    private AudioPlaylist searchResult(int size) {
+        List<AudioTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String identifier = String.format("dQw4w9WgX%02d", i);
+            AudioTrackInfo info = new AudioTrackInfo("Rick Astley - Never Gonna Give You Up (Video) " + i,
+                    "RickAstleyVEVO", 213_000, identifier, false, "https://www.youtube.com/watch?v=" + identifier);
+            tracks.add(new YoutubeAudioTrack(info, youtube));
+        }
+        return new BasicAudioPlaylist("Search results for: " + TERM, tracks, null, true);
+    }
+
+    private static List<String> identifiers(List<AudioTrack> tracks) {
+        List<String> identifiers = new ArrayList<>();
+        for (AudioTrack track : tracks) {
+            identifiers.add(track.getIdentifier());
+        }
+        return identifiers;
+    }
+}
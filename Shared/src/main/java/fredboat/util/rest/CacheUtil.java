@@ -27,66 +27,18 @@ package fredboat.util.rest;
 
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class CacheUtil {
 
-    private static HashMap<String, File> cachedURLFiles = new HashMap<>();
-    private static final Logger log = LoggerFactory.getLogger(CacheUtil.class);
-
     private CacheUtil() {
     }
 
-    public static File getImageFromURL(final String url) {
-        if (cachedURLFiles.containsKey(url) && cachedURLFiles.get(url).exists()) {
-            //Already cached
-            return cachedURLFiles.get(url);
-        } else {
-            final InputStream is;
-            final File tmpFile;
-            try {
-                final Matcher matcher = Pattern.compile("(\\.\\w+$)").matcher(url);
-                final String type = matcher.find() ? matcher.group(1) : "";
-                tmpFile = File.createTempFile(UUID.randomUUID().toString(), type);
-            } catch (final IOException e) {
-                throw new RuntimeException("Could not create a temporary file");
-            }
-            try (final FileOutputStream fos = new FileOutputStream(tmpFile)) {
-                is = new URL(url).openStream();
-                final byte[] buffer = new byte[1024 * 10];
-                int bytesRead;
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                }
-                is.close();
-                fos.close();
-
-                cachedURLFiles.put(url, tmpFile);
-                return tmpFile;
-            } catch (final IOException e) {
-                if (!tmpFile.delete()) {
-                    log.error("Could not delete temporary file {}", tmpFile.getAbsolutePath());
-                }
-                throw new RuntimeException(e);
-            }
-        }
-    }
-
     public static <K, V> V getUncheckedUnwrapped(Cache<K, V> cache, K key, Callable<V> loader) {
         try {
             return cache.get(key, loader);
@@ -110,4 +62,17 @@ public class CacheUtil {
             throw new IllegalStateException(e);
         }
     }
+
+    public static <K, V> ImmutableMap<K, V> getAllUncheckedUnwrapped(LoadingCache<K, V> cache, Iterable<? extends K> keys) {
+        try {
+            return cache.getAll(keys);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Cache loader threw exception", e);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+
+            // Will never run.
+            throw new IllegalStateException(e);
+        }
+    }
 }